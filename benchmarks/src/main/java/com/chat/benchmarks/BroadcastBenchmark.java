@@ -0,0 +1,53 @@
+package com.chat.benchmarks;
+
+import com.chat.server.ClientRegistry;
+import com.chat.server.metrics.ServerMetrics;
+import com.chat.utils.message.Message;
+import com.chat.utils.message.MessageType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a public message fanned out by the {@link com.chat.server.Server Server} to N named
+ * {@link InMemoryConnection InMemoryConnections}: encoding the frame once and queueing it for every recipient.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastBenchmark {
+    @Param({"10", "100", "1000"})
+    public int clients;
+
+    @Param({"64"})
+    public int payloadSize;
+
+    private InMemoryConnection[] connections;
+    private Message message;
+
+    @Setup
+    public void setup() {
+        ClientRegistry registry = new ClientRegistry();
+        ServerMetrics metrics = new ServerMetrics();
+        connections = new InMemoryConnection[clients];
+        for (int i = 0; i < clients; i++) {
+            connections[i] = new InMemoryConnection(i, metrics);
+            connections[i].open(registry, "client" + i);
+        }
+        for (InMemoryConnection connection : connections) connection.discard();
+
+        message = new Message(MessageType.CLIENT_SEND_PUBLIC, "x".repeat(payloadSize), "client0");
+    }
+
+    @Benchmark
+    public int publicFanOut() {
+        connections[0].handle(message);
+
+        int frames = 0;
+        for (int i = 1; i < connections.length; i++) frames += connections[i].discard();
+        return frames;
+    }
+}
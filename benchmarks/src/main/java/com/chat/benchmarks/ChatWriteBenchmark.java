@@ -0,0 +1,50 @@
+package com.chat.benchmarks;
+
+import com.chat.client.chat.Chat;
+import com.chat.client.chat.MessageAuthor;
+import com.chat.client.chat.MessageScope;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link Chat#write} while several threads write to the same chat, as the listener thread
+ * and the user interface do on a busy public chat.
+ *
+ * <p>
+ *     Every thread empties the chat after a fixed number of writes so that the benchmark measures writes
+ *     and not the growth of an unbounded list.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatWriteBenchmark {
+    private static final int CLEAR_EVERY = 100_000;
+
+    private Chat chat;
+
+    @Setup(Level.Iteration)
+    public void setup() { chat = new Chat(Chat.class.getSimpleName()); }
+
+    @State(Scope.Thread)
+    public static class Writer {
+        int written = 0;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void writeSingleThread(Writer _writer) { this.write(_writer); }
+
+    @Benchmark
+    @Threads(4)
+    public void writeContended(Writer _writer) { this.write(_writer); }
+
+    private void write(Writer _writer) {
+        chat.write("hello there", "alice", MessageScope.PUBLIC, MessageAuthor.RECEIVED);
+        if (++_writer.written % CLEAR_EVERY == 0) chat.getMessages().clear();
+    }
+}
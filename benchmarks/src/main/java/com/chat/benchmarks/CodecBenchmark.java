@@ -0,0 +1,66 @@
+package com.chat.benchmarks;
+
+import com.chat.utils.Utils;
+import com.chat.utils.message.BinaryCodec;
+import com.chat.utils.message.Message;
+import com.chat.utils.message.MessageType;
+import com.chat.utils.message.WireFormat;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of encoding and decoding a {@link Message} in both {@link WireFormat WireFormats},
+ * for payloads ranging from a short chat line to a long paste.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+    @Param({"16", "256", "4096"})
+    public int payloadSize;
+
+    private Message message;
+    private String json;
+    private ByteBuffer binary;
+
+    @Setup
+    public void setup() {
+        message = new Message(MessageType.SERVER_SEND_PRIVATE, "ü".repeat(payloadSize / 4) + "x".repeat(payloadSize - payloadSize / 4), "alice", "bob");
+        json = Utils.deserializeJson(message);
+        binary = BinaryCodec.encode(message);
+    }
+
+    @Benchmark
+    public String jsonSerialize() { return Utils.deserializeJson(message); }
+
+    @Benchmark
+    public Message jsonDeserialize() { return Utils.serializeJson(json); }
+
+    @Benchmark
+    public Message jsonRoundTrip() { return Utils.serializeJson(Utils.deserializeJson(message)); }
+
+    @Benchmark
+    public ByteBuffer jsonFrame() { return Utils.encodeFrame(message, WireFormat.JSON); }
+
+    @Benchmark
+    public ByteBuffer binaryFrame() { return Utils.encodeFrame(message, WireFormat.BINARY); }
+
+    @Benchmark
+    public Message binaryRoundTrip() throws Exception {
+        ByteBuffer frame = BinaryCodec.encode(message);
+        frame.position(BinaryCodec.varintSize(BinaryCodec.peekLength(frame)));
+        return BinaryCodec.decode(frame);
+    }
+
+    @Benchmark
+    public Message binaryDecode() throws Exception {
+        ByteBuffer frame = binary.duplicate();
+        frame.position(BinaryCodec.varintSize(BinaryCodec.peekLength(frame)));
+        return BinaryCodec.decode(frame);
+    }
+}
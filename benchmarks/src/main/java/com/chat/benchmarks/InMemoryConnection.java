@@ -0,0 +1,71 @@
+package com.chat.benchmarks;
+
+import com.chat.server.ClientRegistry;
+import com.chat.server.OutboundQueue;
+import com.chat.server.OverflowPolicy;
+import com.chat.server.FlushStats;
+import com.chat.server.ServerConnection;
+import com.chat.server.metrics.ServerMetrics;
+import com.chat.utils.message.Message;
+import com.chat.utils.message.MessageType;
+
+/**
+ * The InMemoryConnection class is a {@link ServerConnection} without a transport, used to benchmark the server in isolation.
+ *
+ * <p>
+ *     It is registered and named like a real connection, but nothing reads from it and nothing writes its frames:
+ *     they stay in its {@link OutboundQueue} until the benchmark {@link #discard() discards} them.
+ * </p>
+ */
+public class InMemoryConnection extends ServerConnection {
+    /**
+     * Creates a new instance of InMemoryConnection.
+     *
+     * @param _id the unique ID of the connection.
+     * @param _metrics the metrics shared by the connections of the benchmark.
+     */
+    public InMemoryConnection(int _id, ServerMetrics _metrics) {
+        super(_id, new OutboundQueue(Integer.MAX_VALUE, OverflowPolicy.DROP_OLDEST, 0, 0, new FlushStats()), _metrics);
+    }
+
+    /**
+     * Adds the connection to the registry and names it, the method returns immediately.
+     *
+     * @param _clients the registry of all current connections.
+     */
+    @Override
+    public void open(ClientRegistry _clients) {
+        open = true;
+        clients = _clients;
+        clients.add(this);
+    }
+
+    /**
+     * Opens the connection in the registry and gives it a name.
+     *
+     * @param _clients the registry of all current connections.
+     * @param _name the name of the client.
+     */
+    public void open(ClientRegistry _clients, String _name) {
+        this.open(_clients);
+        this.receive(new Message(MessageType.CLIENT_SET_NAME, _name));
+        this.discard();
+    }
+
+    /**
+     * Drops every queued frame, as a writer would after writing them.
+     *
+     * @return the number of frames dropped.
+     */
+    public int discard() {
+        int frames = 0;
+        while (outbound.poll() != null) frames++;
+        return frames;
+    }
+
+    /**
+     * There is no transport to abort.
+     */
+    @Override
+    protected void abort() {}
+}
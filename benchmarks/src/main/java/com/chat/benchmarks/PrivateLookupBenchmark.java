@@ -0,0 +1,59 @@
+package com.chat.benchmarks;
+
+import com.chat.server.ClientRegistry;
+import com.chat.server.metrics.ServerMetrics;
+import com.chat.utils.message.Message;
+import com.chat.utils.message.MessageType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the routing of private messages: finding the receiver by name among N named
+ * {@link InMemoryConnection InMemoryConnections} and queueing the message for it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrivateLookupBenchmark {
+    @Param({"10", "1000", "10000"})
+    public int clients;
+
+    private ClientRegistry registry;
+    private InMemoryConnection[] connections;
+    private Message[] messages;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        registry = new ClientRegistry();
+        ServerMetrics metrics = new ServerMetrics();
+        connections = new InMemoryConnection[clients];
+        for (int i = 0; i < clients; i++) {
+            connections[i] = new InMemoryConnection(i, metrics);
+            connections[i].open(registry, "client" + i);
+        }
+        for (InMemoryConnection connection : connections) connection.discard();
+
+        messages = new Message[clients];
+        for (int i = 0; i < clients; i++)
+            messages[i] = new Message(MessageType.CLIENT_SEND_PRIVATE, "hello", "client0", "client" + ((i * 7919) % clients));
+    }
+
+    @Benchmark
+    public boolean findByName() {
+        next = (next + 1) % clients;
+        return registry.find(messages[next].receiver()).isPresent();
+    }
+
+    @Benchmark
+    public int routePrivate() {
+        next = (next + 1) % clients;
+        Message message = messages[next];
+        connections[0].handle(message);
+        return connections[(next * 7919) % clients].discard();
+    }
+}
@@ -0,0 +1,10 @@
+/**
+ * The com.chat.benchmarks package contains the JMH benchmarks of the chat's hot paths.
+ *
+ * <p>
+ *     They cover the {@link com.chat.utils.message.Message Message} codecs, the public fan-out and the private routing of the
+ *     {@link com.chat.server.Server Server}, run against {@link com.chat.benchmarks.InMemoryConnection InMemoryConnections},
+ *     and {@link com.chat.client.chat.Chat#write Chat.write} under contention.
+ * </p>
+ */
+package com.chat.benchmarks;
@@ -2,6 +2,7 @@ package com.chat;
 
 import com.chat.client.ui.ClientInterface;
 import com.chat.server.Server;
+import com.chat.server.ServerConfig;
 
 /**
  * The Main class is the entry point for the application, it starts both the
@@ -13,7 +14,7 @@ public class Main {
      * The com.chat.MainServer class contains the main method for starting the {@link Server}.
      */
     public static class MainServer {
-        public static void main(String[] args) { new Server().cli(); }
+        public static void main(String[] args) { new Server(ServerConfig.fromArgs(args)).cli(); }
     }
 
     /**
@@ -1,25 +1,41 @@
 package com.chat.client;
 
 import com.chat.client.chat.Chat;
+import com.chat.client.chat.ChatMessageStore;
 import com.chat.client.chat.MessageAuthor;
 import com.chat.client.chat.MessageScope;
+import com.chat.client.chat.Room;
 import com.chat.client.event.ClientEventType;
 import com.chat.client.event.ConnectionEventType;
 import com.chat.client.event.ExceptionEventType;
 import com.chat.client.event.ServerEventType;
 import com.chat.utils.Utils;
+import com.chat.utils.message.BinaryCodec;
+import com.chat.utils.message.ErrorType;
 import com.chat.utils.message.Message;
 import com.chat.utils.message.MessageType;
+import com.chat.utils.message.WireFormat;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.ConnectException;
 import java.net.Socket;
+import java.nio.file.Path;
 import java.net.SocketException;
+import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -38,23 +54,94 @@ import java.util.stream.Collectors;
  *     <li>exception events: events fired when an {@link Exception} occurs</li>
  *     <li>connection events: events fired when the connection status between client and server changes</li>
  *</ul>
+ *
+ * <p>
+ *     By default messages are exchanged as {@link WireFormat#BINARY BINARY} frames, negotiated when connecting.
+ *     Servers that do not support them can be reached by setting the {@link WireFormat#JSON JSON} format before connecting.
+ * </p>
+ *
+ * <p>
+ *     Writes are buffered: {@link #write(Message)} flushes right away, while {@link #write(Message, boolean)}
+ *     lets many messages be sent with a single {@link #flush()}.
+ * </p>
+ *
+ * <p>
+ *     The client follows the history of the public chat, of the private chats {@link #followHistory(String) opened} by the user
+ *     and of the private chats it received a message in, never of every online client. A chat whose history the server
+ *     refuses with {@link ErrorType#HISTORY_UNAVAILABLE HISTORY_UNAVAILABLE} is not followed again until the client reconnects,
+ *     a refusal of the public chat stops the history altogether. It asks for the history of a chat
+ *     when it starts following it and, every time the list of clients is received, on connecting and on reconnecting,
+ *     for the history of the chats it follows since the cursor of the last page it received, one page at a time, so the chats
+ *     are filled in with the messages sent while it was away. A busy server is asked again after a random delay that doubles
+ *     every time, at most {@value #HISTORY_MAX_RETRIES} times, so that reconnecting clients spread out and then give up. <br>
+ *     Received messages carry the sequence number the server gave them, the {@link Chat} drops the ones it already holds,
+ *     and the history skips the messages this client sent since the server first approved its name, which its chats already show.
+ *     The approval carries the time of the server, so the skipped messages are told apart by the clock that stamped them
+ *     rather than by the clock of the client.
+ * </p>
+ *
+ * <p>
+ *     Every chat keeps a window of its most recent messages in memory in a {@link ChatMessageStore}, older messages are spilled
+ *     to a file in the spill directory and read back when the user scrolls to them, so a client left open never grows without bound.
+ * </p>
+ *
+ * <p>
+ *     The list of clients is versioned by the server: the client sends the version it last received when it sets its name
+ *     and is sent either the changes it missed or a snapshot of the list, streamed in chunks, and then only the changes,
+ *     clients joining and leaving in batches. Changes carry their version, so a change the client already applied is dropped. <br>
+ *     A client set to {@link #setLazyPresence(boolean) lazy presence} before connecting is sent neither the list nor its changes:
+ *     its chats are the clients it {@link #subscribePresence(Collection) subscribed} to, or that sent it a private message,
+ *     and it {@link #searchClients(String, String) searches} the others a page at a time. Its subscriptions are sent again when it reconnects,
+ *     and only the subscriptions the server does not already hold are sent while it stays connected.
+ * </p>
+ *
+ * <p>
+ *     The private chats and the rooms are indexed by name, so a message or a change of the list of clients finds its chat
+ *     in constant time however many clients are online. The indexes are changed by the listener thread only and can be read
+ *     from any thread: {@link #getChats()} and {@link #getRooms()} are live views that never fail while the listener changes them.
+ * </p>
  */
 public class Client {
     public static final String PUBLIC_CHAT_NAME = "PUBLIC";
+    public static final String LAZY_PRESENCE = "LAZY";
 
     private boolean open = false;
 
     private static final int SERVER_PORT = 7777;
+    private static final int NEGOTIATION_TIMEOUT = 5000;
+    private static final int WRITE_BUFFER_SIZE = 1 << 14;
+    private static final int HISTORY_RETRY_DELAY = 1000;
+    private static final int HISTORY_MAX_RETRIES = 5;
+    private static final int SUBSCRIPTION_CHUNK_SIZE = 256;
     private String SERVER_ADDRESS;
 
     private Socket server;
     private String name;
 
-    private BufferedReader inputStream;
-    private DataOutputStream outputStream;
-
-    private final HashSet<Chat> chats = new HashSet<>();
-    private final Chat publicChat = new Chat(PUBLIC_CHAT_NAME);
+    private WireFormat format = WireFormat.BINARY;
+
+    private BufferedInputStream inputStream;
+    private BufferedReader lineReader;
+    private BufferedOutputStream outputStream;
+    private WritableByteChannel outputChannel;
+
+    private final ConcurrentHashMap<String, Chat> chats = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Room> rooms = new ConcurrentHashMap<>();
+    private final int messageWindow;
+    private final Path spillDirectory;
+    private final Chat publicChat;
+
+    private final ConcurrentHashMap<String, String> historyCursors = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> historyRetries = new ConcurrentHashMap<>();
+    private final Set<String> historyChats = ConcurrentHashMap.newKeySet();
+    private final Set<String> historyRefused = ConcurrentHashMap.newKeySet();
+    private volatile boolean historyAvailable = true;
+    private volatile long presenceVersion = 0;
+    private Set<String> presenceSnapshot;
+    private boolean lazyPresence = false;
+    private final Set<String> subscriptions = ConcurrentHashMap.newKeySet();
+    private final Set<String> heldSubscriptions = ConcurrentHashMap.newKeySet();
+    private volatile long approved = 0;
 
     private final HashMap<ServerEventType, ArrayList<Consumer<Message>>> serverEvents = new HashMap<>(
             Arrays.stream(ServerEventType.values())
@@ -73,6 +160,27 @@ public class Client {
                     .collect( Collectors.toMap(type -> type, type -> new ArrayList<>() ) )
     );
 
+    /**
+     * Creates a new instance of Client, keeping the default number of messages of each chat in memory
+     * and spilling the older ones to the temporary directory.
+     */
+    public Client() { this(ChatMessageStore.DEFAULT_WINDOW, Path.of(System.getProperty("java.io.tmpdir"))); }
+
+    /**
+     * Creates a new instance of Client.
+     *
+     * @param _messageWindow the number of messages of each chat kept in memory.
+     * @param _spillDirectory the directory the older messages are spilled to, or null to forget them.
+     */
+    public Client(int _messageWindow, Path _spillDirectory) {
+        messageWindow = _messageWindow;
+        spillDirectory = _spillDirectory;
+        publicChat = new Chat(PUBLIC_CHAT_NAME, this.newStore());
+    }
+
+    /** @return a new {@link ChatMessageStore} for a chat of this client */
+    private ChatMessageStore newStore() { return new ChatMessageStore(messageWindow, spillDirectory); }
+
     /**
      * Adds an {@link Consumer event handler} to a specific {@link ServerEventType}.
      *
@@ -139,15 +247,49 @@ public class Client {
     /**
      * Connects the client to the specified {@link com.chat.server.Server Server}.
      *
-     * @param _serverName the address of the server to connect to.
+     * <p>
+     *     With the {@link WireFormat#BINARY BINARY} format the {@link BinaryCodec#PREFACE preface} is sent first
+     *     and the connection fails if the server does not send it back.
+     * </p>
+     *
+     * @param _serverName the address of the server to connect to, optionally followed by its port as in <strong>host:port</strong>.
      */
     public void connect(String _serverName) {
+        int colon = _serverName.indexOf(':');
+        if (colon > 0 && colon == _serverName.lastIndexOf(':')) {
+            try {
+                this.connect(_serverName.substring(0, colon), Integer.parseInt(_serverName.substring(colon + 1)));
+                return;
+            } catch (NumberFormatException e) { this.callConnectionEvent(ConnectionEventType.CONNECTION_FAIL); return; }
+        }
+        this.connect(_serverName, Client.SERVER_PORT);
+    }
+
+    /**
+     * Connects the client to the {@link com.chat.server.Server Server} listening on the given port,
+     * such as one of the nodes of a {@link com.chat.server.Cluster Cluster}.
+     *
+     * @param _serverName the address of the server to connect to.
+     * @param _port the port of the server.
+     */
+    public void connect(String _serverName, int _port) {
         try {
-            server = new Socket(_serverName, Client.SERVER_PORT);
-            inputStream = new BufferedReader(new InputStreamReader(server.getInputStream()));
-            outputStream = new DataOutputStream(server.getOutputStream());
+            server = new Socket(_serverName, _port);
+            inputStream = new BufferedInputStream(server.getInputStream());
+            lineReader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+
+            outputStream = new BufferedOutputStream(server.getOutputStream(), WRITE_BUFFER_SIZE);
+            outputChannel = Channels.newChannel(outputStream);
+
+            if (format == WireFormat.BINARY && !this.negotiate()) {
+                server.close();
+                this.callConnectionEvent(ConnectionEventType.CONNECTION_FAIL);
+                return;
+            }
 
             SERVER_ADDRESS = server.getInetAddress().toString();
+            heldSubscriptions.clear();
+            historyRefused.clear();
             open = true;
 
             new Thread(() -> { while (open) this.listen(); } ).start();
@@ -157,6 +299,22 @@ public class Client {
         catch (IOException e) { this.callExceptionEvent(ExceptionEventType.EXCEPTION_IO, e); }
     }
 
+    /**
+     * Sends the {@link BinaryCodec#PREFACE preface} and waits for the {@link com.chat.server.Server Server} to send it back.
+     *
+     * @return true if the server accepted binary frames, false if it refused or did not answer in time.
+     * @throws IOException if an I/O error occurs.
+     */
+    private boolean negotiate() throws IOException {
+        outputChannel.write(BinaryCodec.preface());
+        outputStream.flush();
+
+        server.setSoTimeout(NEGOTIATION_TIMEOUT);
+        try { return inputStream.read() == BinaryCodec.PREFACE; }
+        catch (SocketTimeoutException e) { return false; }
+        finally { server.setSoTimeout(0); }
+    }
+
     /**
      * Disconnects the client from the {@link com.chat.server.Server Server}.
      *
@@ -176,95 +334,273 @@ public class Client {
      * The following is a list of the different cases that can be handled:
      *
      * <ul>
-     *     <li>{@link MessageType#SERVER_SEND_PRIVATE SERVER_SEND_PRIVATE}: writes the message to the specified private {@link Chat}</li>
+     *     <li>{@link MessageType#SERVER_SEND_PRIVATE SERVER_SEND_PRIVATE}: writes the message to the specified private {@link Chat} and follows its history</li>
      *     <li>{@link MessageType#SERVER_SEND_PUBLIC SERVER_SEND_PUBLIC}: writes the message to the public chat</li>
-     *     <li>{@link MessageType#SERVER_SEND_ERROR SERVER_SEND_ERROR}: calls the event to handle error messages</li>
-     *     <li>{@link MessageType#SERVER_APPROVE_NAME SERVER_APPROVE_NAME}: updates the name of the client to the specified value</li>
-     *     <li>{@link MessageType#SERVER_SEND_CLIENTS SERVER_SEND_CLIENTS}: updates the chats list to the specified values</li>
+     *     <li>{@link MessageType#SERVER_SEND_ERROR SERVER_SEND_ERROR}: calls the event to handle error messages, errors about the history are handled by the client</li>
+     *     <li>{@link MessageType#SERVER_APPROVE_NAME SERVER_APPROVE_NAME}: updates the name of the client to the specified value,
+     *     the time of the first approval is kept to skip the messages of this client in the history</li>
+     *     <li>{@link MessageType#SERVER_SEND_CLIENTS SERVER_SEND_CLIENTS}: updates the chats list to the specified values, keeping the chats still listed, and requests the history of the followed chats</li>
+     *     <li>{@link MessageType#SERVER_PRESENCE_SNAPSHOT SERVER_PRESENCE_SNAPSHOT}: collects a chunk of the snapshot of the list of clients</li>
+     *     <li>{@link MessageType#SERVER_PRESENCE_VERSION SERVER_PRESENCE_VERSION}: updates the chats list to the snapshot, if one was sent, keeps the version,
+     *     subscribes to the presence of the subscribed clients the server does not hold yet and requests the history of the followed chats</li>
+     *     <li>{@link MessageType#SERVER_PRESENCE_BATCH SERVER_PRESENCE_BATCH}: adds and removes the chats of the clients that joined and left,
+     *     the clients of an unversioned batch are subscriptions held by the server</li>
+     *     <li>{@link MessageType#SERVER_SEARCH_CLIENTS SERVER_SEARCH_CLIENTS}: calls the event to handle a page of the results of a search</li>
      *     <li>{@link MessageType#SERVER_ADD_CLIENT SERVER_ADD_CLIENT}: adds a new chat to the list of chats</li>
      *     <li>{@link MessageType#SERVER_RENAME_CLIENT SERVER_RENAME_CLIENT}: renames the specified chat</li>
      *     <li>{@link MessageType#SERVER_REMOVE_CLIENT SERVER_REMOVE_CLIENT}: removes a chat from the list of chats</li>
      *     <li>{@link MessageType#SERVER_CLOSE SERVER_CLOSE}: disconnects the client from the server</li>
+     *     <li>{@link MessageType#SERVER_SEND_ROOM SERVER_SEND_ROOM}: writes the message to the specified {@link Room}</li>
+     *     <li>{@link MessageType#SERVER_JOIN_ROOM SERVER_JOIN_ROOM}: adds the room to the list of rooms, with no member until they are sent, or the member to the room</li>
+     *     <li>{@link MessageType#SERVER_LEAVE_ROOM SERVER_LEAVE_ROOM}: removes the room from the list of rooms, or the member from the room</li>
+     *     <li>{@link MessageType#SERVER_SEND_ROOM_MEMBERS SERVER_SEND_ROOM_MEMBERS}: adds a chunk of the members of the specified room</li>
+     *     <li>{@link MessageType#SERVER_SEND_HISTORY SERVER_SEND_HISTORY}: writes a message of the history to the specified {@link Chat}, unless this client sent it since its name was first approved</li>
+     *     <li>{@link MessageType#SERVER_HISTORY_PAGE SERVER_HISTORY_PAGE}: requests the next page of the history of the specified chat</li>
+     *     <li>{@link MessageType#SERVER_HISTORY_END SERVER_HISTORY_END}: keeps the cursor of the specified chat for the next request</li>
      * </ul>
+     *
+     * <p>
+     *     Renamed and removed clients are renamed and removed from the members of the rooms as well.
+     *     Changes of the list of clients older than its version are dropped.
+     * </p>
      */
     public void listen() {
         Message message = this.read();
 
         switch ((message!=null)? message.type() : MessageType.NULL_MESSAGE) {
             case SERVER_SEND_PRIVATE -> {
-                chats.stream()
-                        .filter(chat -> chat.getName().equals(message.sender()))
-                        .findAny()
-                        .ifPresent(chat -> chat.write(message.payload(), message.sender(), MessageScope.PRIVATE, MessageAuthor.RECEIVED));
+                if (lazyPresence && message.sender() != null && !chats.containsKey(message.sender())) {
+                    chats.computeIfAbsent(message.sender(), key -> new Chat(key, this.newStore()));
+                    this.subscribePresence(List.of(message.sender()));
+                }
+                Chat chat = chats.get(message.sender());
+                if (chat != null) chat.write(message.payload(), message.sender(), MessageScope.PRIVATE, MessageAuthor.RECEIVED,
+                        message.sequence(), message.timestamp());
+                if (chat != null) this.followHistory(chat.getName());
 
                 this.callServerEvent(ServerEventType.SERVER_PRIVATE_MESSAGE, message);
             } case SERVER_SEND_PUBLIC -> {
-                publicChat.write(message.payload(), message.sender(), MessageScope.PUBLIC, MessageAuthor.RECEIVED);
+                publicChat.write(message.payload(), message.sender(), MessageScope.PUBLIC, MessageAuthor.RECEIVED,
+                        message.sequence(), message.timestamp());
 
                 this.callServerEvent(ServerEventType.SERVER_PUBLIC_MESSAGE, message);
             } case SERVER_SEND_ERROR -> {
-                this.callServerEvent(ServerEventType.SERVER_ERROR_MESSAGE, message);
+                if (ErrorType.HISTORY_BUSY.name().equals(message.payload())) this.retryHistoryRequest(message.receiver());
+                else if (ErrorType.HISTORY_UNAVAILABLE.name().equals(message.payload())) this.refuseHistory(message.receiver());
+                else this.callServerEvent(ServerEventType.SERVER_ERROR_MESSAGE, message);
             } case SERVER_APPROVE_NAME -> {
                 name = message.payload();
+                if (approved == 0) approved = (message.timestamp() != 0)? message.timestamp() : System.currentTimeMillis();
 
                 this.callServerEvent(ServerEventType.SERVER_RENAME_MESSAGE, message);
             } case SERVER_SEND_CLIENTS -> {
-                chats.clear();
-                if (!message.payload().equals("")) {
-                    Arrays.stream(message.payload().split(","))
-                            .forEach(name -> chats.add(new Chat(name)));
+                this.setChats( (message.payload().equals(""))? new HashSet<>() : new HashSet<>(Arrays.asList(message.payload().split(","))) );
+
+                this.callServerEvent(ServerEventType.SERVER_SET_CHATS, message);
+                this.sendHistoryRequests();
+            } case SERVER_PRESENCE_SNAPSHOT -> {
+                if (presenceSnapshot == null) presenceSnapshot = new HashSet<>();
+                if (!message.payload().equals("")) presenceSnapshot.addAll(Arrays.asList(message.payload().split(",")));
+            } case SERVER_PRESENCE_VERSION -> {
+                if (presenceSnapshot != null) {
+                    presenceSnapshot.remove(name);
+                    this.setChats(presenceSnapshot);
+                    presenceSnapshot = null;
                 }
+                try { presenceVersion = Long.parseLong(message.payload()); }
+                catch (NumberFormatException e) { presenceVersion = 0; }
+                if (lazyPresence) this.sendSubscriptions(subscriptions);
 
                 this.callServerEvent(ServerEventType.SERVER_SET_CHATS, message);
+                this.sendHistoryRequests();
+            } case SERVER_PRESENCE_BATCH -> {
+                if (!this.advancePresence(message)) return;
+                for (String change : message.payload().split(",")) {
+                    if (change.length() < 2) continue;
+
+                    String client = change.substring(1);
+                    if (message.sequence() == 0) heldSubscriptions.add(client);
+                    if (change.charAt(0) == '+') {
+                        if (!client.equals(name)) chats.computeIfAbsent(client, key -> new Chat(key, this.newStore()));
+                    } else {
+                        Chat chat = chats.remove(client);
+                        if (chat != null) chat.close();
+                        rooms.values().forEach(room -> room.getMembers().remove(client));
+                    }
+                }
+
+                this.callServerEvent(ServerEventType.SERVER_UPDATE_CHATS, message);
+            } case SERVER_SEARCH_CLIENTS -> {
+                this.callServerEvent(ServerEventType.SERVER_SEARCH_RESULT, message);
             } case SERVER_ADD_CLIENT -> {
-                chats.add(new Chat(message.payload()));
+                if (!this.advancePresence(message)) return;
+                if (!message.payload().equals(name)) chats.computeIfAbsent(message.payload(), key -> new Chat(key, this.newStore()));
 
                 this.callServerEvent(ServerEventType.SERVER_ADD_CHAT, message);
             } case SERVER_RENAME_CLIENT -> {
-                chats.stream()
-                        .filter(chat -> chat.getName().equals(message.sender()))
-                        .findAny()
-                        .ifPresent(chat -> chat.setName(message.payload()));
+                if (!this.advancePresence(message)) return;
+                Chat chat = (message.sender() != null)? chats.remove(message.sender()) : null;
+                if (chat != null) {
+                    chat.setName(message.payload());
+                    Chat replaced = chats.put(message.payload(), chat);
+                    if (replaced != null) replaced.close();
+                }
+                String cursor = (message.sender() != null)? historyCursors.remove(message.sender()) : null;
+                if (message.sender() != null && subscriptions.remove(message.sender())) subscriptions.add(message.payload());
+                if (message.sender() != null && heldSubscriptions.remove(message.sender())) heldSubscriptions.add(message.payload());
+                if (cursor != null) historyCursors.put(message.payload(), cursor);
+                if (message.sender() != null && historyChats.remove(message.sender())) historyChats.add(message.payload());
+                rooms.values().stream()
+                        .filter(room -> room.getMembers().remove(message.sender()))
+                        .forEach(room -> room.getMembers().add(message.payload()));
 
                 this.callServerEvent(ServerEventType.SERVER_RENAME_CHAT, message);
             } case SERVER_REMOVE_CLIENT -> {
-                chats.stream()
-                        .filter(chat -> chat.getName().equals(message.payload()))
-                        .findAny()
-                        .ifPresent(chats::remove);
+                if (!this.advancePresence(message)) return;
+                Chat chat = chats.remove(message.payload());
+                if (chat != null) chat.close();
+                rooms.values().forEach(room -> room.getMembers().remove(message.payload()));
 
                 this.callServerEvent(ServerEventType.SERVER_REMOVE_CHAT, message);
             } case SERVER_CLOSE -> {
                 this.disconnect(false);
 
                 this.callServerEvent(ServerEventType.SERVER_CLOSE_MESSAGE, message);
+            } case SERVER_SEND_ROOM -> {
+                this.findRoom(message.receiver())
+                        .ifPresent(room -> room.write(message.payload(), message.sender(), MessageScope.ROOM, MessageAuthor.RECEIVED,
+                                message.sequence(), message.timestamp()));
+
+                this.callServerEvent(ServerEventType.SERVER_ROOM_MESSAGE, message);
+            } case SERVER_JOIN_ROOM -> {
+                if (message.payload().equals(name)) {
+                    rooms.computeIfAbsent(message.receiver(), key -> new Room(key, this.newStore())).getMembers().clear();
+                } else {
+                    this.findRoom(message.receiver()).ifPresent(room -> room.getMembers().add(message.payload()));
+                }
+
+                this.callServerEvent(ServerEventType.SERVER_JOIN_ROOM, message);
+            } case SERVER_LEAVE_ROOM -> {
+                if (message.payload().equals(name)) {
+                    Room room = rooms.remove(message.receiver());
+                    if (room != null) room.close();
+                } else {
+                    this.findRoom(message.receiver()).ifPresent(room -> room.getMembers().remove(message.payload()));
+                }
+
+                this.callServerEvent(ServerEventType.SERVER_LEAVE_ROOM, message);
+            } case SERVER_SEND_ROOM_MEMBERS -> {
+                this.findRoom(message.receiver()).ifPresent(room -> {
+                    if (!message.payload().equals("")) room.getMembers().addAll(Arrays.asList(message.payload().split(",")));
+                });
+
+                this.callServerEvent(ServerEventType.SERVER_SET_ROOM_MEMBERS, message);
+            } case SERVER_SEND_HISTORY -> {
+                boolean sent = name != null && name.equals(message.sender());
+                if (sent && approved != 0 && message.timestamp() >= approved) return;
+
+                this.findChat(message.receiver())
+                        .ifPresent(chat -> chat.write(message.payload(), message.sender(),
+                                (chat == publicChat)? MessageScope.PUBLIC : MessageScope.PRIVATE,
+                                (sent)? MessageAuthor.SENT : MessageAuthor.RECEIVED,
+                                message.sequence(), message.timestamp()));
+            } case SERVER_HISTORY_PAGE -> {
+                historyCursors.put(message.receiver(), message.payload());
+                historyRetries.remove(message.receiver());
+                this.sendHistoryRequest(message.receiver());
+
+                this.callServerEvent(ServerEventType.SERVER_HISTORY, message);
+            } case SERVER_HISTORY_END -> {
+                historyCursors.put(message.receiver(), message.payload());
+                historyRetries.remove(message.receiver());
+
+                this.callServerEvent(ServerEventType.SERVER_HISTORY, message);
             }
         }
     }
 
     /**
-     * Waits for a {@link String} from the {@link Socket}'s {@link BufferedReader} and reads it.
+     * Updates the private chats to a list of names, keeping the chats still listed and closing the others.
+     *
+     * @param _names the names of the other clients.
+     */
+    private void setChats(Set<String> _names) {
+        chats.values().removeIf(chat -> {
+            if (_names.contains(chat.getName())) return false;
+            chat.close();
+            return true;
+        });
+        _names.forEach(name -> chats.computeIfAbsent(name, key -> new Chat(key, this.newStore())));
+    }
+
+    /**
+     * Moves the version of the list of clients to the version of a change.
+     *
+     * @param _change a change of the list of clients.
+     * @return false if the change is not newer than the version, and was already applied
+     */
+    private boolean advancePresence(Message _change) {
+        if (_change.sequence() == 0) return true;
+        if (_change.sequence() <= presenceVersion) return false;
+
+        presenceVersion = _change.sequence();
+        return true;
+    }
+
+    /**
+     * Waits for a frame from the {@link Socket}'s input stream and reads it,
+     * either a JSON line or a {@link BinaryCodec binary frame} depending on the {@link WireFormat}.
      *
      * <p>
-     *     Closes the Client if a {@link SocketException} is thrown.
+     *     Disconnects the Client if the end of the stream is reached.
      * </p>
      *
-     * @return the {@link Message} read from the {@link BufferedReader}, or null if an {@link Exception} occurred.
+     * @return the {@link Message} read from the input stream, or null if an {@link Exception} occurred.
      */
     public Message read() {
-        try { return Utils.serializeJson(inputStream.readLine()); }
+        try {
+            if (format == WireFormat.BINARY) {
+                Message message = BinaryCodec.read(inputStream);
+                if (message != null) return message;
+            } else {
+                String line = lineReader.readLine();
+                if (line != null) return Utils.serializeJson(line);
+            }
+            if (open) this.disconnect(false);
+        }
         catch (SocketException e) { this.callExceptionEvent(ExceptionEventType.EXCEPTION_SOCKET, e); }
         catch (IOException e) { this.callExceptionEvent(ExceptionEventType.EXCEPTION_IO, e); }
         return null;
     }
 
     /**
-     * Writes a {@link Message} to the {@link Socket}'s {@link DataOutputStream}.
+     * Writes a {@link Message} to the {@link Socket}'s output stream, encoded in the client's {@link WireFormat}, and flushes it.
+     *
+     * @param _message the {@link Message} to write to the output stream.
+     */
+    public void write(Message _message) { this.write(_message, true); }
+
+    /**
+     * Writes a {@link Message} to the {@link Socket}'s buffered output stream, encoded in the client's {@link WireFormat}.
      *
-     * @param _message the {@link Message} to write to the {@link DataOutputStream}.
+     * @param _message the {@link Message} to write to the output stream.
+     * @param _flush whether to flush the output stream, false to coalesce the message with the next ones.
      */
-    public void write(Message _message) {
-        try { outputStream.writeBytes(Utils.deserializeJson(_message) + '\n'); }
+    public synchronized void write(Message _message, boolean _flush) {
+        ByteBuffer frame = Utils.encodeFrame(_message, format);
+        if (frame == null) return;
+
+        try {
+            while (frame.hasRemaining()) outputChannel.write(frame);
+            if (_flush) outputStream.flush();
+        } catch (IOException e) { this.callExceptionEvent(ExceptionEventType.EXCEPTION_IO, e); }
+    }
+
+    /**
+     * Flushes the {@link Message Messages} written without flushing to the {@link Socket}.
+     */
+    public synchronized void flush() {
+        try { outputStream.flush(); }
         catch (IOException e) { this.callExceptionEvent(ExceptionEventType.EXCEPTION_IO, e); }
     }
 
@@ -274,7 +610,8 @@ public class Client {
      * @param _payload the new name for the client.
      */
     public void sendChangeNameMessage(String _payload) {
-        Message message = new Message(MessageType.CLIENT_SET_NAME, _payload, this.name);
+        Message message = new Message(MessageType.CLIENT_SET_NAME, _payload, this.name,
+                (lazyPresence)? LAZY_PRESENCE : (presenceVersion != 0)? Long.toString(presenceVersion) : null);
         this.write(message);
 
         this.callClientEvent(ClientEventType.CLIENT_RENAME_CHAT, message);
@@ -287,10 +624,7 @@ public class Client {
      * @param _payload the message to be sent.
      */
     public void sendPrivateMessage(String _target, String _payload) {
-        chats.stream()
-                .filter(chat -> chat.getName().equals(_target))
-                .findAny()
-                .ifPresent(chat -> chat.write(_payload, this.name, MessageScope.PRIVATE, MessageAuthor.SENT));
+        this.findChat(_target).ifPresent(chat -> chat.write(_payload, this.name, MessageScope.PRIVATE, MessageAuthor.SENT));
 
         Message message = new Message(MessageType.CLIENT_SEND_PRIVATE, _payload, this.name, _target);
         this.write(message);
@@ -312,11 +646,226 @@ public class Client {
         this.callClientEvent(ClientEventType.CLIENT_PUBLIC_MESSAGE, message);
     }
 
+    /**
+     * Sends a {@link Message} to the {@link com.chat.server.Server Server} requesting to join a room,
+     * the room is added to the list of rooms once the server confirms it.
+     *
+     * @param _room the name of the room.
+     */
+    public void sendJoinRoomMessage(String _room) {
+        Message message = new Message(MessageType.CLIENT_JOIN_ROOM, _room, this.name);
+        this.write(message);
+
+        this.callClientEvent(ClientEventType.CLIENT_JOIN_ROOM, message);
+    }
+
+    /**
+     * Sends a {@link Message} to the {@link com.chat.server.Server Server} requesting to leave a room,
+     * the room is removed from the list of rooms once the server confirms it.
+     *
+     * @param _room the name of the room.
+     */
+    public void sendLeaveRoomMessage(String _room) {
+        Message message = new Message(MessageType.CLIENT_LEAVE_ROOM, _room, this.name);
+        this.write(message);
+
+        this.callClientEvent(ClientEventType.CLIENT_LEAVE_ROOM, message);
+    }
+
+    /**
+     * Sends a {@link Message} to the other members of a room.
+     *
+     * @param _room the name of the room.
+     * @param _payload the message to be sent.
+     */
+    public void sendRoomMessage(String _room, String _payload) {
+        this.findRoom(_room).ifPresent(room -> room.write(_payload, this.name, MessageScope.ROOM, MessageAuthor.SENT));
+
+        Message message = new Message(MessageType.CLIENT_SEND_ROOM, _payload, this.name, _room);
+        this.write(message);
+
+        this.callClientEvent(ClientEventType.CLIENT_ROOM_MESSAGE, message);
+    }
+
+    /**
+     * Subscribes to the presence of other clients, the server answers which of them are online
+     * and tells when they join, leave or change name, their chats are added while they are online. <br>
+     * Only useful with {@link #setLazyPresence(boolean) lazy presence}, other clients are told about every client.
+     *
+     * @param _names the names of the clients.
+     */
+    public void subscribePresence(Collection<String> _names) {
+        if (_names.isEmpty()) return;
+        subscriptions.addAll(_names);
+        if (open) this.sendSubscriptions(_names);
+    }
+
+    /**
+     * Sends the subscriptions the server does not hold yet, each name once.
+     *
+     * @param _names the names of the clients.
+     */
+    private void sendSubscriptions(Collection<String> _names) {
+        List<String> missing = _names.stream().distinct().filter(name -> !heldSubscriptions.contains(name)).toList();
+        this.writeChunked(MessageType.CLIENT_SUBSCRIBE_PRESENCE, missing);
+    }
+
+    /**
+     * Sends names in messages of at most {@value #SUBSCRIPTION_CHUNK_SIZE} names, so that the longest names still fit in a frame.
+     *
+     * @param _type the type of the messages.
+     * @param _names the names, nothing is sent if there is none.
+     */
+    private void writeChunked(MessageType _type, List<String> _names) {
+        if (_names.isEmpty()) return;
+
+        for (int from = 0; from < _names.size(); from += SUBSCRIPTION_CHUNK_SIZE) {
+            List<String> chunk = _names.subList(from, Math.min(from + SUBSCRIPTION_CHUNK_SIZE, _names.size()));
+            this.write( new Message(_type, String.join(",", chunk), this.name), false );
+        }
+        this.flush();
+    }
+
+    /**
+     * Unsubscribes from the presence of other clients, their chats are kept.
+     *
+     * @param _names the names of the clients.
+     */
+    public void unsubscribePresence(Collection<String> _names) {
+        if (_names.isEmpty()) return;
+        subscriptions.removeAll(_names);
+        heldSubscriptions.removeAll(_names);
+        if (open) this.writeChunked(MessageType.CLIENT_UNSUBSCRIBE_PRESENCE, List.copyOf(_names));
+    }
+
+    /**
+     * Sends a {@link Message} to the {@link com.chat.server.Server Server} searching the names of the clients online,
+     * the page of results is handled by the {@link ServerEventType#SERVER_SEARCH_RESULT SERVER_SEARCH_RESULT} event.
+     *
+     * @param _prefix the prefix of the names, empty to list every name.
+     * @param _cursor the receiver of the previous page of results, or null for the first page.
+     */
+    public void searchClients(String _prefix, String _cursor) {
+        this.write( new Message(MessageType.CLIENT_SEARCH_CLIENTS, _prefix, this.name, _cursor) );
+    }
+
+    /**
+     * Sends a {@link Message} to the {@link com.chat.server.Server Server} requesting the next page of the history of a chat,
+     * starting from the cursor of the last page received.
+     *
+     * @param _chat the name of the chat, {@link #PUBLIC_CHAT_NAME} or the name of another client.
+     */
+    public void sendHistoryRequest(String _chat) {
+        if (!historyAvailable || !open) return;
+        this.write( new Message(MessageType.CLIENT_REQUEST_HISTORY, historyCursors.get(_chat), this.name, _chat) );
+    }
+
+    /**
+     * Starts following the history of a private chat, such as when the user opens it, requesting its first page. <br>
+     * Does nothing if the chat is already followed, is not a private chat or the server refused its history.
+     *
+     * @param _chat the name of the chat.
+     */
+    public void followHistory(String _chat) {
+        if (_chat == null || !chats.containsKey(_chat) || historyRefused.contains(_chat) || !historyChats.add(_chat)) return;
+        this.sendHistoryRequest(_chat);
+    }
+
+    /**
+     * Requests the history of the public chat and of the followed private chats at once.
+     */
+    private void sendHistoryRequests() {
+        if (!historyAvailable) return;
+
+        historyChats.removeIf(chat -> !chats.containsKey(chat));
+        this.write( new Message(MessageType.CLIENT_REQUEST_HISTORY, historyCursors.get(PUBLIC_CHAT_NAME), this.name, PUBLIC_CHAT_NAME), false );
+        for (String chat : historyChats)
+            this.write( new Message(MessageType.CLIENT_REQUEST_HISTORY, historyCursors.get(chat), this.name, chat), false );
+        this.flush();
+    }
+
+    /**
+     * Stops following the history of a chat the server has no history of, or the history altogether if it is the public chat.
+     *
+     * @param _chat the name of the chat, may be null.
+     */
+    private void refuseHistory(String _chat) {
+        if (_chat == null || PUBLIC_CHAT_NAME.equals(_chat)) {
+            historyAvailable = false;
+            return;
+        }
+        historyChats.remove(_chat);
+        historyRetries.remove(_chat);
+        historyRefused.add(_chat);
+    }
+
+    /**
+     * Requests the history of a chat again after a random delay, once the server refused because it was busy. <br>
+     * The delay doubles with every refusal of the same chat, after {@value #HISTORY_MAX_RETRIES} refusals the chat is asked
+     * for again only with the next list of clients.
+     *
+     * @param _chat the name of the chat, may be null.
+     */
+    private void retryHistoryRequest(String _chat) {
+        if (_chat == null) return;
+
+        int retries = historyRetries.merge(_chat, 1, Integer::sum);
+        if (retries > HISTORY_MAX_RETRIES) {
+            historyRetries.remove(_chat);
+            return;
+        }
+
+        long base = (long) HISTORY_RETRY_DELAY << (retries - 1);
+        long delay = ThreadLocalRandom.current().nextLong(base, 2 * base);
+        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> this.sendHistoryRequest(_chat));
+    }
+
+    /**
+     * Finds the public chat or a private {@link Chat} by name.
+     *
+     * @param _chat the name of the chat, may be null.
+     * @return the chat, or an empty optional if there is no such chat.
+     */
+    public Optional<Chat> findChat(String _chat) {
+        if (PUBLIC_CHAT_NAME.equals(_chat)) return Optional.of(publicChat);
+        return (_chat != null)? Optional.ofNullable(chats.get(_chat)) : Optional.empty();
+    }
+
+    /**
+     * Finds a joined {@link Room} by name.
+     *
+     * @param _room the name of the room, may be null.
+     * @return the room, or an empty optional if it was not joined.
+     */
+    public Optional<Room> findRoom(String _room) {
+        return (_room != null)? Optional.ofNullable(rooms.get(_room)) : Optional.empty();
+    }
+
     /**
      * Sends a {@link Message} to the {@link com.chat.server.Server Server} indicating that the client is disconnecting.
      */
     public void sendExitMessage() { this.disconnect(true); }
 
+    /**
+     * Sets the {@link WireFormat} used on the next connection.
+     *
+     * @param _format the format to use, {@link WireFormat#JSON JSON} for servers that do not support binary frames.
+     */
+    public void setWireFormat(WireFormat _format) { format = _format; }
+
+    /**
+     * Sets whether the client only receives the presence of the clients it subscribes to, before connecting.
+     *
+     * @param _lazyPresence true to only receive the presence of the subscribed clients, false to receive every client.
+     */
+    public void setLazyPresence(boolean _lazyPresence) { lazyPresence = _lazyPresence; }
+
+    /** @return true if the client only receives the presence of the clients it subscribes to */
+    public boolean isLazyPresence() { return lazyPresence; }
+
+    /** @return the {@link WireFormat} used to exchange messages with the {@link com.chat.server.Server Server} */
+    public WireFormat getWireFormat() { return format; }
+
     /** @return true if the {@link com.chat.server.Server Server} is open, false otherwise */
     public boolean isOpen() { return open; }
 
@@ -332,6 +881,9 @@ public class Client {
     /** @return the public chat */
     public Chat getPublicChat() { return publicChat; }
 
-    /** @return a set of all the private chats */
-    public HashSet<Chat> getChats() { return chats; }
+    /** @return a read-only live view of all the private chats, safe to iterate while the listener thread changes them */
+    public Collection<Chat> getChats() { return Collections.unmodifiableCollection(chats.values()); }
+
+    /** @return a read-only live view of all the joined rooms, safe to iterate while the listener thread changes them */
+    public Collection<Room> getRooms() { return Collections.unmodifiableCollection(rooms.values()); }
 }
@@ -1,28 +1,61 @@
 package com.chat.client.chat;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
  * A chat is a collection of {@link ChatMessage}s that can be written to and read from. <br>
- * Each chat has a name and a list of messages.
+ * Each chat has a name and a {@link ChatMessageStore} of messages, which keeps only the most recent ones in memory.
+ *
+ * <p>
+ *     Messages numbered by the server are kept in the order of their sequence numbers, so a message that arrives late,
+ *     such as one replayed from the history, is put back in its place. <br>
+ *     The chat remembers the numbers of its last {@value #DEDUP_WINDOW} numbered messages and drops a message whose number
+ *     it already holds, such as a message received both live and from the history.
+ * </p>
+ *
+ * <p>
+ *     Every message written is published to the listeners of the chat as a {@link ChatUpdate} with the index it was written at,
+ *     in the order of the writes, so a view can apply the changes instead of reading the whole chat again.
+ *     Listeners are called on the writing thread and must only hand the update over.
+ * </p>
  *
  * @see ChatMessage
+ * @see ChatMessageStore
  * @see MessageAuthor
  * @see MessageScope
  */
 public class Chat {
-    private final List<ChatMessage> messages = Collections.synchronizedList(new ArrayList<>());
+    /** The number of sequence numbers a chat remembers to drop duplicated messages. */
+    public static final int DEDUP_WINDOW = 1024;
+
+    private final ChatMessageStore messages;
+    private final CopyOnWriteArrayList<Consumer<ChatUpdate>> listeners = new CopyOnWriteArrayList<>();
     private String name;
 
+    private final long[] window = new long[DEDUP_WINDOW];
+    private final Set<Long> seen = new HashSet<>();
+    private int oldest = 0;
+
+    /**
+     * Constructs a new chat with the given name, keeping the default number of messages in memory and forgetting older ones.
+     *
+     * @param _name the name of the chat.
+     */
+    public Chat(String _name) { this(_name, new ChatMessageStore(ChatMessageStore.DEFAULT_WINDOW, null)); }
+
     /**
      * Constructs a new chat with the given name.
      *
      * @param _name the name of the chat.
+     * @param _messages the store of the messages of the chat.
      */
-    public Chat(String _name) {
+    public Chat(String _name, ChatMessageStore _messages) {
         name = _name;
+        messages = _messages;
     }
 
     /**
@@ -34,9 +67,81 @@ public class Chat {
      * @param _author the message author
      */
     public void write(String _message, String _writer, MessageScope _scope, MessageAuthor _author) {
-        messages.add( new ChatMessage(_message, _writer, _scope, _author) );
+        this.append( new ChatMessage(_message, _writer, _scope, _author) );
     }
 
+    /**
+     * Writes a new {@link ChatMessage} numbered by the server to this chat, unless it was already written.
+     *
+     * @param _message the message's text
+     * @param _writer the name of the writer
+     * @param _scope whether the chat is public or private
+     * @param _author the message author
+     * @param _sequence the sequence number of the message, 0 if it has none
+     * @param _timestamp the time the message was numbered
+     * @return true if the message was written, false if it was a duplicate
+     */
+    public boolean write(String _message, String _writer, MessageScope _scope, MessageAuthor _author, long _sequence, long _timestamp) {
+        ChatMessage message = new ChatMessage(_message, _writer, _scope, _author, _sequence, _timestamp);
+        if (_sequence == 0) {
+            this.append(message);
+            return true;
+        }
+
+        synchronized (seen) {
+            if (!seen.add(_sequence)) return false;
+            if (window[oldest] != 0) seen.remove(window[oldest]);
+            window[oldest] = _sequence;
+            oldest = (oldest + 1) % DEDUP_WINDOW;
+        }
+        synchronized (this) { this.publish(messages.insert(message), message); }
+        return true;
+    }
+
+    /**
+     * Appends a {@link ChatMessage} after the last one and publishes it.
+     *
+     * @param _message the message.
+     */
+    private synchronized void append(ChatMessage _message) { this.publish(messages.add(_message), _message); }
+
+    /**
+     * Publishes a written {@link ChatMessage} to the listeners.
+     *
+     * @param _index the index the message was written at.
+     * @param _message the message.
+     */
+    private void publish(long _index, ChatMessage _message) {
+        if (listeners.isEmpty()) return;
+
+        ChatUpdate update = new ChatUpdate(this, _index, _message);
+        listeners.forEach(listener -> listener.accept(update));
+    }
+
+    /**
+     * Adds a listener called with every {@link ChatUpdate} of this chat.
+     *
+     * @param _listener the listener, called on the writing thread.
+     */
+    public void addListener(Consumer<ChatUpdate> _listener) { listeners.add(_listener); }
+
+    /**
+     * Removes a listener of this chat.
+     *
+     * @param _listener the listener.
+     */
+    public void removeListener(Consumer<ChatUpdate> _listener) { listeners.remove(_listener); }
+
+    /**
+     * Removes every message of this chat.
+     */
+    public void clear() { messages.clear(); }
+
+    /**
+     * Releases the messages of this chat once it is no longer used, deleting its spilled messages.
+     */
+    public void close() { messages.close(); }
+
     /**
      * Sets the name of this chat.
      *
@@ -50,7 +155,18 @@ public class Chat {
     public String getName() { return name; }
 
     /**
-     * @return the list of {@link com.chat.utils.message.Message Message}s in this chat
+     * @return the {@link ChatMessage}s of this chat kept in memory, oldest first
+     */
+    public List<ChatMessage> getMessages() { return messages.getRecent(); }
+
+    /**
+     * @param _from the index of the first message.
+     * @return the {@link ChatMessage}s of this chat from the given index, including the spilled ones, oldest first
+     */
+    public List<ChatMessage> getMessages(long _from) { return messages.getFrom(_from); }
+
+    /**
+     * @return the {@link ChatMessageStore} of the messages of this chat
      */
-    public List<ChatMessage> getMessages() { return messages; }
+    public ChatMessageStore getStore() { return messages; }
 }
@@ -11,5 +11,9 @@ package com.chat.client.chat;
  * @param writer the name of the writer
  * @param scope whether the chat of this message is public or private
  * @param author the message author
+ * @param sequence the number the server gave the message within its chat, 0 for messages written by this client
+ * @param timestamp the time the server numbered the message, in milliseconds since the epoch, 0 if it is unknown
  */
-public record ChatMessage (String message, String writer, MessageScope scope, MessageAuthor author) {}
+public record ChatMessage (String message, String writer, MessageScope scope, MessageAuthor author, long sequence, long timestamp) {
+    public ChatMessage(String message, String writer, MessageScope scope, MessageAuthor author) { this(message, writer, scope, author, 0, 0); }
+}
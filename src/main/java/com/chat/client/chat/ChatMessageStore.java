@@ -0,0 +1,303 @@
+package com.chat.client.chat;
+
+import com.chat.utils.Utils;
+import com.chat.utils.log.LogLevel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The ChatMessageStore class holds the {@link ChatMessage ChatMessages} of a {@link Chat}, keeping only the most recent ones in memory.
+ *
+ * <p>
+ *     Every message gets the next index of the store. The last messages, up to the size of the window, are kept in a ring buffer:
+ *     once it is full the oldest {@value #SPILL_BATCH} messages are evicted at once and, if the store has a spill directory,
+ *     appended to a spill file with a single write, otherwise they are forgotten. Spilled messages are read back from the file
+ *     by their index, so a chat can page through its whole history while only its window stays on the heap.
+ * </p>
+ *
+ * <p>
+ *     Messages are written by the listener and the UI threads, one at a time, and the window is read by the UI thread without locking:
+ *     every change to the ring is bracketed by a version number, odd while the change is in progress, and a reader copies
+ *     the window again if the version changed while it was copying. Reading spilled messages waits for the writers, it only happens
+ *     when the user scrolls back past the window.
+ * </p>
+ *
+ * @see Chat
+ */
+public class ChatMessageStore {
+    /** The number of messages kept in memory by default. */
+    public static final int DEFAULT_WINDOW = 1000;
+    /** The maximum number of messages evicted from the window at once. */
+    public static final int SPILL_BATCH = 64;
+
+    private final AtomicReferenceArray<ChatMessage> ring;
+    private final Path spillDirectory;
+
+    private volatile long version = 0;
+    private volatile long first = 0;
+    private volatile long end = 0;
+
+    private volatile FileChannel spill;
+    private long spillBase = 0;
+    private long spillSize = 0;
+    private long[] offsets = new long[0];
+    private int spilled = 0;
+
+    /**
+     * Creates a new instance of ChatMessageStore.
+     *
+     * @param _window the number of messages kept in memory, at least {@value #SPILL_BATCH}.
+     * @param _spillDirectory the directory of the spill file, or null to forget the messages evicted from the window.
+     */
+    public ChatMessageStore(int _window, Path _spillDirectory) {
+        ring = new AtomicReferenceArray<>(Math.max(_window, SPILL_BATCH));
+        spillDirectory = _spillDirectory;
+    }
+
+    /**
+     * Appends a message after the last one.
+     *
+     * @param _message the message.
+     * @return the index of the message.
+     */
+    public synchronized long add(ChatMessage _message) {
+        if (end - first == ring.length()) this.evict();
+
+        version++;
+        ring.set(this.slot(end), _message);
+        end++;
+        version++;
+        return end - 1;
+    }
+
+    /**
+     * Inserts a numbered message after the last message of the window with a lower or no sequence number,
+     * so that the numbered messages stay in order. A message older than the whole window goes first in the window.
+     *
+     * @param _message the message, with a sequence number.
+     * @return the index of the message, the messages after it moved one index down.
+     */
+    public synchronized long insert(ChatMessage _message) {
+        if (end - first == ring.length()) this.evict();
+
+        long index = end;
+        while (index > first && ring.get(this.slot(index - 1)).sequence() > _message.sequence()) index--;
+
+        version++;
+        for (long i = end; i > index; i--) ring.set(this.slot(i), ring.get(this.slot(i - 1)));
+        ring.set(this.slot(index), _message);
+        end++;
+        version++;
+        return index;
+    }
+
+    /**
+     * Removes every message, deleting the spill file.
+     */
+    public synchronized void clear() {
+        version++;
+        for (int i = 0; i < ring.length(); i++) ring.set(i, null);
+        first = end;
+        version++;
+
+        this.close();
+        offsets = new long[0];
+        spillBase = end;
+        spilled = 0;
+        spillSize = 0;
+    }
+
+    /**
+     * Copies the messages of the window, without locking.
+     *
+     * @return the messages in memory, oldest first.
+     */
+    public List<ChatMessage> getRecent() { return this.copyWindow(new long[1]); }
+
+    /**
+     * Gets the messages from an index to the last one, reading the spilled ones back from the spill file.
+     *
+     * @param _from the index of the first message, older messages than {@link #getOldestIndex()} cannot be read.
+     * @return the messages, oldest first.
+     */
+    public List<ChatMessage> getFrom(long _from) {
+        long[] windowStart = new long[1];
+        List<ChatMessage> recent = this.copyWindow(windowStart);
+        if (_from >= windowStart[0]) return recent.subList((int) Math.min(_from - windowStart[0], recent.size()), recent.size());
+
+        List<ChatMessage> messages = this.readSpilled(Math.max(_from, this.getOldestIndex()), windowStart[0]);
+        messages.addAll(recent);
+        return messages;
+    }
+
+    /**
+     * Copies the window, retrying while a writer changes it.
+     *
+     * @param _first receives the index of the first copied message.
+     * @return the messages in memory, oldest first.
+     */
+    private List<ChatMessage> copyWindow(long[] _first) {
+        while (true) {
+            long before = version;
+            if ((before & 1) == 0) {
+                long from = first, to = end;
+                List<ChatMessage> messages = new ArrayList<>((int) (to - from));
+                for (long i = from; i < to; i++) messages.add(ring.get(this.slot(i)));
+
+                if (version == before) {
+                    _first[0] = from;
+                    return messages;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Reads spilled messages back from the spill file.
+     *
+     * @param _from the index of the first message.
+     * @param _to the index after the last message.
+     * @return the messages that could be read, oldest first.
+     */
+    private synchronized List<ChatMessage> readSpilled(long _from, long _to) {
+        List<ChatMessage> messages = new ArrayList<>();
+        int from = (int) (_from - spillBase);
+        if (spill == null || from < 0 || from >= spilled || _from >= _to) return messages;
+
+        int last = (int) Math.min(_to - spillBase, spilled);
+        long position = offsets[from];
+        long size = ((last < spilled)? offsets[last] : spillSize) - position;
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        try {
+            while (buffer.hasRemaining() && spill.read(buffer, position + buffer.position()) >= 0);
+            buffer.flip();
+            for (int i = from; i < last; i++) messages.add(ChatMessageStore.decode(buffer));
+        } catch (IOException | RuntimeException e) { Utils.logln(LogLevel.ERROR, "exception: could not read spilled messages; {}", e.getMessage()); }
+        return messages;
+    }
+
+    /**
+     * Evicts the oldest messages of the full window, spilling them if the store has a spill directory.
+     */
+    private void evict() {
+        int count = (int) Math.min(SPILL_BATCH, end - first);
+        if (spillDirectory != null) this.spill(count);
+
+        version++;
+        for (int i = 0; i < count; i++) ring.set(this.slot(first + i), null);
+        first += count;
+        version++;
+    }
+
+    /**
+     * Appends the oldest messages of the window to the spill file with a single write. <br>
+     * If the spill file cannot be written the messages are forgotten, as if the store had no spill directory.
+     *
+     * @param _count the number of messages to spill.
+     */
+    private void spill(int _count) {
+        if (spillBase + spilled != first) return;
+
+        List<byte[]> records = new ArrayList<>(_count);
+        int size = 0;
+        for (int i = 0; i < _count; i++) {
+            byte[] record = ChatMessageStore.encode(ring.get(this.slot(first + i)));
+            records.add(record);
+            size += record.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        records.forEach(buffer::put);
+        buffer.flip();
+
+        try {
+            if (spill == null) spill = FileChannel.open(Files.createTempFile(spillDirectory, "chat-", ".spill"),
+                    StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+            while (buffer.hasRemaining()) spill.write(buffer, spillSize + buffer.position());
+        } catch (IOException e) {
+            Utils.logln(LogLevel.ERROR, "exception: could not spill messages; {}", e.getMessage());
+            return;
+        }
+
+        if (offsets.length < spilled + _count) offsets = Arrays.copyOf(offsets, Math.max(spilled + _count, offsets.length * 2));
+        long position = spillSize;
+        for (byte[] record : records) {
+            offsets[spilled++] = position;
+            position += record.length;
+        }
+        spillSize = position;
+    }
+
+    /**
+     * Closes and deletes the spill file, the spilled messages can no longer be read.
+     */
+    public synchronized void close() {
+        if (spill == null) return;
+
+        try { spill.close(); }
+        catch (IOException e) { Utils.logln(LogLevel.ERROR, "exception: IO exception occurred; {}", e.getMessage()); }
+        spill = null;
+    }
+
+    /**
+     * @param _message a message.
+     * @return the spill record of the message: the scope, the author, the sequence number, the timestamp, the writer and the text
+     */
+    private static byte[] encode(ChatMessage _message) {
+        byte[] writer = (_message.writer() != null)? _message.writer().getBytes(StandardCharsets.UTF_8) : new byte[0];
+        byte[] text = (_message.message() != null)? _message.message().getBytes(StandardCharsets.UTF_8) : new byte[0];
+
+        return ByteBuffer.allocate(2 + 2 * Long.BYTES + 2 * Integer.BYTES + writer.length + text.length)
+                .put((byte) _message.scope().ordinal())
+                .put((byte) _message.author().ordinal())
+                .putLong(_message.sequence())
+                .putLong(_message.timestamp())
+                .putInt(writer.length).put(writer)
+                .putInt(text.length).put(text)
+                .array();
+    }
+
+    /**
+     * @param _buffer the buffer positioned at a spill record.
+     * @return the decoded message
+     */
+    private static ChatMessage decode(ByteBuffer _buffer) {
+        MessageScope scope = MessageScope.values()[_buffer.get()];
+        MessageAuthor author = MessageAuthor.values()[_buffer.get()];
+        long sequence = _buffer.getLong();
+        long timestamp = _buffer.getLong();
+
+        byte[] writer = new byte[_buffer.getInt()];
+        _buffer.get(writer);
+        byte[] text = new byte[_buffer.getInt()];
+        _buffer.get(text);
+
+        return new ChatMessage(new String(text, StandardCharsets.UTF_8), new String(writer, StandardCharsets.UTF_8), scope, author, sequence, timestamp);
+    }
+
+    private int slot(long _index) { return (int) (_index % ring.length()); }
+
+    /** @return the index of the oldest message that can still be read */
+    public synchronized long getOldestIndex() { return (spill != null)? spillBase : first; }
+
+    /** @return the index of the oldest message in memory */
+    public long getFirstIndex() { return first; }
+
+    /** @return the number of messages kept in memory at most */
+    public int getWindow() { return ring.length(); }
+
+    /** @return the number of messages written to the store */
+    public long getSize() { return end; }
+}
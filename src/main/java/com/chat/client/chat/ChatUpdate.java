@@ -0,0 +1,12 @@
+package com.chat.client.chat;
+
+/**
+ * A record representing a {@link ChatMessage} written to a {@link Chat}, as published to the listeners of the chat.
+ *
+ * @see Chat#addListener(java.util.function.Consumer)
+ *
+ * @param chat the chat the message was written to
+ * @param index the index the message was written at, the messages from that index on moved one place down
+ * @param message the message
+ */
+public record ChatUpdate (Chat chat, long index, ChatMessage message) {}
@@ -12,5 +12,8 @@ public enum MessageScope {
     PRIVATE,
 
     /** Indicates that the {@link ChatMessage} was sent in the public {@link Chat}. */
-    PUBLIC
+    PUBLIC,
+
+    /** Indicates that the {@link ChatMessage} was sent in a {@link Room}. */
+    ROOM
 }
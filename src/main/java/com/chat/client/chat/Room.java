@@ -0,0 +1,35 @@
+package com.chat.client.chat;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A room is a {@link Chat} shared by the {@link com.chat.client.Client Client}s that joined it. <br>
+ * Besides its messages, a room keeps the names of its other members.
+ *
+ * @see Chat
+ */
+public class Room extends Chat {
+    private final Set<String> members = Collections.synchronizedSet(new LinkedHashSet<>());
+
+    /**
+     * Constructs a new room with the given name.
+     *
+     * @param _name the name of the room.
+     */
+    public Room(String _name) { super(_name); }
+
+    /**
+     * Constructs a new room with the given name.
+     *
+     * @param _name the name of the room.
+     * @param _messages the store of the messages of the room.
+     */
+    public Room(String _name, ChatMessageStore _messages) { super(_name, _messages); }
+
+    /**
+     * @return the names of the other members of this room
+     */
+    public Set<String> getMembers() { return members; }
+}
@@ -6,6 +6,8 @@
  *     It consists of: <br>
  *      - a {@link com.chat.client.chat.Chat Chat} class that represents the chat between two or more writers<br>
  *      - a {@link com.chat.client.chat.ChatMessage ChatMessage} record that represents the messages in a chat. <br>
+ *      - a {@link com.chat.client.chat.ChatUpdate ChatUpdate} record that represents a message written to a chat, as published to its listeners. <br>
+ *      - a {@link com.chat.client.chat.ChatMessageStore ChatMessageStore} class that keeps the recent messages of a chat in memory and spills the older ones to a file. <br>
  *      - a {@link com.chat.client.chat.MessageAuthor MessageAuthor} enum that indicates the author of the message. <br>
  *      - a {@link com.chat.client.chat.MessageScope MessageScope} enum that indicates the scope of the message.
  * </p>
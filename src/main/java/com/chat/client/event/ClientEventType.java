@@ -23,6 +23,21 @@ public enum ClientEventType {
      * {@link com.chat.utils.message.MessageType#CLIENT_SET_NAME CLIENT_SET_NAME}. */
     CLIENT_RENAME_CHAT,
 
+    /** An event type indicating that the client sent a {@link com.chat.utils.message.Message Message} to the
+     * {@link com.chat.server.Server Server} of {@link com.chat.utils.message.MessageType MessageType}
+     * {@link com.chat.utils.message.MessageType#CLIENT_SEND_ROOM CLIENT_SEND_ROOM}. */
+    CLIENT_ROOM_MESSAGE,
+
+    /** An event type indicating that the client sent a {@link com.chat.utils.message.Message Message} to the
+     * {@link com.chat.server.Server Server} of {@link com.chat.utils.message.MessageType MessageType}
+     * {@link com.chat.utils.message.MessageType#CLIENT_JOIN_ROOM CLIENT_JOIN_ROOM}. */
+    CLIENT_JOIN_ROOM,
+
+    /** An event type indicating that the client sent a {@link com.chat.utils.message.Message Message} to the
+     * {@link com.chat.server.Server Server} of {@link com.chat.utils.message.MessageType MessageType}
+     * {@link com.chat.utils.message.MessageType#CLIENT_LEAVE_ROOM CLIENT_LEAVE_ROOM}. */
+    CLIENT_LEAVE_ROOM,
+
     /** A null event. */
     NULL_EVENT
 }
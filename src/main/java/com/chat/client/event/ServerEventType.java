@@ -36,7 +36,8 @@ public enum ServerEventType {
 
     /** An event type indicating that the handled {@link com.chat.utils.message.Message Message}
      * was of {@link com.chat.utils.message.MessageType MessageType}
-     * {@link com.chat.utils.message.MessageType#SERVER_SEND_CLIENTS SERVER_SEND_CLIENTS}. */
+     * {@link com.chat.utils.message.MessageType#SERVER_SEND_CLIENTS SERVER_SEND_CLIENTS}
+     * or {@link com.chat.utils.message.MessageType#SERVER_PRESENCE_VERSION SERVER_PRESENCE_VERSION}. */
     SERVER_SET_CHATS,
 
     /** An event type indicating that the handled {@link com.chat.utils.message.Message Message}
@@ -54,6 +55,42 @@ public enum ServerEventType {
      * {@link com.chat.utils.message.MessageType#SERVER_REMOVE_CLIENT SERVER_REMOVE_CLIENT}. */
     SERVER_REMOVE_CHAT,
 
+    /** An event type indicating that the handled {@link com.chat.utils.message.Message Message}
+     * was of {@link com.chat.utils.message.MessageType MessageType}
+     * {@link com.chat.utils.message.MessageType#SERVER_SEND_ROOM SERVER_SEND_ROOM}. */
+    SERVER_ROOM_MESSAGE,
+
+    /** An event type indicating that the handled {@link com.chat.utils.message.Message Message}
+     * was of {@link com.chat.utils.message.MessageType MessageType}
+     * {@link com.chat.utils.message.MessageType#SERVER_JOIN_ROOM SERVER_JOIN_ROOM}. */
+    SERVER_JOIN_ROOM,
+
+    /** An event type indicating that the handled {@link com.chat.utils.message.Message Message}
+     * was of {@link com.chat.utils.message.MessageType MessageType}
+     * {@link com.chat.utils.message.MessageType#SERVER_LEAVE_ROOM SERVER_LEAVE_ROOM}. */
+    SERVER_LEAVE_ROOM,
+
+    /** An event type indicating that the handled {@link com.chat.utils.message.Message Message}
+     * was of {@link com.chat.utils.message.MessageType MessageType}
+     * {@link com.chat.utils.message.MessageType#SERVER_SEND_ROOM_MEMBERS SERVER_SEND_ROOM_MEMBERS}. */
+    SERVER_SET_ROOM_MEMBERS,
+
+    /** An event type indicating that the handled {@link com.chat.utils.message.Message Message}
+     * was of {@link com.chat.utils.message.MessageType MessageType}
+     * {@link com.chat.utils.message.MessageType#SERVER_HISTORY_PAGE SERVER_HISTORY_PAGE} or
+     * {@link com.chat.utils.message.MessageType#SERVER_HISTORY_END SERVER_HISTORY_END}, a page of history was written to a chat. */
+    SERVER_HISTORY,
+
+    /** An event type indicating that the handled {@link com.chat.utils.message.Message Message}
+     * was of {@link com.chat.utils.message.MessageType MessageType}
+     * {@link com.chat.utils.message.MessageType#SERVER_PRESENCE_BATCH SERVER_PRESENCE_BATCH}. */
+    SERVER_UPDATE_CHATS,
+
+    /** An event type indicating that the handled {@link com.chat.utils.message.Message Message}
+     * was of {@link com.chat.utils.message.MessageType MessageType}
+     * {@link com.chat.utils.message.MessageType#SERVER_SEARCH_CLIENTS SERVER_SEARCH_CLIENTS}. */
+    SERVER_SEARCH_RESULT,
+
     /** A null event. */
     NULL_EVENT
 }
@@ -3,14 +3,22 @@ package com.chat.client.ui;
 import com.chat.client.Client;
 import com.chat.client.chat.Chat;
 import com.chat.client.chat.ChatMessage;
-import com.chat.client.event.ClientEventType;
+import com.chat.client.chat.ChatUpdate;
+import com.chat.client.chat.Room;
 import com.chat.client.event.ConnectionEventType;
 import com.chat.client.event.ServerEventType;
 import com.chat.client.ui.factory.ChatLabelFactory;
 import com.chat.client.ui.factory.ChatMessageLabelFactory;
-import javafx.application.Platform;
+import javafx.animation.AnimationTimer;
+import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
+import javafx.scene.input.ScrollEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
 
 /**
  * A controller class for the chat page of the {@link javafx.application.Application Application}. <br>
@@ -18,12 +26,41 @@ import javafx.scene.control.*;
  * available {@link Chat}s, {@link com.chat.utils.message.Message Message}s,
  * handling events emitted by the {@link Client}, and user input. <br>
  *
+ * <p>
+ *     The events of the client are run on the FX thread by the {@link UiDispatcher}, refreshing the list of chats is coalesced
+ *     so that a burst of clients joining or leaving refreshes it once.
+ * </p>
+ *
+ * <p>
+ *     The messages of the selected chat are not read again when a message is written: the controller listens to the
+ *     {@link ChatUpdate ChatUpdates} of the selected chat, queues them on the writing thread and applies them on the FX thread
+ *     once per animation pulse, appending the messages written during the pulse with a single change to the list.
+ *     While following the new messages, the list is trimmed to the messages the chat keeps in memory.
+ * </p>
+ *
+ * <p>
+ *     The messages of the selected chat kept in memory are shown, scrolling up past the oldest one
+ *     pages in {@value #PAGE_SIZE} older messages at a time from the chat's spilled messages.
+ * </p>
+ *
  * @see ClientInterface
  * @see ConnectController
  */
 public class ChatController {
+    /** The number of older messages paged in when scrolling past the oldest message shown. */
+    public static final int PAGE_SIZE = 100;
+
     private final Client client;
+    private final UiDispatcher dispatcher;
     private Chat selectedChat;
+    private long shownFrom = -1;
+    private long shownStart = 0;
+
+    private final ConcurrentLinkedQueue<ChatUpdate> updates = new ConcurrentLinkedQueue<>();
+    private final Consumer<ChatUpdate> listener = updates::add;
+    private final AnimationTimer pulse = new AnimationTimer() {
+        @Override public void handle(long _now) { ChatController.this.applyUpdates(); }
+    };
 
     @FXML public Label clientNameLabel;
     @FXML public Label serverIPLabel;
@@ -38,12 +75,20 @@ public class ChatController {
     @FXML public TextField changeNameTextField;
     @FXML public Button changeNameButton;
 
+    @FXML public TextField joinRoomTextField;
+    @FXML public Button joinRoomButton;
+    @FXML public MenuItem leaveRoomMenuItem;
+
     /**
      * Creates a new instance of the ChatController class.
      *
      * @param _client The client instance to associate with this controller.
+     * @param _dispatcher The dispatcher running the events of the client on the FX thread.
      */
-    public ChatController(Client _client) { client = _client; }
+    public ChatController(Client _client, UiDispatcher _dispatcher) {
+        client = _client;
+        dispatcher = _dispatcher;
+    }
 
     /**
      * Updates the list of available chats.
@@ -53,19 +98,97 @@ public class ChatController {
 
         chatsListView.getItems().clear();
         chatsListView.getItems().add( client.getPublicChat() );
+        chatsListView.getItems().addAll( client.getRooms() );
         chatsListView.getItems().addAll( client.getChats() );
 
         chatsListView.getSelectionModel().select(selected);
     }
 
     /**
-     * Updates the messages in the selected chat.
+     * Reads the messages of the selected chat again, from the oldest one in memory or the oldest one paged in. <br>
+     * Must be called on the FX thread.
      */
     public void updateMessages() {
         if (selectedChat != null) {
-            messagesListView.getItems().clear();
-            messagesListView.getItems().addAll( selectedChat.getMessages() );
-            Platform.runLater(() -> messagesListView.scrollTo( messagesListView.getItems().size() - 1 ));
+            shownStart = (shownFrom < 0)? selectedChat.getStore().getFirstIndex() : shownFrom;
+            messagesListView.getItems().setAll( selectedChat.getMessages(shownStart) );
+            if (shownFrom < 0) messagesListView.scrollTo( messagesListView.getItems().size() - 1 );
+        } else { messagesListView.getItems().clear(); }
+    }
+
+    /**
+     * Selects the chat whose messages are shown, listening to its updates instead of those of the previous one.
+     *
+     * @param _chat the chat to show, or null to show none.
+     */
+    public void selectChat(Chat _chat) {
+        if (selectedChat != null) selectedChat.removeListener(listener);
+
+        selectedChat = _chat;
+        shownFrom = -1;
+        if (selectedChat != null) client.followHistory(selectedChat.getName());
+        updates.clear();
+        if (selectedChat != null) selectedChat.addListener(listener);
+        this.updateMessages();
+    }
+
+    /**
+     * Applies the {@link ChatUpdate ChatUpdates} of the selected chat queued since the last pulse, on the FX thread. <br>
+     * Updates already in the list, because it was read after they were queued, are skipped.
+     */
+    private void applyUpdates() {
+        if (updates.isEmpty()) return;
+
+        ObservableList<ChatMessage> items = messagesListView.getItems();
+        List<ChatMessage> appended = new ArrayList<>();
+        ChatUpdate update;
+        while ((update = updates.poll()) != null) {
+            if (update.chat() != selectedChat) continue;
+
+            long position = update.index() - shownStart;
+            if (position >= items.size() + appended.size()) { appended.add(update.message()); continue; }
+
+            items.addAll(appended);
+            appended.clear();
+            if (position < 0) shownStart++;
+            else if (items.get((int) position) != update.message()) items.add((int) position, update.message());
+        }
+        items.addAll(appended);
+
+        if (shownFrom < 0 && selectedChat != null) {
+            int excess = items.size() - selectedChat.getStore().getWindow();
+            if (excess > 0) {
+                items.remove(0, excess);
+                shownStart += excess;
+            }
+            messagesListView.scrollTo(items.size() - 1);
+        }
+    }
+
+    /**
+     * Pages in the older messages of the selected chat once the messages are scrolled to the top.
+     */
+    public void loadOlderMessages() {
+        ScrollBar scrollBar = (ScrollBar) messagesListView.lookup(".scroll-bar:vertical");
+        if (selectedChat == null || scrollBar == null || scrollBar.getValue() > scrollBar.getMin()) return;
+
+        long from = (shownFrom < 0)? selectedChat.getStore().getFirstIndex() : shownFrom;
+        long oldest = selectedChat.getStore().getOldestIndex();
+        if (from <= oldest) return;
+
+        shownFrom = Math.max(oldest, from - PAGE_SIZE);
+        this.updateMessages();
+        messagesListView.scrollTo( (int) (from - shownFrom) );
+    }
+
+    /**
+     * Goes back to showing only the messages in memory, following the new ones, once the messages are scrolled to the bottom.
+     */
+    public void followNewMessages() {
+        ScrollBar scrollBar = (ScrollBar) messagesListView.lookup(".scroll-bar:vertical");
+        if (shownFrom >= 0 && scrollBar != null && scrollBar.getValue() >= scrollBar.getMax()) {
+            shownFrom = -1;
+            this.updateMessages();
         }
     }
 
@@ -86,6 +209,10 @@ public class ChatController {
 
         messagesListView.cellFactoryProperty().set(new ChatMessageLabelFactory());
         messagesListView.getItems().removeAll();
+        messagesListView.addEventFilter(ScrollEvent.SCROLL, event -> {
+            if (event.getDeltaY() > 0) this.loadOlderMessages();
+            else this.followNewMessages();
+        });
 
         chatsListView.cellFactoryProperty().set(new ChatLabelFactory());
         chatsListView.getItems().clear();
@@ -93,11 +220,10 @@ public class ChatController {
         chatsListView.setOnMouseClicked(event -> {
             Chat chat = chatsListView.getSelectionModel().getSelectedItem();
 
-            if (chat!=null) {
-                selectedChat = chat;
-                messagesListView.getItems().setAll( selectedChat.getMessages() );
-            }
+            if (chat!=null && chat != selectedChat) this.selectChat(chat);
         });
+
+        pulse.start();
     }
 
     /**
@@ -106,63 +232,54 @@ public class ChatController {
     public void initClientEvents() {
         client.addConnectionEvent(
                 ConnectionEventType.CONNECTION_SUCCESS,
-                () -> Platform.runLater(() -> serverIPLabel.setText("IP: " + client.getServerAddress()))
+                () -> dispatcher.submit(() -> serverIPLabel.setText("IP: " + client.getServerAddress()))
         );
 
-        client.addClientEvent(
-                ClientEventType.CLIENT_PRIVATE_MESSAGE,
-                message -> this.updateMessages()
-        );
-        client.addClientEvent(
-                ClientEventType.CLIENT_PUBLIC_MESSAGE,
-                message -> this.updateMessages()
-        );
-
-        client.addServerEvent(
-                ServerEventType.SERVER_PRIVATE_MESSAGE,
-                message -> {
-                    if (selectedChat!=null && selectedChat.getName().equals(message.sender())) this.updateMessages();
-                }
-        );
-        client.addServerEvent(
-                ServerEventType.SERVER_PUBLIC_MESSAGE,
-                message -> {
-                    if (selectedChat!=null && selectedChat.getName().equals(Client.PUBLIC_CHAT_NAME)) this.updateMessages();
-                }
-        );
         client.addServerEvent(
                 ServerEventType.SERVER_RENAME_MESSAGE,
-                message -> Platform.runLater(() -> clientNameLabel.setText(client.getName()))
+                message -> dispatcher.submit(() -> clientNameLabel.setText(client.getName()))
         );
         client.addServerEvent(
                 ServerEventType.SERVER_ERROR_MESSAGE,
-                message -> Platform.runLater(() -> {
+                message -> dispatcher.submit(() -> {
                     errorLabel.setTextFill(ClientInterface.COLOR_ALERT);
                     errorLabel.setText("ERROR: " + message.payload());
                 })
         );
         client.addServerEvent(
                 ServerEventType.SERVER_CLOSE_MESSAGE,
-                message -> Platform.runLater(() -> {
+                message -> dispatcher.submit(() -> {
                     errorLabel.setTextFill(ClientInterface.COLOR_WARNING);
                     errorLabel.setText("Connection was closed: " + message.payload());
                 })
         );
         client.addServerEvent(
                 ServerEventType.SERVER_SET_CHATS,
-                message -> this.updateChats()
+                message -> dispatcher.coalesce("chats", this::updateChats)
+        );
+        client.addServerEvent(
+                ServerEventType.SERVER_UPDATE_CHATS,
+                message -> dispatcher.coalesce("chats", this::updateChats)
         );
         client.addServerEvent(
                 ServerEventType.SERVER_ADD_CHAT,
-                message -> this.updateChats()
+                message -> dispatcher.coalesce("chats", this::updateChats)
         );
         client.addServerEvent(
                 ServerEventType.SERVER_RENAME_CHAT,
-                message -> this.updateChats()
+                message -> dispatcher.coalesce("chats", this::updateChats)
         );
         client.addServerEvent(
                 ServerEventType.SERVER_REMOVE_CHAT,
-                message -> this.updateChats()
+                message -> dispatcher.coalesce("chats", this::updateChats)
+        );
+        client.addServerEvent(
+                ServerEventType.SERVER_JOIN_ROOM,
+                message -> dispatcher.coalesce("chats", this::updateChats)
+        );
+        client.addServerEvent(
+                ServerEventType.SERVER_LEAVE_ROOM,
+                message -> dispatcher.coalesce("chats", this::updateChats)
         );
     }
 
@@ -173,7 +290,8 @@ public class ChatController {
      */
     @FXML public void onInputButtonClick() {
         if (!inputTextArea.getText().equals("") && selectedChat != null) {
-            if (selectedChat.getName().equals(Client.PUBLIC_CHAT_NAME)) { client.sendPublicMessage(inputTextArea.getText()); }
+            if (selectedChat instanceof Room) { client.sendRoomMessage(selectedChat.getName(), inputTextArea.getText()); }
+            else if (selectedChat.getName().equals(Client.PUBLIC_CHAT_NAME)) { client.sendPublicMessage(inputTextArea.getText()); }
             else { client.sendPrivateMessage(selectedChat.getName(), inputTextArea.getText()); }
             inputTextArea.setText("");
         }
@@ -189,4 +307,26 @@ public class ChatController {
             changeNameTextField.setText("");
         }
     }
+
+    /**
+     * This method is called when the join room button is clicked. <br>
+     * If the join room text field is not empty, sends a request to join the room to the {@link com.chat.server.Server Server}.
+     */
+    @FXML public void onJoinRoomButtonClick() {
+        if (!joinRoomTextField.getText().equals("")) {
+            client.sendJoinRoomMessage(joinRoomTextField.getText());
+            joinRoomTextField.setText("");
+        }
+    }
+
+    /**
+     * This method is called when the leave room menu item is clicked. <br>
+     * If the selected {@link Chat} is a {@link Room}, sends a request to leave it to the {@link com.chat.server.Server Server}.
+     */
+    @FXML public void onLeaveRoomMenuItemClick() {
+        if (selectedChat instanceof Room) {
+            client.sendLeaveRoomMessage(selectedChat.getName());
+            this.selectChat(null);
+        }
+    }
 }
@@ -54,6 +54,7 @@ public class ClientInterface extends Application {
             new Stop(1, CHEMICAL_PINK) );
 
     private final Client client = new Client();
+    private final UiDispatcher dispatcher = new UiDispatcher();
 
     private Stage mainStage = null;
 
@@ -89,14 +90,14 @@ public class ClientInterface extends Application {
      */
     public Scene initScene() throws IOException {
         FXMLLoader chatPageLoader = new FXMLLoader(ClientInterface.class.getResource(CHAT_PAGE_PATH));
-        chatPageLoader.setControllerFactory(c -> new ChatController(client));
+        chatPageLoader.setControllerFactory(c -> new ChatController(client, dispatcher));
 
         Scene chatPageScene = new Scene(chatPageLoader.load());
 
         FXMLLoader connectPageLoader = new FXMLLoader(ClientInterface.class.getResource(CONNECT_PAGE_PATH));
 
-        ConnectController connectPageController = new ConnectController(client);
-        connectPageController.setTransitionEvent(() -> Platform.runLater(() -> {
+        ConnectController connectPageController = new ConnectController(client, dispatcher);
+        connectPageController.setTransitionEvent(() -> dispatcher.submit(() -> {
             mainStage.setResizable(true);
             mainStage.setMinWidth(MIN_WINDOW_WIDTH);
             mainStage.setMinHeight(MIN_WINDOW_HEIGHT);
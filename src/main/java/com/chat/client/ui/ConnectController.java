@@ -3,7 +3,6 @@ package com.chat.client.ui;
 import com.chat.client.Client;
 import com.chat.client.event.ConnectionEventType;
 import com.chat.client.event.ServerEventType;
-import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
@@ -21,6 +20,7 @@ import java.util.concurrent.TimeUnit;
  */
 public class ConnectController {
     private final Client client;
+    private final UiDispatcher dispatcher;
 
     private static final String STATE_UNFULFILLED = "UNFULFILLED";
     private static final String STATE_FULFILLED = "FULFILLED";
@@ -43,8 +43,12 @@ public class ConnectController {
      * Creates a new ConnectController with the given {@link Client}.
      *
      * @param _client The client to be used by the ConnectController.
+     * @param _dispatcher The dispatcher running the events of the client on the FX thread.
      */
-    public ConnectController(Client _client) { client = _client; }
+    public ConnectController(Client _client, UiDispatcher _dispatcher) {
+        client = _client;
+        dispatcher = _dispatcher;
+    }
 
     /**
      * Initializes the ConnectController.
@@ -64,7 +68,7 @@ public class ConnectController {
         client.addConnectionEvent(
                 ConnectionEventType.CONNECTION_SUCCESS,
                 () -> {
-                    Platform.runLater(() -> {
+                    dispatcher.submit(() -> {
                         loginPromptLabel.setTextFill(ClientInterface.COLOR_SUCCESS);
                         loginPromptLabel.setText("server connection established");
                     });
@@ -76,7 +80,7 @@ public class ConnectController {
         client.addConnectionEvent(
                 ConnectionEventType.CONNECTION_FAIL,
                 () -> {
-                    Platform.runLater(() -> {
+                    dispatcher.submit(() -> {
                         loginPromptLabel.setTextFill(ClientInterface.COLOR_ALERT);
                         loginPromptLabel.setText("server connection failed");
                     });
@@ -88,7 +92,7 @@ public class ConnectController {
         client.addConnectionEvent(
                 ConnectionEventType.CONNECTION_CLOSE,
                 () -> {
-                    Platform.runLater(() -> {
+                    dispatcher.submit(() -> {
                         loginPromptLabel.setTextFill(ClientInterface.COLOR_WARNING);
                         loginPromptLabel.setText("connection with server was closed");
                     });
@@ -102,7 +106,7 @@ public class ConnectController {
         client.addServerEvent(
                 ServerEventType.SERVER_RENAME_MESSAGE,
                 message -> {
-                    Platform.runLater(() -> {
+                    dispatcher.submit(() -> {
                         loginPromptLabel.setTextFill(ClientInterface.COLOR_SUCCESS);
                         loginPromptLabel.setText("name accepted by server");
                     });
@@ -113,7 +117,7 @@ public class ConnectController {
         );
         client.addServerEvent(
                 ServerEventType.SERVER_ERROR_MESSAGE,
-                message -> Platform.runLater(() -> {
+                message -> dispatcher.submit(() -> {
                     loginPromptLabel.setTextFill(ClientInterface.COLOR_ALERT);
                     loginPromptLabel.setText("error: " + message.payload());
 
@@ -208,7 +212,7 @@ public class ConnectController {
         try {
             if (ipState.equals(STATE_LOADING)) {
                 int final_counter = _counter = (_counter < 3)? ++_counter : 1;
-                Platform.runLater(() -> loginPromptLabel.setText("loading" + ".".repeat(final_counter)));
+                dispatcher.submit(() -> loginPromptLabel.setText("loading" + ".".repeat(final_counter)));
                 TimeUnit.MILLISECONDS.sleep(500);
                 this.loadingAnimation(_counter);
             }
@@ -0,0 +1,121 @@
+package com.chat.client.ui;
+
+import com.chat.utils.Utils;
+import com.chat.utils.log.LogLevel;
+import javafx.application.Platform;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The UiDispatcher class hands the events of the {@link com.chat.client.Client Client} over to the JavaFX application thread.
+ *
+ * <p>
+ *     The events are queued by the listener thread and run in batches: at most one task of the dispatcher is waiting on the
+ *     FX thread at any time, and it runs every event queued by then, up to {@value #BATCH_SIZE}, so a burst of messages costs
+ *     the FX queue a single task rather than one per message. <br>
+ *     Events that only refresh a view, such as the list of chats, are {@link #coalesce(String, Runnable) coalesced} by key:
+ *     however many are queued before the batch runs, each key runs once, after the other events of the batch.
+ * </p>
+ *
+ * <p>
+ *     The queue is bounded: when the UI falls {@value #CAPACITY} events behind, the listener thread waits for it, so that
+ *     the client stops reading from the server instead of buffering without bound. An event still not queued after
+ *     {@value #BACKPRESSURE_TIMEOUT} milliseconds, such as when the UI is closing, is dropped.
+ * </p>
+ *
+ * @see ChatController
+ * @see ConnectController
+ */
+public class UiDispatcher {
+    /** The maximum number of events waiting for the FX thread. */
+    public static final int CAPACITY = 4096;
+    /** The maximum number of events run by a single task on the FX thread. */
+    public static final int BATCH_SIZE = 512;
+    /** The number of milliseconds the listener thread waits for room in the queue before dropping an event. */
+    public static final int BACKPRESSURE_TIMEOUT = 1000;
+
+    private final ArrayBlockingQueue<Runnable> events = new ArrayBlockingQueue<>(CAPACITY);
+    private final Map<String, Runnable> coalesced = new ConcurrentHashMap<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Runs an event on the FX thread, right away if called from it.
+     *
+     * @param _event the event.
+     */
+    public void submit(Runnable _event) {
+        if (Platform.isFxApplicationThread()) {
+            _event.run();
+            return;
+        }
+
+        try {
+            if (!events.offer(_event) && !events.offer(_event, BACKPRESSURE_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                dropped.increment();
+                Utils.logln(LogLevel.WARN, "warning: the interface fell {} events behind, dropping an event", CAPACITY);
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        this.schedule();
+    }
+
+    /**
+     * Runs an event on the FX thread once, however many times it is coalesced before it runs.
+     *
+     * @param _key the key of the event, events with the same key are merged.
+     * @param _event the event.
+     */
+    public void coalesce(String _key, Runnable _event) {
+        if (coalesced.putIfAbsent(_key, _event) == null) this.schedule();
+    }
+
+    /**
+     * Schedules a task on the FX thread unless one is already waiting.
+     */
+    private void schedule() { if (scheduled.compareAndSet(false, true)) Platform.runLater(this::drain); }
+
+    /**
+     * Runs a batch of the queued events followed by the coalesced ones, on the FX thread.
+     */
+    private void drain() {
+        scheduled.set(false);
+        batches.increment();
+
+        Runnable event;
+        for (int i = 0; i < BATCH_SIZE && (event = events.poll()) != null; i++) this.run(event);
+
+        for (String key : coalesced.keySet()) {
+            Runnable merged = coalesced.remove(key);
+            if (merged != null) this.run(merged);
+        }
+
+        if (!events.isEmpty()) this.schedule();
+    }
+
+    /**
+     * Runs an event, an exception thrown by it does not stop the batch.
+     *
+     * @param _event the event.
+     */
+    private void run(Runnable _event) {
+        try { _event.run(); }
+        catch (RuntimeException e) { Utils.logln(LogLevel.ERROR, "exception: an interface event failed; {}", e.getMessage()); }
+    }
+
+    /** @return the number of batches run on the FX thread */
+    public long getBatches() { return batches.sum(); }
+
+    /** @return the number of events dropped because the interface fell behind */
+    public long getDropped() { return dropped.sum(); }
+}
@@ -1,6 +1,7 @@
 package com.chat.client.ui.factory;
 
 import com.chat.client.chat.Chat;
+import com.chat.client.chat.Room;
 import com.chat.client.ui.ClientInterface;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
@@ -43,7 +44,7 @@ public class ChatLabelFactory implements Callback<ListView<Chat>, ListCell<Chat>
                 super.updateItem(_chat, _empty);
 
                 if (_chat != null) {
-                    Label chatLabel = new Label(_chat.getName());
+                    Label chatLabel = new Label((_chat instanceof Room)? "# " + _chat.getName() : _chat.getName());
 
                     chatLabel.setTextFill((super.isSelected())? ClientInterface.MESSAGE_GRADIENT : ClientInterface.COLOR_TEXT);
                     chatLabel.setFont((super.isSelected())?
@@ -0,0 +1,116 @@
+package com.chat.client.ui.factory;
+
+import com.chat.client.chat.ChatMessage;
+import com.chat.client.chat.MessageAuthor;
+import com.chat.client.chat.MessageScope;
+import com.chat.client.ui.ClientInterface;
+import com.chat.utils.Utils;
+import com.chat.utils.log.LogLevel;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.layout.Background;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontPosture;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.TextAlignment;
+import javafx.scene.text.TextFlow;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link ListCell} that displays a {@link ChatMessage}, recycled by its {@link ListView} across the messages it scrolls past.
+ *
+ * <p>
+ *     The cell builds its {@link Label} and {@link TextFlow} and binds their widths once, when it is created,
+ *     and every update only sets the text and the alignment of the message. The font, the background and the padding
+ *     are shared by all the cells. <br>
+ *     The time spent updating the cells is measured and written to the log every {@value #REPORT_INTERVAL} updates,
+ *     an update should take a small fraction of the 16 ms of a frame.
+ * </p>
+ *
+ * @see ChatMessageLabelFactory
+ */
+public class ChatMessageCell extends ListCell<ChatMessage> {
+    /** The number of updates between two reports of the time spent updating the cells. */
+    public static final int REPORT_INTERVAL = 10_000;
+
+    private static final Font FONT = Font.font(Font.getDefault().getFamily(), FontWeight.NORMAL, FontPosture.REGULAR, 16);
+    private static final Background BACKGROUND = Background.fill(ClientInterface.DARK_DULL);
+    private static final Insets PADDING = new Insets(10, 15, 10, 15);
+
+    private static final LongAdder updates = new LongAdder();
+    private static final LongAdder updateNanos = new LongAdder();
+
+    private final Label messageLabel = new Label();
+    private final TextFlow textFlow = new TextFlow(messageLabel);
+
+    /**
+     * Creates a new cell for the specified {@link ListView}.
+     *
+     * @param _listView The list view the cell belongs to.
+     */
+    public ChatMessageCell(ListView<ChatMessage> _listView) {
+        super.maxWidthProperty().bind( _listView.widthProperty() );
+        super.setBackground(Background.EMPTY);
+
+        messageLabel.maxWidthProperty().bind( super.widthProperty().divide(1.5) );
+        messageLabel.setWrapText(true);
+        messageLabel.setFont(FONT);
+        messageLabel.setPadding(PADDING);
+        messageLabel.setTextFill(ClientInterface.COLOR_TEXT);
+        messageLabel.setBackground(BACKGROUND);
+
+        textFlow.maxWidthProperty().bind( super.widthProperty().divide(1.5) );
+    }
+
+    /**
+     * Updates the {@link ListCell} to display the specified {@link ChatMessage}.
+     *
+     * @param _message The chat message to display in the list cell.
+     * @param _empty A flag indicating whether the list cell is empty or not.
+     */
+    @Override
+    protected void updateItem(ChatMessage _message, boolean _empty) {
+        long start = System.nanoTime();
+        super.updateItem(_message, _empty);
+
+        if (_empty || _message == null) { super.setGraphic(null); }
+        else {
+            boolean sent = _message.author().equals(MessageAuthor.SENT);
+
+            super.setAlignment( (sent)? Pos.CENTER_LEFT : Pos.CENTER_RIGHT );
+            messageLabel.setAlignment( (sent)? Pos.CENTER_LEFT : Pos.CENTER_RIGHT );
+            messageLabel.setText(( (!_message.scope().equals(MessageScope.PRIVATE) && !sent)?
+                    _message.writer() + ": \n" : "") + _message.message());
+            textFlow.setTextAlignment( (sent)? TextAlignment.LEFT : TextAlignment.RIGHT );
+
+            if (super.getGraphic() != textFlow) super.setGraphic(textFlow);
+        }
+
+        ChatMessageCell.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Counts an update of a cell and reports the average time of the updates every {@value #REPORT_INTERVAL} updates.
+     *
+     * @param _nanos the time the update took.
+     */
+    private static void record(long _nanos) {
+        updates.increment();
+        updateNanos.add(_nanos);
+        if (updates.sum() % REPORT_INTERVAL == 0)
+            Utils.logln(LogLevel.DEBUG, "cells: {} updates, {} us per update on average", updates.sum(), ChatMessageCell.getAverageUpdateNanos() / 1000);
+    }
+
+    /** @return the number of updates of all the message cells */
+    public static long getUpdates() { return updates.sum(); }
+
+    /** @return the average time of an update of a message cell, in nanoseconds */
+    public static long getAverageUpdateNanos() {
+        long count = updates.sum();
+        return (count > 0)? updateNanos.sum() / count : 0;
+    }
+}
@@ -8,7 +8,8 @@
  *     It consists of two factories, a {@link com.chat.client.ui.factory.ChatLabelFactory ChatLabelFactory}
  *     which generates {@link javafx.scene.control.ListCell ListCell}s for the chats {@link javafx.scene.control.ListView ListView} component
  *     and a {@link com.chat.client.ui.factory.ChatMessageLabelFactory ChatMessageLabelFactory} which generates
- *     list cells for the chat messages list view.
+ *     {@link com.chat.client.ui.factory.ChatMessageCell ChatMessageCell}s for the chat messages list view,
+ *     which build their nodes once and are recycled while scrolling.
  * </p>
  */
 package com.chat.client.ui.factory;
@@ -6,7 +6,8 @@
  *     It consists of a {@link com.chat.client.ui.ClientInterface ClientInterface} class that initializes the
  *     user interface, a {@link com.chat.client.ui.ConnectController ConnectController} class to handle
  *     the connect {@link javafx.scene.Scene Scene} and a {@link com.chat.client.ui.ChatController ChatController}
- *     to handle the chat scene.
+ *     to handle the chat scene. The {@link com.chat.client.ui.UiDispatcher UiDispatcher} runs the events of the
+ *     {@link com.chat.client.Client Client} on the JavaFX thread in batches.
  * </p>
  *
  * <p>
@@ -0,0 +1,201 @@
+package com.chat.load;
+
+import com.chat.server.Server;
+import com.chat.server.ServerConfig;
+import com.chat.server.ServerMode;
+import com.chat.utils.Utils;
+import com.chat.utils.message.Message;
+import com.chat.utils.message.MessageType;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The ConnectionLoadTest class measures how many concurrent connections a {@link Server} sustains in each {@link ServerMode}.
+ *
+ * <p>
+ *     For every mode it starts an in-process server on the default port, opens connections to it until the target is reached
+ *     or a connection fails, registers a unique name for each one and keeps them all open for a while. <br>
+ *     The connections are driven by a single {@link Selector} that drains everything the server sends,
+ *     so that the server is never blocked by a full socket buffer.
+ * </p>
+ *
+ * <p>
+ *     Usage: <strong>ConnectionLoadTest [connections] [hold seconds] [modes...]</strong>,
+ *     the file descriptor limit (<code>ulimit -n</code>) must be raised for large targets.
+ * </p>
+ */
+public class ConnectionLoadTest {
+    private static final String HOST = "127.0.0.1";
+    private static final int PORT = 7777;
+
+    private static final byte[] APPROVE_NAME = MessageType.SERVER_APPROVE_NAME.name().getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Runs the load test.
+     *
+     * @param args the number of connections, the number of seconds to hold them and the modes to test.
+     * @throws Exception if the test cannot be run.
+     */
+    public static void main(String[] args) throws Exception {
+        int connections = (args.length > 0)? Integer.parseInt(args[0]) : 10_000;
+        int holdSeconds = (args.length > 1)? Integer.parseInt(args[1]) : 10;
+
+        List<ServerMode> modes = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) modes.add(ServerMode.valueOf(args[i].toUpperCase()));
+        if (modes.isEmpty()) modes.addAll(List.of(ServerMode.values()));
+
+        List<String> results = new ArrayList<>();
+        for (ServerMode mode : modes) results.add(ConnectionLoadTest.run(mode, connections, holdSeconds));
+
+        Utils.println("mode       target   connected  approved  alive     setup ms  threads  heap MB");
+        results.forEach(Utils::println);
+    }
+
+    /**
+     * Runs the load test against a server in the given mode.
+     *
+     * @param _mode the {@link ServerMode} of the server.
+     * @param _connections the number of connections to open.
+     * @param _holdSeconds the number of seconds the connections are kept open.
+     * @return a line of the result table.
+     * @throws Exception if the test cannot be run.
+     */
+    private static String run(ServerMode _mode, int _connections, int _holdSeconds) throws Exception {
+        ServerConfig config = new ServerConfig();
+        config.setMode(_mode);
+        Server server = new Server(config);
+        new Thread(server::open).start();
+        ConnectionLoadTest.awaitServer();
+
+        Selector selector = Selector.open();
+        Queue<SocketChannel> registrations = new ConcurrentLinkedQueue<>();
+        AtomicInteger approved = new AtomicInteger();
+        Thread drain = new Thread(() -> ConnectionLoadTest.drain(selector, registrations, approved));
+        drain.start();
+
+        List<SocketChannel> channels = new ArrayList<>(_connections);
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < _connections; i++) {
+                SocketChannel channel = SocketChannel.open(new InetSocketAddress(HOST, PORT));
+                channel.write(ByteBuffer.wrap((Utils.deserializeJson(
+                        new Message(MessageType.CLIENT_SET_NAME, _mode.name().toLowerCase() + "-" + i)) + '\n')
+                        .getBytes(StandardCharsets.UTF_8)));
+                channel.configureBlocking(false);
+                channels.add(channel);
+
+                registrations.add(channel);
+                selector.wakeup();
+            }
+        } catch (IOException e) { Utils.println("connection " + channels.size() + " failed: " + e.getMessage()); }
+        long setupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        TimeUnit.SECONDS.sleep(_holdSeconds);
+
+        long alive = channels.stream().filter(SocketChannel::isConnected).filter(SocketChannel::isOpen).count();
+        int threads = Thread.activeCount();
+        long heap = (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) >> 20;
+
+        drain.interrupt();
+        selector.close();
+        for (SocketChannel channel : channels) channel.close();
+        server.close();
+        TimeUnit.SECONDS.sleep(1);
+
+        return String.format("%-10s %-8d %-10d %-9d %-9d %-9d %-8d %d",
+                _mode.name().toLowerCase(), _connections, channels.size(), approved.get(), alive, setupMillis, threads, heap);
+    }
+
+    /**
+     * Reads and discards everything the server sends, counting the connections whose name was approved. <br>
+     * Lines are only inspected until the approval is found, longer lines are truncated.
+     *
+     * @param _selector the selector of the test connections.
+     * @param _registrations the connections waiting to be registered with the selector.
+     * @param _approved the counter of approved connections.
+     */
+    private static void drain(Selector _selector, Queue<SocketChannel> _registrations, AtomicInteger _approved) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+
+        try {
+            while (!Thread.currentThread().isInterrupted() && _selector.isOpen()) {
+                _selector.select(100);
+
+                SocketChannel registration;
+                while ((registration = _registrations.poll()) != null)
+                    registration.register(_selector, SelectionKey.OP_READ, ByteBuffer.allocate(256));
+
+                Iterator<SelectionKey> keys = _selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    SocketChannel channel = (SocketChannel) key.channel();
+                    ByteBuffer line = (ByteBuffer) key.attachment();
+                    buffer.clear();
+
+                    if (channel.read(buffer) < 0) { channel.close(); continue; }
+                    if (line == null) continue;
+
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        byte next = buffer.get();
+                        if (next != '\n') {
+                            if (line.hasRemaining()) line.put(next);
+                        } else if (ConnectionLoadTest.contains(line.flip(), APPROVE_NAME)) {
+                            _approved.incrementAndGet();
+                            key.attach(null);
+                            break;
+                        } else { line.clear(); }
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) { /* the test is over */ }
+    }
+
+    /**
+     * Checks whether the buffer contains the given bytes.
+     *
+     * @param _buffer the buffer to search.
+     * @param _bytes the bytes to look for.
+     * @return true if the bytes were found, false otherwise.
+     */
+    private static boolean contains(ByteBuffer _buffer, byte[] _bytes) {
+        outer:
+        for (int i = _buffer.position(); i <= _buffer.limit() - _bytes.length; i++) {
+            for (int j = 0; j < _bytes.length; j++) if (_buffer.get(i + j) != _bytes[j]) continue outer;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Waits until the server accepts connections.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    static void awaitServer() throws InterruptedException {
+        for (int attempt = 0; attempt < 50; attempt++) {
+            try {
+                SocketChannel probe = SocketChannel.open(new InetSocketAddress(HOST, PORT));
+                probe.close();
+                return;
+            } catch (IOException e) { TimeUnit.MILLISECONDS.sleep(100); }
+        }
+        throw new IllegalStateException("server did not start");
+    }
+}
@@ -0,0 +1,265 @@
+package com.chat.load;
+
+import com.chat.client.Client;
+import com.chat.client.chat.ChatMessageStore;
+import com.chat.client.event.ConnectionEventType;
+import com.chat.client.event.ServerEventType;
+import com.chat.server.Server;
+import com.chat.server.ServerConfig;
+import com.chat.server.ServerMode;
+import com.chat.server.metrics.LatencyHistogram;
+import com.chat.utils.Utils;
+import com.chat.utils.message.Message;
+import com.chat.utils.message.MessageType;
+import com.chat.utils.message.WireFormat;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The LoadGenerator class drives a {@link Server} with many headless {@link Client Clients} exchanging messages over loopback.
+ *
+ * <p>
+ *     It connects the clients one after the other and registers a unique name for each of them, then sends a mix of
+ *     public and private messages from random clients to random clients at a fixed rate. <br>
+ *     Every payload starts with the time the message was scheduled to be sent, so the receivers measure the delivery latency
+ *     including any delay of the generator itself. The generator reports the latency percentiles, the throughput
+ *     and the time taken to connect and name the clients.
+ * </p>
+ *
+ * <p>
+ *     Usage: <strong>LoadGenerator [--option=value...]</strong>, the following options are available:
+ * </p>
+ *
+ * <ul>
+ *   <li>--clients=[n]: the number of clients (defaults to 1000)</li>
+ *   <li>--rate=[n]: the number of messages sent per second by all the clients together (defaults to 1000)</li>
+ *   <li>--duration=[s]: how many seconds the messages are sent for (defaults to 30)</li>
+ *   <li>--public-ratio=[0..1]: the share of public messages (defaults to 0.05)</li>
+ *   <li>--payload=[n]: the length of the payloads (defaults to 64)</li>
+ *   <li>--format=[binary|json]: the {@link WireFormat} of the clients (defaults to binary)</li>
+ *   <li>--lazy-presence=[true|false]: whether the clients only receive the presence of the clients they talk to (defaults to false)</li>
+ *   <li>--server=[thread|virtual|nio]: starts an in-process server in the given {@link ServerMode},
+ *   otherwise a server must already be listening on 127.0.0.1</li>
+ * </ul>
+ *
+ * <p>
+ *     Every public message is delivered to every other client: the rate of deliveries grows with the number of clients
+ *     times the share of public messages.
+ * </p>
+ */
+public class LoadGenerator {
+    private static final String HOST = "127.0.0.1";
+    private static final long GRACE_SECONDS = 2;
+
+    private int clients = 1000;
+    private int rate = 1000;
+    private int duration = 30;
+    private double publicRatio = 0.05;
+    private int payload = 64;
+    private WireFormat format = WireFormat.BINARY;
+    private boolean lazyPresence = false;
+    private ServerMode server = null;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram setup = new LatencyHistogram();
+    private final LongAdder delivered = new LongAdder();
+
+    /**
+     * Runs the load generator.
+     *
+     * @param args the options of the load generator.
+     * @throws Exception if the load cannot be generated.
+     */
+    public static void main(String[] args) throws Exception {
+        LoadGenerator generator = new LoadGenerator();
+
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            String value = (option.length > 1)? option[1] : "";
+
+            try {
+                switch (option[0]) {
+                    case "--clients" -> generator.clients = Integer.parseInt(value);
+                    case "--rate" -> generator.rate = Integer.parseInt(value);
+                    case "--duration" -> generator.duration = Integer.parseInt(value);
+                    case "--public-ratio" -> generator.publicRatio = Double.parseDouble(value);
+                    case "--payload" -> generator.payload = Integer.parseInt(value);
+                    case "--format" -> generator.format = WireFormat.valueOf(value.toUpperCase());
+                    case "--lazy-presence" -> generator.lazyPresence = Boolean.parseBoolean(value);
+                    case "--server" -> generator.server = ServerMode.valueOf(value.toUpperCase());
+                    default -> Utils.println("unknown option: " + arg);
+                }
+            } catch (IllegalArgumentException e) { Utils.println("invalid value for option: " + arg); }
+        }
+
+        if (generator.clients < 2 || generator.rate < 1) {
+            Utils.println("at least 2 clients and a positive rate are required");
+            return;
+        }
+
+        generator.run();
+    }
+
+    /**
+     * Connects the clients, sends the messages and prints the report.
+     *
+     * @throws Exception if the load cannot be generated.
+     */
+    private void run() throws Exception {
+        Server embedded = null;
+        if (server != null) {
+            ServerConfig config = new ServerConfig();
+            config.setMode(server);
+            embedded = new Server(config);
+            new Thread(embedded::open).start();
+            ConnectionLoadTest.awaitServer();
+        }
+
+        Client[] connected = new Client[clients];
+        long start = System.nanoTime();
+        int count = 0;
+        for (; count < clients; count++) {
+            connected[count] = this.connect("load-" + count);
+            if (connected[count] == null) break;
+        }
+        long setupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        Utils.println(String.format("clients: %d of %d connected and named in %d ms, setup p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+                count, clients, setupMillis,
+                setup.getPercentile(50) / 1000.0, setup.getPercentile(99) / 1000.0, setup.getMax() / 1000.0));
+
+        if (count >= 2) {
+            long[] sent = this.send(connected, count);
+            TimeUnit.SECONDS.sleep(GRACE_SECONDS);
+            this.report(sent, count);
+        }
+
+        for (int i = 0; i < count; i++) connected[i].sendExitMessage();
+        if (embedded != null) embedded.close();
+    }
+
+    /**
+     * Connects a client and waits for the server to approve its name.
+     *
+     * @param _name the name of the client.
+     * @return the connected client, or null if it could not connect or be named.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private Client connect(String _name) throws InterruptedException {
+        Client client = new Client(ChatMessageStore.SPILL_BATCH, null);
+        client.setWireFormat(format);
+        client.setLazyPresence(lazyPresence);
+
+        CountDownLatch named = new CountDownLatch(1);
+        client.addServerEvent(ServerEventType.SERVER_RENAME_MESSAGE, message -> named.countDown());
+        client.addServerEvent(ServerEventType.SERVER_PRIVATE_MESSAGE, this::delivered);
+        client.addServerEvent(ServerEventType.SERVER_PUBLIC_MESSAGE, this::delivered);
+
+        boolean[] failed = { false };
+        client.addConnectionEvent(ConnectionEventType.CONNECTION_FAIL, () -> failed[0] = true);
+
+        long start = System.nanoTime();
+        client.connect(HOST);
+        if (failed[0] || !client.isOpen()) {
+            Utils.println("client " + _name + " could not connect");
+            return null;
+        }
+
+        client.sendChangeNameMessage(_name);
+        if (!named.await(10, TimeUnit.SECONDS)) {
+            Utils.println("client " + _name + " was not named in time");
+            client.sendExitMessage();
+            return null;
+        }
+
+        setup.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        return client;
+    }
+
+    /**
+     * Sends messages from random clients at the configured rate for the configured duration.
+     *
+     * @param _clients the connected clients.
+     * @param _count the number of connected clients.
+     * @return the number of public and private messages sent.
+     */
+    private long[] send(Client[] _clients, int _count) {
+        SplittableRandom random = new SplittableRandom(42);
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long[] sent = { 0, 0 };
+
+        long next = System.nanoTime();
+        long end = next + TimeUnit.SECONDS.toNanos(duration);
+        while (next < end) {
+            long now;
+            while ((now = System.nanoTime()) < next) LockSupport.parkNanos(next - now);
+
+            int from = random.nextInt(_count);
+            Client sender = _clients[from];
+            String text = this.payload(next);
+
+            if (random.nextDouble() < publicRatio) {
+                sender.write(new Message(MessageType.CLIENT_SEND_PUBLIC, text, sender.getName()));
+                sent[0]++;
+            } else {
+                int to = (from + 1 + random.nextInt(_count - 1)) % _count;
+                sender.write(new Message(MessageType.CLIENT_SEND_PRIVATE, text, sender.getName(), _clients[to].getName()));
+                sent[1]++;
+            }
+
+            next += interval;
+        }
+        return sent;
+    }
+
+    /**
+     * Builds a payload starting with the time the message was scheduled to be sent.
+     *
+     * @param _scheduled the {@link System#nanoTime()} the message was scheduled for.
+     * @return the payload.
+     */
+    private String payload(long _scheduled) {
+        StringBuilder text = new StringBuilder(Math.max(payload, 24)).append(_scheduled).append(':');
+        while (text.length() < payload) text.append('x');
+        return text.toString();
+    }
+
+    /**
+     * Records the delivery latency of a message received by a client.
+     *
+     * @param _message the message received.
+     */
+    private void delivered(Message _message) {
+        String text = _message.payload();
+        int separator = (text != null)? text.indexOf(':') : -1;
+        if (separator < 0) return;
+
+        try {
+            long scheduled = Long.parseLong(text, 0, separator, 10);
+            latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduled));
+            delivered.increment();
+        } catch (NumberFormatException ignored) {}
+    }
+
+    /**
+     * Prints the throughput and latency of the run.
+     *
+     * @param _sent the number of public and private messages sent.
+     * @param _count the number of connected clients.
+     */
+    private void report(long[] _sent, int _count) {
+        long expected = _sent[0] * (_count - 1) + _sent[1];
+
+        Utils.println(String.format("sent: %d public, %d private in %d s (%.0f messages/s)",
+                _sent[0], _sent[1], duration, (double) (_sent[0] + _sent[1]) / duration));
+        Utils.println(String.format("delivered: %d of %d (%.0f deliveries/s)",
+                delivered.sum(), expected, (double) delivered.sum() / duration));
+        Utils.println(String.format("latency: p50 %.2f ms, p99 %.2f ms, p999 %.2f ms, max %.2f ms",
+                latency.getPercentile(50) / 1000.0, latency.getPercentile(99) / 1000.0,
+                latency.getPercentile(99.9) / 1000.0, latency.getMax() / 1000.0));
+    }
+}
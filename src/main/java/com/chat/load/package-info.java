@@ -0,0 +1,14 @@
+
+/**
+ * The com.chat.load package contains the tools used to put a {@link com.chat.server.Server Server} under load
+ * and measure how it behaves.
+ *
+ * <p>
+ *     It consists of a {@link com.chat.load.ConnectionLoadTest ConnectionLoadTest} class that measures how many
+ *     concurrent connections the server sustains in each {@link com.chat.server.ServerMode ServerMode}
+ *     and a {@link com.chat.load.LoadGenerator LoadGenerator} class that exchanges messages between many headless
+ *     {@link com.chat.client.Client Clients} and reports their delivery latency, recorded in a
+ *     {@link com.chat.server.metrics.LatencyHistogram LatencyHistogram}.
+ * </p>
+ */
+package com.chat.load;
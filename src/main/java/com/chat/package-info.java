@@ -5,13 +5,14 @@
  * the clients can then communicate with each other and visualize the exchanged messages via a JavaFX UI Application.
  *
  * <p>
- *     The package is organized in three sub-packages that are arranged accordingly:
+ *     The package is organized in four sub-packages that are arranged accordingly:
  * </p>
  *
  * <ul>
  *     <li>{@link com.chat.client client}</li>
  *     <li>{@link com.chat.server server}</li>
  *     <li>{@link com.chat.utils utils}</li>
+ *     <li>{@link com.chat.load load}</li>
  * </ul>
  *
  * This package also contains the {@link com.chat.Main Main} function to run the project in the default procedure.
@@ -0,0 +1,325 @@
+package com.chat.server;
+
+import com.chat.server.metrics.ServerMetrics;
+import com.chat.utils.Utils;
+import com.chat.utils.log.LogLevel;
+import com.chat.utils.message.BinaryCodec;
+import com.chat.utils.message.Message;
+import com.chat.utils.message.WireFormat;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The ChannelConnection class is a non-blocking {@link ServerConnection} backed by a {@link SocketChannel}.
+ *
+ * <p>
+ *     It has no thread of its own: it is registered with an {@link EventLoop} that reads from the channel
+ *     when it is readable and drains the {@link OutboundQueue} when it is writable. <br>
+ *     Frames may be sent from any thread, they are queued and written by the owning event loop only. <br>
+ *     Flushes are scheduled at most once per event loop tick, so every frame queued during the tick is written
+ *     by a single gathering write.
+ * </p>
+ *
+ * <p>
+ *     An idle connection only holds its channel and an empty queue,
+ *     the read buffer is shared by all the connections of the same event loop.
+ * </p>
+ *
+ * <p>
+ *     The first byte read chooses the {@link WireFormat}: incoming bytes are then split either on newlines
+ *     or on the length prefixes of {@link BinaryCodec binary frames}.
+ * </p>
+ *
+ * @see EventLoop
+ * @see ServerMode#NIO
+ */
+public class ChannelConnection extends ServerConnection {
+    /** The maximum length of a single line, longer lines close the connection. */
+    public static final int MAX_LINE_LENGTH = 1 << 16;
+
+    /** The maximum number of frames written by a single gathering write. */
+    public static final int MAX_GATHER = 64;
+
+    private final SocketChannel channel;
+    private final EventLoop eventLoop;
+
+    private SelectionKey key;
+
+    private boolean negotiated = false;
+    private byte[] partial = null;
+    private int partialLength = 0;
+
+    private final ByteBuffer[] pending = new ByteBuffer[MAX_GATHER];
+    private int pendingCount = 0;
+    private boolean closing = false;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    /**
+     * Creates a new instance of ChannelConnection.
+     *
+     * @param _channel the non-blocking {@link SocketChannel} connected to the {@link com.chat.client.Client Client}.
+     * @param _id the unique ID of the connection.
+     * @param _eventLoop the {@link EventLoop} that owns the connection.
+     * @param _outbound the queue of the frames waiting to be written to the client.
+     * @param _metrics the metrics shared by the connections of the server.
+     */
+    public ChannelConnection(SocketChannel _channel, int _id, EventLoop _eventLoop, OutboundQueue _outbound, ServerMetrics _metrics) {
+        super(_id, _outbound, _metrics);
+        channel = _channel;
+        eventLoop = _eventLoop;
+    }
+
+    /**
+     * Registers the connection with its {@link EventLoop}, the method returns immediately.
+     *
+     * @param _clients the registry of all current connections to the {@link Server}.
+     */
+    @Override
+    public void open(ClientRegistry _clients) {
+        open = true;
+        clients = _clients;
+        eventLoop.register(this);
+    }
+
+    /**
+     * Queues a frame and asks the {@link EventLoop} to write it, event loop threads never wait for room in the queue.
+     *
+     * @param _frame the frame to send, owned by this connection.
+     * @param _mayBlock whether the calling thread is allowed to wait for room in the queue, event loop threads never are.
+     */
+    @Override
+    protected void send(ByteBuffer _frame, boolean _mayBlock) {
+        if (!channel.isOpen()) return;
+
+        if (outbound.offer(_frame, _mayBlock && !EventLoop.inEventLoop())) this.scheduleFlush();
+        else this.disconnectSlow();
+    }
+
+    /**
+     * Closes the channel once all the queued frames have been written, so that warnings reach the client.
+     */
+    @Override
+    protected void shutdown() {
+        outbound.close();
+        this.scheduleFlush();
+    }
+
+    /**
+     * Closes the channel immediately, discarding the queued frames.
+     */
+    @Override
+    protected void abort() { this.closeQuietly(); }
+
+    /** @return the {@link SocketChannel} of the connection */
+    SocketChannel getChannel() { return channel; }
+
+    /**
+     * Sets the {@link SelectionKey} of the connection, called by the {@link EventLoop} once registered.
+     *
+     * @param _key the selection key.
+     */
+    void setKey(SelectionKey _key) { key = _key; }
+
+    /**
+     * Reads the available bytes from the channel and processes every complete frame. <br>
+     * Must only be called by the owning {@link EventLoop}.
+     *
+     * @param _buffer the read buffer shared by the event loop.
+     */
+    void onReadable(ByteBuffer _buffer) {
+        try {
+            int read;
+            while ((read = channel.read(_buffer.clear())) > 0) {
+                metrics.bytesIn(read);
+                _buffer.flip();
+                if (!negotiated) this.negotiate(_buffer);
+
+                if (format == WireFormat.BINARY) this.splitFrames(_buffer);
+                else this.splitLines(_buffer);
+                if (!open) return;
+            }
+            if (read < 0) this.close(null);
+        } catch (StreamCorruptedException e) {
+            Utils.logln(LogLevel.ERROR, "exception: {}, closing connection {}", e.getMessage(), this.getId());
+            this.close(null);
+        } catch (IOException e) { this.close(null); }
+    }
+
+    /**
+     * Chooses the {@link WireFormat} from the first byte read, consuming it and sending it back if it is the
+     * {@link BinaryCodec#PREFACE preface}.
+     *
+     * @param _buffer the buffer containing the first bytes read.
+     */
+    private void negotiate(ByteBuffer _buffer) {
+        negotiated = true;
+        if ((_buffer.get(_buffer.position()) & 0xFF) == BinaryCodec.PREFACE) {
+            _buffer.position(_buffer.position() + 1);
+            format = WireFormat.BINARY;
+            this.send(BinaryCodec.preface());
+        }
+    }
+
+    /**
+     * Splits the bytes of the buffer on newlines, keeping the last incomplete line for the next read.
+     *
+     * @param _buffer the buffer containing the bytes read.
+     */
+    private void splitLines(ByteBuffer _buffer) {
+        while (_buffer.hasRemaining() && open) {
+            int start = _buffer.position();
+            int end = start;
+            while (end < _buffer.limit() && _buffer.get(end) != '\n') end++;
+
+            if (partialLength + end - start > MAX_LINE_LENGTH) {
+                Utils.logln(LogLevel.ERROR, "exception: line exceeded " + MAX_LINE_LENGTH + " bytes, closing connection {}", this.getId());
+                this.close(null);
+                return;
+            }
+            this.appendPartial(_buffer, start, end - start);
+
+            if (end < _buffer.limit()) {
+                String line = new String(partial, 0, partialLength, StandardCharsets.UTF_8);
+                this.resetPartial();
+
+                this.receive(Utils.serializeJson(line));
+                _buffer.position(end + 1);
+            } else { _buffer.position(end); }
+        }
+    }
+
+    /**
+     * Splits the bytes of the buffer into length-prefixed binary frames, keeping the last incomplete frame for the next read. <br>
+     * Complete frames are decoded straight from the buffer, only incomplete ones are copied.
+     *
+     * @param _buffer the buffer containing the bytes read.
+     * @throws StreamCorruptedException if a frame is malformed or too long.
+     */
+    private void splitFrames(ByteBuffer _buffer) throws StreamCorruptedException {
+        while (_buffer.hasRemaining() && open) {
+            if (partialLength == 0) {
+                int length = BinaryCodec.peekLength(_buffer);
+                int size = (length < 0)? -1 : BinaryCodec.varintSize(length) + length;
+
+                if (length >= 0 && size <= _buffer.remaining()) {
+                    int body = _buffer.position() + size - length;
+                    _buffer.position(_buffer.position() + size);
+
+                    this.receive(BinaryCodec.decode(_buffer.slice(body, length)));
+                    continue;
+                }
+            }
+
+            int length = (partialLength > 0)? BinaryCodec.peekLength(ByteBuffer.wrap(partial, 0, partialLength)) : -1;
+            int missing = (length < 0)? 1 : BinaryCodec.varintSize(length) + length - partialLength;
+            int copied = Math.min(missing, _buffer.remaining());
+
+            this.appendPartial(_buffer, _buffer.position(), copied);
+            _buffer.position(_buffer.position() + copied);
+
+            length = BinaryCodec.peekLength(ByteBuffer.wrap(partial, 0, partialLength));
+            if (length >= 0 && BinaryCodec.varintSize(length) + length == partialLength) {
+                Message message = BinaryCodec.decode(ByteBuffer.wrap(partial, partialLength - length, length));
+                this.resetPartial();
+                this.receive(message);
+            }
+        }
+    }
+
+    /**
+     * Appends a slice of the buffer to the current incomplete line or frame.
+     *
+     * @param _buffer the buffer containing the bytes read.
+     * @param _offset the offset of the slice.
+     * @param _length the length of the slice.
+     */
+    private void appendPartial(ByteBuffer _buffer, int _offset, int _length) {
+        if (partial == null) partial = new byte[Math.max(256, _length)];
+        else if (partial.length < partialLength + _length)
+            partial = Arrays.copyOf(partial, Math.max(partial.length * 2, partialLength + _length));
+
+        _buffer.get(_offset, partial, partialLength, _length);
+        partialLength += _length;
+    }
+
+    /**
+     * Empties the current incomplete line or frame, giving back its array if it grew large.
+     */
+    private void resetPartial() {
+        partialLength = 0;
+        if (partial.length > 1024) partial = null;
+    }
+
+    /**
+     * Asks the {@link EventLoop} to flush the connection, unless a flush is already scheduled.
+     */
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) eventLoop.scheduleFlush(this);
+    }
+
+    /**
+     * Writes as many queued frames as the channel accepts without blocking, up to {@link #MAX_GATHER} frames per write. <br>
+     * If some bytes are left the connection waits for the channel to become writable again,
+     * once the queue is closed and drained the channel is closed. <br>
+     * Must only be called by the owning {@link EventLoop}.
+     */
+    void flush() {
+        flushScheduled.set(false);
+        if (!channel.isOpen()) return;
+
+        try {
+            int frames = 0, writes = 0;
+            while (true) {
+                ByteBuffer frame;
+                while (!closing && pendingCount < MAX_GATHER && (frame = outbound.poll()) != null) {
+                    if (frame == OutboundQueue.CLOSE) closing = true;
+                    else {
+                        pending[pendingCount++] = frame;
+                        frames++;
+                    }
+                }
+                if (pendingCount == 0) break;
+
+                metrics.bytesOut(channel.write(pending, 0, pendingCount));
+                writes++;
+
+                int written = 0;
+                while (written < pendingCount && !pending[written].hasRemaining()) written++;
+                System.arraycopy(pending, written, pending, 0, pendingCount - written);
+                Arrays.fill(pending, pendingCount - written, pendingCount, null);
+                pendingCount -= written;
+
+                if (pendingCount > 0) break;
+            }
+            outbound.recordFlush(frames, writes);
+
+            if (closing && pendingCount == 0) {
+                channel.close();
+                return;
+            }
+
+            if (key != null && key.isValid()) key.interestOps( (pendingCount > 0)?
+                    key.interestOps() | SelectionKey.OP_WRITE :
+                    key.interestOps() & ~SelectionKey.OP_WRITE );
+        } catch (IOException e) {
+            this.close(null);
+            this.closeQuietly();
+        }
+    }
+
+    /**
+     * Closes the channel ignoring any exception, used when the connection is aborted or the event loop shuts down.
+     */
+    void closeQuietly() {
+        outbound.clear();
+        try { channel.close(); }
+        catch (IOException e) { Utils.logln(LogLevel.ERROR, "exception: IO exception occurred; {}", e.getMessage()); }
+    }
+}
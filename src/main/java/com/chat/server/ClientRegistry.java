@@ -0,0 +1,140 @@
+package com.chat.server;
+
+import com.chat.server.journal.Journal;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * The ClientRegistry class keeps track of all the {@link ServerConnection ServerConnections} of the {@link Server}
+ * and indexes the named ones by name.
+ *
+ * <p>
+ *     Names are reserved atomically: a name belongs to at most one connection and reserving it either succeeds
+ *     or fails as a whole, so two clients can never be approved with the same name. <br>
+ *     Lookups by name are constant time, iterating over the connections is weakly consistent and never blocks.
+ * </p>
+ *
+ * <p>
+ *     The registry also owns the {@link RoomRegistry} of the connections, so that every connection reaches the same rooms,
+ *     the {@link Cluster} of the server, so that every connection reaches the clients of the other nodes,
+ *     the {@link Journal} the messages are appended to, the {@link HistoryReplayer} reading it back,
+ *     the {@link Sequence} of the public chat and the {@link Presence} versioning the list of clients.
+ * </p>
+ *
+ * @see Server
+ * @see ServerConnection
+ */
+public class ClientRegistry {
+    private final ConcurrentSkipListSet<ServerConnection> connections =
+            new ConcurrentSkipListSet<>(Comparator.comparingInt(ServerConnection::getId));
+    private final ConcurrentHashMap<String, ServerConnection> names = new ConcurrentHashMap<>();
+    private final RoomRegistry rooms = new RoomRegistry();
+    private final Sequence publicSequence = new Sequence();
+    private volatile Presence presence = new Presence(this, 0);
+    private volatile Cluster cluster = new Cluster();
+    private volatile Journal journal = new Journal();
+    private volatile HistoryReplayer history = new HistoryReplayer(1);
+
+    /**
+     * Adds a new, still unnamed, {@link ServerConnection} to the registry.
+     *
+     * @param _connection the connection to add.
+     */
+    public void add(ServerConnection _connection) { connections.add(_connection); }
+
+    /**
+     * Removes a {@link ServerConnection} from the registry and releases its name.
+     *
+     * @param _connection the connection to remove.
+     */
+    public void remove(ServerConnection _connection) {
+        connections.remove(_connection);
+        this.release(_connection.getName(), _connection);
+    }
+
+    /**
+     * Reserves a name for a {@link ServerConnection}.
+     *
+     * @param _name the name to reserve.
+     * @param _connection the connection requesting the name.
+     * @return true if the name was free and is now reserved, false if it already belongs to a connection.
+     */
+    public boolean reserve(String _name, ServerConnection _connection) { return names.putIfAbsent(_name, _connection) == null; }
+
+    /**
+     * Releases a name, only if it is still reserved by the given {@link ServerConnection}.
+     *
+     * @param _name the name to release, may be null.
+     * @param _connection the connection that reserved the name.
+     */
+    public void release(String _name, ServerConnection _connection) { if (_name != null) names.remove(_name, _connection); }
+
+    /**
+     * Finds the {@link ServerConnection} with the given name.
+     *
+     * @param _name the name of the client, may be null.
+     * @return the connection with the given name, or an empty optional if there is none.
+     */
+    public Optional<ServerConnection> find(String _name) { return Optional.ofNullable((_name != null)? names.get(_name) : null); }
+
+    /** @return all the connections, named or not, ordered by id */
+    public Set<ServerConnection> getConnections() { return Collections.unmodifiableSet(connections); }
+
+    /** @return the connections that have a name */
+    public Collection<ServerConnection> getNamed() { return Collections.unmodifiableCollection(names.values()); }
+
+    /** @return the names of all the named connections */
+    public Set<String> getNames() { return Collections.unmodifiableSet(names.keySet()); }
+
+    /** @return the {@link RoomRegistry} of the connections */
+    public RoomRegistry getRooms() { return rooms; }
+
+    /** @return the {@link Sequence} numbering the messages of the public chat */
+    public Sequence getPublicSequence() { return publicSequence; }
+
+    /** @return the {@link Presence} versioning the list of clients */
+    public Presence getPresence() { return presence; }
+
+    /**
+     * Sets the {@link Presence} versioning the list of clients, before any connection is opened.
+     *
+     * @param _presence the presence.
+     */
+    public void setPresence(Presence _presence) { presence = _presence; }
+
+    /** @return the {@link Cluster} of the server, standalone unless the server is clustered */
+    public Cluster getCluster() { return cluster; }
+
+    /**
+     * Sets the {@link Cluster} of the server, before any connection is opened.
+     *
+     * @param _cluster the cluster.
+     */
+    public void setCluster(Cluster _cluster) { cluster = _cluster; }
+
+    /** @return the {@link Journal} of the server, disabled unless the server keeps a history */
+    public Journal getJournal() { return journal; }
+
+    /**
+     * Sets the {@link Journal} of the server, before any connection is opened.
+     *
+     * @param _journal the journal.
+     */
+    public void setJournal(Journal _journal) { journal = _journal; }
+
+    /** @return the {@link HistoryReplayer} answering the requests for the history of the chats */
+    public HistoryReplayer getHistory() { return history; }
+
+    /**
+     * Sets the {@link HistoryReplayer} answering the requests for the history of the chats, before any connection is opened.
+     *
+     * @param _history the replayer.
+     */
+    public void setHistory(HistoryReplayer _history) { history = _history; }
+}
@@ -0,0 +1,412 @@
+package com.chat.server;
+
+import com.chat.server.journal.Journal;
+import com.chat.utils.Utils;
+import com.chat.utils.log.LogLevel;
+import com.chat.utils.message.BinaryCodec;
+import com.chat.utils.message.Message;
+import com.chat.utils.message.MessageType;
+import com.chat.utils.message.WireFormat;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The Cluster class connects the {@link Server} to the other nodes serving the same chat, so that clients connected
+ * to different nodes see each other as if they were connected to a single server.
+ *
+ * <p>
+ *     The nodes are listed statically: every node is started with its own cluster address and the addresses of its peers,
+ *     and keeps a {@link PeerLink} to each of them. <br>
+ *     The names of the local clients, the public messages and the changes of names are relayed once to every peer,
+ *     which delivers them to its own clients. Every node keeps a directory of the remote names and the node that
+ *     serves them, so a private message is routed straight to the node of its receiver.
+ * </p>
+ *
+ * <p>
+ *     Names are unique across the cluster: every name is owned by one node, chosen by hashing the name over the sorted
+ *     list of nodes, and that node alone decides who may use it. A node reserves a name in its own {@link ClientRegistry}
+ *     first and then asks the owner, so two clients asking for the same name on any two nodes can never both be approved. <br>
+ *     If the owner cannot be reached the name is refused rather than risking a duplicate. When a peer goes away its
+ *     names are released and its clients removed, when its link comes back up the names are claimed and announced again.
+ * </p>
+ *
+ * <p>
+ *     Every node appends the public messages it delivers and the private messages of its own clients to its own
+ *     {@link com.chat.server.journal.Journal Journal}, so each node keeps the history its clients can see. <br>
+ *     A Cluster created without an address runs standalone: every name is reserved at once and nothing is relayed.
+ * </p>
+ *
+ * @see ServerConfig#getClusterAddress()
+ * @see PeerLink
+ */
+public class Cluster {
+    /** The number of milliseconds a node waits for the owner of a name to answer. */
+    public static final int RESERVE_TIMEOUT = 2000;
+
+    private final String self;
+    private final List<String> nodes;
+    private final int index;
+    private final ClientRegistry clients;
+    private final Map<String, PeerLink> links = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, String> claims = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> directory = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<Boolean>> pending = new ConcurrentHashMap<>();
+    private final AtomicLong tokens = new AtomicLong(0);
+
+    private final Set<Socket> inbound = ConcurrentHashMap.newKeySet();
+    private final Map<String, Socket> peers = new ConcurrentHashMap<>();
+    private ServerSocket listener;
+    private volatile boolean open = false;
+
+    /**
+     * Creates a standalone Cluster, for a server that is not clustered.
+     */
+    public Cluster() {
+        self = null;
+        nodes = List.of();
+        index = 0;
+        clients = null;
+    }
+
+    /**
+     * Creates a new instance of Cluster, it does not connect to its peers until {@link #open()} is called.
+     *
+     * @param _self the address of this node in the form <strong>host:port</strong>, the node listens for its peers on that port.
+     * @param _peers the addresses of the other nodes, every node must be given the same set of nodes.
+     * @param _clients the registry of the local connections.
+     */
+    public Cluster(String _self, Collection<String> _peers, ClientRegistry _clients) {
+        self = _self;
+        clients = _clients;
+
+        List<String> all = new ArrayList<>(_peers);
+        all.remove(_self);
+        all.add(_self);
+        nodes = all.stream().distinct().sorted().toList();
+        index = nodes.indexOf(self);
+
+        for (String node : nodes) {
+            if (!node.equals(self)) links.put(node, new PeerLink(self, node, this::linkUp));
+        }
+    }
+
+    /**
+     * Parses the address of a node.
+     *
+     * @param _address the address in the form <strong>host:port</strong>.
+     * @return the socket address, not resolved.
+     * @throws IllegalArgumentException if the address is malformed.
+     */
+    public static InetSocketAddress parseAddress(String _address) {
+        int colon = _address.lastIndexOf(':');
+        if (colon <= 0) throw new IllegalArgumentException("node address must be host:port, was " + _address);
+
+        int port = Integer.parseInt(_address.substring(colon + 1));
+        if (port < 1 || port > 65535) throw new IllegalArgumentException("port must be between 1 and 65535");
+        return InetSocketAddress.createUnresolved(_address.substring(0, colon), port);
+    }
+
+    /**
+     * Starts listening for the peers and connecting to them, a standalone cluster does nothing.
+     *
+     * @throws IOException if the cluster port cannot be bound.
+     */
+    public void open() throws IOException {
+        if (self == null) return;
+
+        listener = new ServerSocket(parseAddress(self).getPort());
+        open = true;
+
+        Thread accepting = new Thread(this::accept, "cluster-listener");
+        accepting.setDaemon(true);
+        accepting.start();
+
+        links.values().forEach(PeerLink::open);
+        Utils.println("cluster node " + self + " is connecting to " + String.join(", ", links.keySet()));
+    }
+
+    /**
+     * Disconnects from the peers, the names waiting for an answer are refused.
+     */
+    public void close() {
+        if (!open) return;
+
+        open = false;
+        links.values().forEach(PeerLink::close);
+        try { listener.close(); }
+        catch (IOException e) { Utils.logln(LogLevel.ERROR, "exception: IO exception occurred; {}", e.getMessage()); }
+
+        for (Socket socket : inbound) {
+            try { socket.close(); }
+            catch (IOException e) { Utils.logln(LogLevel.ERROR, "exception: IO exception occurred; {}", e.getMessage()); }
+        }
+        pending.values().forEach(future -> future.completeExceptionally(new IOException("cluster is closing")));
+    }
+
+    /**
+     * Reserves a name across the cluster, asking the node that owns it.
+     *
+     * @param _name the name, already reserved in the local {@link ClientRegistry}.
+     * @return a future completed with true if the name was reserved, false if it belongs to another node,
+     *         or completed exceptionally if the owner could not be reached in time.
+     */
+    public CompletableFuture<Boolean> reserve(String _name) {
+        if (self == null) return CompletableFuture.completedFuture(true);
+
+        String owner = this.owner(_name);
+        if (owner.equals(self)) return CompletableFuture.completedFuture(this.claim(_name, self));
+
+        String token = Long.toString(tokens.incrementAndGet());
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        pending.put(token, future);
+        future.orTimeout(RESERVE_TIMEOUT, TimeUnit.MILLISECONDS).whenComplete((reserved, e) -> pending.remove(token));
+
+        if (!links.get(owner).send(new Message(MessageType.NODE_RESERVE_NAME, _name, self, token)))
+            future.completeExceptionally(new IOException("node " + owner + " is unavailable"));
+        return future;
+    }
+
+    /**
+     * Releases a name reserved by this node.
+     *
+     * @param _name the name to release, may be null.
+     */
+    public void release(String _name) {
+        if (self == null || _name == null) return;
+
+        String owner = this.owner(_name);
+        if (owner.equals(self)) claims.remove(_name, self);
+        else links.get(owner).send(new Message(MessageType.NODE_RELEASE_NAME, _name, self));
+    }
+
+    /**
+     * Relays a {@link Frame} sent to the local clients, such as a public message, once to every peer.
+     *
+     * @param _frame the shared frame.
+     */
+    public void relay(Frame _frame) {
+        if (self == null) return;
+        for (PeerLink link : links.values()) link.send(_frame.encoded(WireFormat.BINARY));
+    }
+
+    /**
+     * Routes a private message to the node serving its receiver.
+     *
+     * @param _message the numbered {@link MessageType#SERVER_SEND_PRIVATE SERVER_SEND_PRIVATE} message of a local client, with its receiver.
+     * @return true if the message was sent to the receiver's node, false if no node serves the receiver.
+     */
+    public boolean route(Message _message) {
+        String node = (self != null && _message.receiver() != null)? directory.get(_message.receiver()) : null;
+        if (node == null) return false;
+
+        return links.get(node).send(_message);
+    }
+
+    /**
+     * @param _name a name.
+     * @return the address of the node that decides who may use the name
+     */
+    public String owner(String _name) { return nodes.get(Math.floorMod(_name.hashCode(), nodes.size())); }
+
+    /**
+     * Claims a name owned by this node for a node.
+     *
+     * @param _name the name.
+     * @param _node the node claiming it.
+     * @return true if the name is now claimed by the node, false if another node claimed it first.
+     */
+    private boolean claim(String _name, String _node) {
+        String holder = claims.putIfAbsent(_name, _node);
+        return holder == null || holder.equals(_node);
+    }
+
+    /**
+     * Sends a peer the state of this node every time the link to it comes up:
+     * the names of the local clients and the claims of the names it owns.
+     *
+     * @param _link the link that came up.
+     */
+    private void linkUp(PeerLink _link) {
+        for (String name : clients.getNames()) {
+            _link.send(new Message(MessageType.SERVER_ADD_CLIENT, name));
+            if (this.owner(name).equals(_link.getNode())) _link.send(new Message(MessageType.NODE_RESERVE_NAME, name, self, ""));
+        }
+    }
+
+    /**
+     * Accepts the connections of the peers and reads each of them on its own daemon thread.
+     */
+    private void accept() {
+        while (open) {
+            try {
+                Socket socket = listener.accept();
+                socket.setTcpNoDelay(true);
+                inbound.add(socket);
+
+                Thread reader = new Thread(() -> this.read(socket), "cluster-peer-" + socket.getRemoteSocketAddress());
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (open) Utils.logln(LogLevel.ERROR, "exception: IO exception occurred; {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reads the messages of a peer until its connection is closed, then forgets the names it served
+     * unless the peer already reconnected.
+     *
+     * @param _socket the connection opened by the peer.
+     */
+    private void read(Socket _socket) {
+        String node = null;
+        try (_socket) {
+            InputStream stream = new BufferedInputStream(_socket.getInputStream());
+
+            Message hello = BinaryCodec.read(stream);
+            if (hello == null || hello.type() != MessageType.NODE_HELLO || !links.containsKey(hello.payload())) {
+                Utils.logln(LogLevel.WARN, "warning: refused unknown node {}", _socket.getRemoteSocketAddress());
+                return;
+            }
+            node = hello.payload();
+            peers.put(node, _socket);
+            Utils.logln(LogLevel.INFO, "cluster: node {} connected", node);
+
+            for (Message message; (message = BinaryCodec.read(stream)) != null; ) this.receive(node, message);
+        }
+        catch (SocketException | EOFException e) {}
+        catch (IOException e) { Utils.logln(LogLevel.ERROR, "exception: IO exception occurred; {}", e.getMessage()); }
+        finally {
+            inbound.remove(_socket);
+            if (node != null && peers.remove(node, _socket)) this.nodeDown(node);
+        }
+    }
+
+    /**
+     * Forgets the claims and the clients of a node whose connection was lost, telling the local clients.
+     *
+     * @param _node the address of the node.
+     */
+    private void nodeDown(String _node) {
+        Utils.logln(LogLevel.WARN, "warning: node {} disconnected", _node);
+        claims.values().removeIf(_node::equals);
+        for (Map.Entry<String, String> entry : directory.entrySet()) {
+            if (entry.getValue().equals(_node) && directory.remove(entry.getKey(), _node))
+                this.deliverChange(new Message(MessageType.SERVER_REMOVE_CLIENT, entry.getKey()));
+        }
+    }
+
+    /**
+     * Handles a {@link Message} read from a peer.
+     *
+     * @param _node the address of the peer.
+     * @param _message the message.
+     */
+    private void receive(String _node, Message _message) {
+        if (_message.type() == null) return;
+
+        switch (_message.type()) {
+            case SERVER_ADD_CLIENT -> {
+                if (!_node.equals(directory.put(_message.payload(), _node))) this.deliverChange(_message);
+            }
+            case SERVER_RENAME_CLIENT -> {
+                if (_message.sender() != null) directory.remove(_message.sender(), _node);
+                directory.put(_message.payload(), _node);
+                this.deliverChange(_message);
+            }
+            case SERVER_REMOVE_CLIENT -> {
+                if (directory.remove(_message.payload(), _node)) this.deliverChange(_message);
+            }
+            case SERVER_SEND_PUBLIC -> {
+                clients.getPublicSequence().observe(_message.sequence());
+                Frame frame = this.deliver(_message);
+                if (clients.getJournal().isOpen()) clients.getJournal().append(frame.encoded(WireFormat.BINARY), Journal.PUBLIC_CHAT);
+            }
+            case SERVER_SEND_PRIVATE -> clients.find(_message.receiver())
+                    .ifPresent(client -> {
+                        client.offer(new Frame(_message));
+                        if (clients.getJournal().isOpen()) clients.getJournal().append(_message);
+                    });
+            case NODE_RESERVE_NAME -> {
+                boolean reserved = this.owner(_message.payload()).equals(self) && this.claim(_message.payload(), _node);
+                if (!reserved && _message.receiver().isEmpty())
+                    Utils.logln(LogLevel.WARN, "warning: node {} was refused the name {} it is using", _node, _message.payload());
+
+                links.get(_node).send(new Message(reserved? MessageType.NODE_NAME_RESERVED : MessageType.NODE_NAME_REFUSED,
+                        _message.payload(), null, _message.receiver()));
+            }
+            case NODE_NAME_RESERVED, NODE_NAME_REFUSED -> {
+                CompletableFuture<Boolean> future = pending.get(_message.receiver());
+                boolean reserved = _message.type() == MessageType.NODE_NAME_RESERVED;
+                if (future != null) future.complete(reserved);
+                else if (reserved && !_message.receiver().isEmpty() && clients.find(_message.payload()).isEmpty())
+                    this.release(_message.payload());
+            }
+            case NODE_RELEASE_NAME -> claims.remove(_message.payload(), _node);
+            default -> Utils.logln(LogLevel.WARN, "warning: unexpected message {} from node {}", _message.type(), _node);
+        }
+    }
+
+    /**
+     * Writes a {@link Message} relayed by a peer to every named local client, without waiting for room in their queues:
+     * the reader of a peer link must never be held up by a slow local client, it carries every message of its node.
+     *
+     * @param _message the message.
+     * @return the frame shared by the local clients.
+     */
+    private Frame deliver(Message _message) {
+        Frame frame = new Frame(_message);
+        for (ServerConnection client : clients.getNamed()) client.offer(frame);
+        return frame;
+    }
+
+    /**
+     * Hands a change of the list of clients relayed by a peer to the {@link Presence} of this node,
+     * which sends it to the local clients in its next batch, or right away for a rename.
+     *
+     * @param _change the change.
+     */
+    private void deliverChange(Message _change) {
+        switch (_change.type()) {
+            case SERVER_ADD_CLIENT -> clients.getPresence().add(_change.payload());
+            case SERVER_REMOVE_CLIENT -> clients.getPresence().remove(_change.payload());
+            case SERVER_RENAME_CLIENT -> {
+                if (_change.sender() != null) clients.getPresence().rename(_change.sender(), _change.payload());
+                else clients.getPresence().add(_change.payload());
+            }
+        }
+    }
+
+    /** @return the address of this node, or null if the server runs standalone */
+    public String getSelf() { return self; }
+
+    /** @return the index of this node in the sorted list of nodes, the low bits of the {@link Sequence} numbers it gives out */
+    public int getIndex() { return index; }
+
+    /** @return the links to the peers */
+    public Collection<PeerLink> getLinks() { return Collections.unmodifiableCollection(links.values()); }
+
+    /** @return the names served by the other nodes */
+    public Set<String> getRemoteNames() { return Collections.unmodifiableSet(directory.keySet()); }
+
+    /** @return the number of names owned by this node that are in use across the cluster */
+    public int getClaims() { return claims.size(); }
+}
@@ -0,0 +1,134 @@
+package com.chat.server;
+
+import com.chat.utils.Utils;
+import com.chat.utils.log.LogLevel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The EventLoop class multiplexes many {@link ChannelConnection ChannelConnections} on a single {@link Selector} and thread.
+ *
+ * <p>
+ *     Registrations and flush requests coming from other threads are queued and the selector is woken up,
+ *     so that every channel operation of a connection happens on the thread of its event loop.
+ * </p>
+ *
+ * @see ChannelConnection
+ * @see ServerMode#NIO
+ */
+public class EventLoop implements Runnable {
+    /** The size of the read buffer shared by all the connections of the event loop. */
+    public static final int READ_BUFFER_SIZE = 1 << 16;
+
+    private static final ThreadLocal<EventLoop> current = new ThreadLocal<>();
+
+    private final Selector selector;
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+    private final Queue<ChannelConnection> registrations = new ConcurrentLinkedQueue<>();
+    private final Queue<ChannelConnection> flushes = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean open = true;
+
+    /**
+     * Creates a new instance of EventLoop with its own {@link Selector}.
+     *
+     * @throws IOException if the selector cannot be opened.
+     */
+    public EventLoop() throws IOException { selector = Selector.open(); }
+
+    /**
+     * Queues a {@link ChannelConnection} to be registered for reading by the event loop.
+     *
+     * @param _connection the connection to register.
+     */
+    public void register(ChannelConnection _connection) {
+        registrations.add(_connection);
+        selector.wakeup();
+    }
+
+    /**
+     * Queues a {@link ChannelConnection} to be flushed by the event loop.
+     *
+     * @param _connection the connection to flush.
+     */
+    public void scheduleFlush(ChannelConnection _connection) {
+        flushes.add(_connection);
+        selector.wakeup();
+    }
+
+    /**
+     * Stops the event loop, the pending flushes are processed and the remaining channels are closed.
+     */
+    public void close() {
+        open = false;
+        selector.wakeup();
+    }
+
+    /** @return true if the calling thread is the thread of an event loop */
+    public static boolean inEventLoop() { return current.get() != null; }
+
+    /**
+     * Runs the event loop until it is closed.
+     */
+    @Override
+    public void run() {
+        current.set(this);
+        try {
+            while (open) {
+                selector.select();
+
+                this.processRegistrations();
+                this.processFlushes();
+                this.processSelectedKeys();
+            }
+
+            this.processFlushes();
+            selector.keys().forEach(key -> ((ChannelConnection) key.attachment()).closeQuietly());
+            selector.close();
+        } catch (IOException e) { Utils.logln(LogLevel.ERROR, "exception: IO exception occurred; {}", e.getMessage()); }
+    }
+
+    /**
+     * Registers the queued connections with the {@link Selector}.
+     */
+    private void processRegistrations() {
+        ChannelConnection connection;
+        while ((connection = registrations.poll()) != null) {
+            try {
+                connection.setKey(connection.getChannel().register(selector, SelectionKey.OP_READ, connection));
+            } catch (ClosedChannelException e) { connection.close(null); }
+        }
+    }
+
+    /**
+     * Flushes the queued connections.
+     */
+    private void processFlushes() {
+        ChannelConnection connection;
+        while ((connection = flushes.poll()) != null) connection.flush();
+    }
+
+    /**
+     * Dispatches the ready keys to their connections.
+     */
+    private void processSelectedKeys() {
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+
+            ChannelConnection connection = (ChannelConnection) key.attachment();
+            if (key.isValid() && key.isWritable()) connection.flush();
+            if (key.isValid() && key.isReadable()) connection.onReadable(readBuffer);
+        }
+    }
+}
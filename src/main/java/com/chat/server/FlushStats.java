@@ -0,0 +1,57 @@
+package com.chat.server;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The FlushStats class counts how well the writers of the {@link ServerConnection ServerConnections} coalesce their frames.
+ *
+ * <p>
+ *     A flush is one wake-up of a writer that empties its {@link OutboundQueue}: every frame it takes is counted,
+ *     as well as every write call it issues to the socket. <br>
+ *     Without batching every frame would cost one write, so the difference between frames and writes is the number
+ *     of syscalls saved.
+ * </p>
+ *
+ * <p>
+ *     The counters are shared by all the connections of a {@link Server} and never block the writers.
+ * </p>
+ *
+ * @see OutboundQueue
+ */
+public class FlushStats {
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+
+    /**
+     * Records a flush.
+     *
+     * @param _frames the number of frames written by the flush.
+     * @param _writes the number of write calls issued by the flush.
+     */
+    public void record(int _frames, int _writes) {
+        if (_frames == 0 && _writes == 0) return;
+
+        flushes.increment();
+        frames.add(_frames);
+        writes.add(_writes);
+    }
+
+    /** @return the number of flushes */
+    public long getFlushes() { return flushes.sum(); }
+
+    /** @return the number of frames written */
+    public long getFrames() { return frames.sum(); }
+
+    /** @return the number of write calls issued */
+    public long getWrites() { return writes.sum(); }
+
+    /** @return the average number of frames written per flush */
+    public double getFramesPerFlush() {
+        long flushes = this.getFlushes();
+        return (flushes > 0)? (double) this.getFrames() / flushes : 0;
+    }
+
+    /** @return the number of write calls saved by writing many frames at once */
+    public long getSyscallsSaved() { return Math.max(0, this.getFrames() - this.getWrites()); }
+}
@@ -0,0 +1,49 @@
+package com.chat.server;
+
+import com.chat.utils.Utils;
+import com.chat.utils.message.Message;
+import com.chat.utils.message.WireFormat;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The Frame class is a {@link Message} shared by many {@link ServerConnection ServerConnections}, such as a broadcast.
+ *
+ * <p>
+ *     The message is encoded at most once per {@link WireFormat}, the first time a connection using that format
+ *     writes it, and the encoded bytes are shared by all the recipients through read-only views.
+ * </p>
+ *
+ * @see ServerConnection#write(Frame)
+ */
+public class Frame {
+    private final Message message;
+    private final AtomicReferenceArray<ByteBuffer> encoded = new AtomicReferenceArray<>(WireFormat.values().length);
+
+    /**
+     * Creates a new instance of Frame.
+     *
+     * @param _message the message to share.
+     */
+    public Frame(Message _message) { message = _message; }
+
+    /**
+     * Gets the frame encoded in the given {@link WireFormat}, encoding it if no connection did yet.
+     *
+     * @param _format the format of the connection.
+     * @return a view of the encoded bytes owned by the caller, or null if the encoding failed.
+     */
+    public ByteBuffer encoded(WireFormat _format) {
+        ByteBuffer frame = encoded.get(_format.ordinal());
+        if (frame == null) {
+            frame = Utils.encodeFrame(message, _format);
+            if (frame == null) return null;
+            if (!encoded.compareAndSet(_format.ordinal(), null, frame)) frame = encoded.get(_format.ordinal());
+        }
+        return frame.duplicate();
+    }
+
+    /** @return the shared message */
+    public Message getMessage() { return message; }
+}
@@ -0,0 +1,143 @@
+package com.chat.server;
+
+import com.chat.server.journal.ChatOffsets;
+import com.chat.server.journal.Journal;
+import com.chat.server.journal.JournalEntry;
+import com.chat.utils.message.ErrorType;
+import com.chat.utils.message.Message;
+import com.chat.utils.message.MessageType;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The HistoryReplayer class answers the requests of the clients for the history of a chat, read from the {@link Journal}.
+ *
+ * <p>
+ *     Only the history of the public chat is replayed. A client is only known by its name, which any client can take once
+ *     its holder left, so the history of a private chat would be sent to whoever holds one of its names at the time:
+ *     requests for a private chat are refused with {@link ErrorType#HISTORY_UNAVAILABLE HISTORY_UNAVAILABLE}. <br>
+ *     The history is sent one page at a time: a page is streamed to the client straight from the journal as it is scanned,
+ *     and ends with a {@link MessageType#SERVER_HISTORY_PAGE SERVER_HISTORY_PAGE} carrying the cursor of the next page,
+ *     which the client requests once it received the page, or with a {@link MessageType#SERVER_HISTORY_END SERVER_HISTORY_END}
+ *     once the chat is caught up. The cursor is the offset of the journal to continue from, so a page never holds more
+ *     than a page of messages in memory however long the history is. A page only reads the messages of its chat,
+ *     found through the {@link Journal#getOffsets(String) index of the chats} of the journal, never the messages of the others. <br>
+ *     Replayed messages keep the {@link Sequence} number they were delivered with, so a client drops the ones it already received.
+ * </p>
+ *
+ * <p>
+ *     Pages are replayed on a small pool of daemon threads, never on the threads of the connections. A page reads at most
+ *     {@link #PAGE_SIZE} messages of the journal and the pool queues a bounded number of requests: when it is full, such as
+ *     after a restart when every client reconnects at once, the request is refused with {@link ErrorType#HISTORY_BUSY HISTORY_BUSY}
+ *     and the client asks again later, so a reconnect storm costs the server a fixed amount of work at a time.
+ * </p>
+ *
+ * @see ClientRegistry#getHistory()
+ */
+public class HistoryReplayer {
+    /** The maximum number of messages sent in a page. */
+    public static final int PAGE_SIZE = 100;
+    /** The number of requests that can wait for a thread of the pool, per thread. */
+    public static final int QUEUE_PER_THREAD = 16;
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Creates a new instance of HistoryReplayer.
+     *
+     * @param _threads the number of pages replayed at once.
+     */
+    public HistoryReplayer(int _threads) {
+        AtomicInteger count = new AtomicInteger(0);
+        executor = new ThreadPoolExecutor(_threads, _threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(_threads * QUEUE_PER_THREAD),
+                task -> {
+                    Thread thread = new Thread(task, "history-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Queues the replay of a page of the history of a chat, or refuses it if the server has no history of the chat or is too busy.
+     *
+     * @param _connection the connection of the client requesting the history.
+     * @param _journal the journal of the server.
+     * @param _chat the name of the chat, only the public chat has a history.
+     * @param _cursor the cursor returned by the previous page, or null to start from the oldest message.
+     */
+    public void replay(ServerConnection _connection, Journal _journal, String _chat, String _cursor) {
+        long from;
+        try { from = (_cursor != null)? Long.parseLong(_cursor) : 0; }
+        catch (NumberFormatException e) { from = -1; }
+
+        if (!_journal.isOpen() || !Journal.PUBLIC_CHAT.equals(_chat) || from < 0) {
+            this.refuse(_connection, _chat, ErrorType.HISTORY_UNAVAILABLE);
+            return;
+        }
+
+        long start = Math.max(from, _journal.getFirstOffset());
+        try { executor.execute(() -> this.page(_connection, _journal, _chat, start)); }
+        catch (RejectedExecutionException e) { this.refuse(_connection, _chat, ErrorType.HISTORY_BUSY); }
+    }
+
+    /**
+     * Streams a page of the history of the public chat to the client.
+     *
+     * @param _connection the connection of the client requesting the history.
+     * @param _journal the journal of the server.
+     * @param _chat the name of the public chat.
+     * @param _from the offset of the journal the page starts from.
+     */
+    private void page(ServerConnection _connection, Journal _journal, String _chat, long _from) {
+        long committed = _journal.getNextOffset();
+        ChatOffsets offsets = _journal.getOffsets(Journal.PUBLIC_CHAT);
+
+        long cursor = _from;
+        int index = (offsets != null)? offsets.ceiling(_from) : 0;
+        int count = (offsets != null)? offsets.size() : 0;
+        int sent = 0;
+        while (index < count && offsets.get(index) < committed && sent < PAGE_SIZE && !_connection.isClosed()) {
+            long offset = offsets.get(index++);
+            cursor = offset + 1;
+
+            JournalEntry entry = _journal.read(offset);
+            if (entry == null) continue;
+
+            Message message = entry.message();
+            if (message.type() == MessageType.SERVER_SEND_PUBLIC) {
+                _connection.write(new Message(MessageType.SERVER_SEND_HISTORY, message.payload(), message.sender(), _chat,
+                        message.sequence(), message.timestamp()));
+                sent++;
+            }
+        }
+
+        boolean caughtUp = index >= count || offsets.get(index) >= committed;
+        _connection.write(new Message(caughtUp? MessageType.SERVER_HISTORY_END : MessageType.SERVER_HISTORY_PAGE,
+                Long.toString(caughtUp? Math.max(cursor, committed) : cursor), null, _chat));
+    }
+
+    /**
+     * Refuses a request for the history of a chat.
+     *
+     * @param _connection the connection of the client requesting the history.
+     * @param _chat the name of the chat, sent back so that the client knows which request to retry.
+     * @param _error the reason of the refusal.
+     */
+    private void refuse(ServerConnection _connection, String _chat, ErrorType _error) {
+        _connection.getMetrics().error(_error);
+        _connection.write(new Message(MessageType.SERVER_SEND_ERROR, _error.name(), null, _chat));
+    }
+
+    /**
+     * Stops the threads of the pool, the pages being replayed are completed.
+     */
+    public void close() { executor.shutdown(); }
+
+    /** @return the number of pages being replayed or waiting for a thread */
+    public int getPending() { return executor.getActiveCount() + executor.getQueue().size(); }
+}
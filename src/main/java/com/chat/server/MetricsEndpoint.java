@@ -0,0 +1,258 @@
+package com.chat.server;
+
+import com.chat.server.journal.Journal;
+import com.chat.server.metrics.PrometheusWriter;
+import com.chat.server.metrics.ServerMetrics;
+import com.chat.utils.Utils;
+import com.chat.utils.log.LogLevel;
+import com.chat.utils.message.ErrorType;
+import com.chat.utils.message.MessageType;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The MetricsEndpoint class serves the metrics of the {@link Server} over HTTP in the Prometheus text exposition format.
+ *
+ * <p>
+ *     It is built on the HTTP server of the JDK and listens on its own port, answering <strong>GET /metrics</strong>
+ *     with the {@link ServerMetrics}, the depths of the {@link OutboundQueue OutboundQueues}, the {@link FlushStats}
+ *     and the garbage collections, heap and allocations of the JVM.
+ * </p>
+ *
+ * <p>
+ *     Scrapes are served one at a time by a single daemon thread, never by the threads of the connections. <br>
+ *     Every page is rendered into the same {@link PrometheusWriter}, so a scrape costs a pass over the counters
+ *     and the clients' queues but almost no garbage.
+ * </p>
+ *
+ * @see ServerConfig#getMetricsPort()
+ */
+public class MetricsEndpoint {
+    /** The path the metrics are served on. */
+    public static final String PATH = "/metrics";
+
+    private static final MessageType[] MESSAGE_TYPES = MessageType.values();
+    private static final ErrorType[] ERROR_TYPES = ErrorType.values();
+
+    private final int port;
+    private final ServerMetrics metrics;
+    private final ClientRegistry clients;
+    private final FlushStats flushStats;
+
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    private final PrometheusWriter writer = new PrometheusWriter();
+    private Map<Long, Long> allocatedByThread = new HashMap<>();
+    private Map<Long, Long> allocatedByLiveThread = new HashMap<>();
+    private long allocatedByExitedThreads = 0;
+
+    private HttpServer http;
+    private ExecutorService executor;
+
+    /**
+     * Creates a new instance of MetricsEndpoint, it does not listen until {@link #open()} is called.
+     *
+     * @param _port the port to listen on.
+     * @param _metrics the metrics of the server.
+     * @param _clients the registry of the connections, whose queues are measured.
+     * @param _flushStats the counters of the writers' flushes.
+     */
+    public MetricsEndpoint(int _port, ServerMetrics _metrics, ClientRegistry _clients, FlushStats _flushStats) {
+        port = _port;
+        metrics = _metrics;
+        clients = _clients;
+        flushStats = _flushStats;
+    }
+
+    /**
+     * Starts listening for scrapes.
+     *
+     * @throws IOException if the port cannot be bound.
+     */
+    public void open() throws IOException {
+        executor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-endpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        http = HttpServer.create(new InetSocketAddress(port), 0);
+        http.createContext(PATH, this::handle);
+        http.setExecutor(executor);
+        http.start();
+        Utils.println("metrics are served at http://localhost:" + port + PATH);
+    }
+
+    /**
+     * Stops listening, scrapes in progress are given a second to complete.
+     */
+    public void close() {
+        if (http != null) http.stop(1);
+        if (executor != null) executor.shutdown();
+        http = null;
+        executor = null;
+    }
+
+    /**
+     * Answers a scrape with the rendered metrics.
+     *
+     * @param _exchange the HTTP request and response.
+     * @throws IOException if an I/O error occurs.
+     */
+    private void handle(HttpExchange _exchange) throws IOException {
+        try (_exchange) {
+            if (!_exchange.getRequestMethod().equals("GET")) {
+                _exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            this.render(writer.reset());
+            _exchange.getResponseHeaders().set("Content-Type", PrometheusWriter.CONTENT_TYPE);
+            _exchange.sendResponseHeaders(200, writer.getLength());
+
+            try (OutputStream body = _exchange.getResponseBody()) { writer.writeTo(body); }
+        } catch (RuntimeException e) { Utils.logln(LogLevel.ERROR, "exception: could not render the metrics; {}", e.getMessage()); }
+    }
+
+    /**
+     * Renders every metric.
+     *
+     * @param _writer the writer to render into.
+     */
+    private void render(PrometheusWriter _writer) {
+        _writer.header("chat_connections", "gauge", "Connections currently open.")
+                .sample("chat_connections", metrics.getConnections());
+        _writer.header("chat_connections_opened_total", "counter", "Connections opened.")
+                .sample("chat_connections_opened_total", metrics.getConnectionsOpened());
+        _writer.header("chat_connections_closed_total", "counter", "Connections closed.")
+                .sample("chat_connections_closed_total", metrics.getConnectionsClosed());
+        _writer.header("chat_slow_disconnects_total", "counter", "Clients disconnected for not reading their messages fast enough.")
+                .sample("chat_slow_disconnects_total", metrics.getSlowDisconnects());
+
+        _writer.header("chat_messages_received_total", "counter", "Messages read from the clients by type.");
+        for (MessageType type : MESSAGE_TYPES)
+            _writer.sample("chat_messages_received_total", "type", type.name(), metrics.getMessagesIn(type));
+        _writer.header("chat_messages_sent_total", "counter", "Messages queued for the clients by type.");
+        for (MessageType type : MESSAGE_TYPES)
+            _writer.sample("chat_messages_sent_total", "type", type.name(), metrics.getMessagesOut(type));
+        _writer.header("chat_errors_total", "counter", "Errors sent to the clients by type.");
+        for (ErrorType type : ERROR_TYPES)
+            _writer.sample("chat_errors_total", "type", type.name(), metrics.getErrors(type));
+
+        _writer.header("chat_received_bytes_total", "counter", "Bytes read from the clients.")
+                .sample("chat_received_bytes_total", metrics.getBytesIn());
+        _writer.header("chat_sent_bytes_total", "counter", "Bytes written to the clients.")
+                .sample("chat_sent_bytes_total", metrics.getBytesOut());
+
+        _writer.summary("chat_handle_latency_seconds", "Time taken to handle a message read from a client.", metrics.getHandleLatency(), 1e-9);
+        _writer.summary("chat_fanout_latency_seconds", "Time taken to queue a broadcast for all its recipients.", metrics.getFanOutLatency(), 1e-9);
+
+        long queued = 0, deepest = 0, dropped = 0;
+        for (ServerConnection client : clients.getConnections()) {
+            int depth = client.getOutbound().getDepth();
+            queued += depth;
+            deepest = Math.max(deepest, depth);
+            dropped += client.getOutbound().getDropped();
+        }
+        _writer.header("chat_outbound_queued_frames", "gauge", "Frames waiting to be written to all the clients.")
+                .sample("chat_outbound_queued_frames", queued);
+        _writer.header("chat_outbound_max_queue_depth", "gauge", "Frames waiting to be written to the slowest client.")
+                .sample("chat_outbound_max_queue_depth", deepest);
+        _writer.header("chat_outbound_dropped_frames", "gauge", "Frames dropped from the queues of the connected clients.")
+                .sample("chat_outbound_dropped_frames", dropped);
+
+        _writer.header("chat_flushes_total", "counter", "Flushes of the writers.")
+                .sample("chat_flushes_total", flushStats.getFlushes());
+        _writer.header("chat_flushed_frames_total", "counter", "Frames written by the flushes.")
+                .sample("chat_flushed_frames_total", flushStats.getFrames());
+        _writer.header("chat_flush_writes_total", "counter", "Write calls issued by the flushes.")
+                .sample("chat_flush_writes_total", flushStats.getWrites());
+
+        Journal journal = clients.getJournal();
+        if (journal.isOpen()) {
+            _writer.header("chat_journal_messages", "gauge", "Messages held by the journal.")
+                    .sample("chat_journal_messages", journal.getNextOffset() - journal.getFirstOffset());
+            _writer.header("chat_journal_segments", "gauge", "Segment files of the journal.")
+                    .sample("chat_journal_segments", journal.getSegments());
+            _writer.header("chat_journal_batches_total", "counter", "Batches committed by the journal.")
+                    .sample("chat_journal_batches_total", journal.getBatches());
+        }
+
+        this.renderJvm(_writer);
+    }
+
+    /**
+     * Renders the garbage collections, heap, allocations and threads of the JVM.
+     *
+     * @param _writer the writer to render into.
+     */
+    private void renderJvm(PrometheusWriter _writer) {
+        _writer.header("jvm_gc_collections_total", "counter", "Garbage collections by collector.");
+        for (GarbageCollectorMXBean collector : collectors)
+            _writer.sample("jvm_gc_collections_total", "gc", collector.getName(), Math.max(0, collector.getCollectionCount()));
+        _writer.header("jvm_gc_collection_seconds_total", "counter", "Time spent in garbage collections by collector.");
+        for (GarbageCollectorMXBean collector : collectors)
+            _writer.sample("jvm_gc_collection_seconds_total", "gc", collector.getName(), Math.max(0, collector.getCollectionTime()) / 1000.0);
+
+        MemoryUsage heap = memory.getHeapMemoryUsage();
+        _writer.header("jvm_heap_used_bytes", "gauge", "Heap in use.")
+                .sample("jvm_heap_used_bytes", heap.getUsed());
+        _writer.header("jvm_heap_committed_bytes", "gauge", "Heap committed by the JVM.")
+                .sample("jvm_heap_committed_bytes", heap.getCommitted());
+
+        if (threads instanceof com.sun.management.ThreadMXBean allocations && allocations.isThreadAllocatedMemoryEnabled()) {
+            _writer.header("jvm_allocated_bytes_total", "counter", "Bytes allocated by the threads, its rate is the allocation rate.")
+                    .sample("jvm_allocated_bytes_total", this.allocated(allocations));
+        }
+
+        _writer.header("jvm_threads", "gauge", "Live threads.")
+                .sample("jvm_threads", threads.getThreadCount());
+        _writer.header("process_uptime_seconds", "gauge", "Seconds since the metrics were created.")
+                .sample("process_uptime_seconds", metrics.getUptime());
+    }
+
+    /**
+     * Sums the bytes allocated by the live threads and by the threads that exited since the endpoint was opened. <br>
+     * The last count seen of every thread is kept, and added to the exited threads once the thread is gone,
+     * so the sum never decreases when the threads of a connection exit. The bytes a thread allocated between
+     * the last scrape and its exit are not counted.
+     *
+     * @param _allocations the bean counting the bytes allocated by every thread.
+     * @return the number of bytes allocated.
+     */
+    private long allocated(com.sun.management.ThreadMXBean _allocations) {
+        long[] ids = threads.getAllThreadIds();
+        long[] bytes = _allocations.getThreadAllocatedBytes(ids);
+
+        long live = 0;
+        allocatedByLiveThread.clear();
+        for (int i = 0; i < ids.length; i++) {
+            if (bytes[i] <= 0) continue;
+            allocatedByLiveThread.put(ids[i], bytes[i]);
+            live += bytes[i];
+        }
+        for (Map.Entry<Long, Long> thread : allocatedByThread.entrySet())
+            if (!allocatedByLiveThread.containsKey(thread.getKey())) allocatedByExitedThreads += thread.getValue();
+
+        Map<Long, Long> previous = allocatedByThread;
+        allocatedByThread = allocatedByLiveThread;
+        allocatedByLiveThread = previous;
+        return allocatedByExitedThreads + live;
+    }
+}
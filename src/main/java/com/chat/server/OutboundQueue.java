@@ -0,0 +1,169 @@
+package com.chat.server;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The OutboundQueue class is the bounded queue of frames waiting to be written to a {@link ServerConnection}.
+ *
+ * <p>
+ *     Any thread can offer frames, a single writer takes them: the connection's writer thread in
+ *     {@link ServerMode#THREAD THREAD} and {@link ServerMode#VIRTUAL VIRTUAL} mode, its {@link EventLoop} in
+ *     {@link ServerMode#NIO NIO} mode. <br>
+ *     When the queue is full the {@link OverflowPolicy} decides whether to drop the oldest frame, to disconnect the
+ *     connection or to wait for room, so that a slow client never stalls the senders for longer than allowed.
+ * </p>
+ *
+ * <p>
+ *     The writer empties the queue in batches and flushes them at once, waiting up to the flush linger
+ *     for more frames to join the batch. Its flushes are counted in the shared {@link FlushStats}.
+ * </p>
+ *
+ * @see OverflowPolicy
+ * @see ServerConnection
+ */
+public class OutboundQueue {
+    /** The frame taken by the writer once the queue is closed and every frame before it has been taken. */
+    public static final ByteBuffer CLOSE = ByteBuffer.allocate(0).asReadOnlyBuffer();
+
+    private final LinkedBlockingQueue<ByteBuffer> frames = new LinkedBlockingQueue<>();
+    private final Semaphore room;
+
+    private final OverflowPolicy policy;
+    private final long blockTimeout;
+    private final long flushLinger;
+
+    private final FlushStats stats;
+
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a new instance of OutboundQueue.
+     *
+     * @param _capacity the maximum number of queued frames.
+     * @param _policy the {@link OverflowPolicy} applied when the queue is full.
+     * @param _blockTimeout the maximum number of milliseconds a sender waits with the {@link OverflowPolicy#BLOCK BLOCK} policy.
+     * @param _flushLinger the maximum number of microseconds the writer waits for more frames before flushing.
+     * @param _stats the counters of the writer's flushes.
+     */
+    public OutboundQueue(int _capacity, OverflowPolicy _policy, long _blockTimeout, long _flushLinger, FlushStats _stats) {
+        room = new Semaphore(_capacity);
+        policy = _policy;
+        blockTimeout = _blockTimeout;
+        flushLinger = _flushLinger;
+        stats = _stats;
+    }
+
+    /**
+     * Offers a frame to the queue, applying the {@link OverflowPolicy} if it is full.
+     *
+     * @param _frame the frame to queue.
+     * @param _mayBlock whether the calling thread is allowed to wait for room.
+     * @return false if the connection is too slow and must be disconnected, true otherwise.
+     */
+    public boolean offer(ByteBuffer _frame, boolean _mayBlock) {
+        if (closed) return true;
+
+        switch (policy) {
+            case DROP_OLDEST -> {
+                while (!room.tryAcquire()) {
+                    ByteBuffer oldest = frames.poll();
+                    if (oldest == CLOSE) { frames.add(CLOSE); return true; }
+                    if (oldest != null) {
+                        dropped.increment();
+                        break;
+                    }
+                }
+            }
+            case DISCONNECT -> { if (!room.tryAcquire()) return false; }
+            case BLOCK -> {
+                try {
+                    if (!(_mayBlock? room.tryAcquire(blockTimeout, TimeUnit.MILLISECONDS) : room.tryAcquire())) return false;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+
+        frames.add(_frame);
+        return true;
+    }
+
+    /**
+     * Waits for the next frame.
+     *
+     * @return the next frame, or {@link #CLOSE} once the queue is closed and drained.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public ByteBuffer take() throws InterruptedException { return this.release(frames.take()); }
+
+    /**
+     * Takes the next frame if there is one.
+     *
+     * @return the next frame, {@link #CLOSE} once the queue is closed and drained, or null if the queue is empty.
+     */
+    public ByteBuffer poll() { return this.release(frames.poll()); }
+
+    /**
+     * Takes the next frame, waiting until the deadline for one to be queued.
+     *
+     * @param _deadline the {@link System#nanoTime()} after which the method no longer waits.
+     * @return the next frame, {@link #CLOSE} once the queue is closed and drained, or null if the deadline passed.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public ByteBuffer poll(long _deadline) throws InterruptedException {
+        long timeout = _deadline - System.nanoTime();
+        return this.release((timeout > 0)? frames.poll(timeout, TimeUnit.NANOSECONDS) : frames.poll());
+    }
+
+    /**
+     * Closes the queue, frames already queued are still taken before {@link #CLOSE}, new frames are ignored.
+     */
+    public void close() {
+        if (closed) return;
+
+        closed = true;
+        frames.add(CLOSE);
+    }
+
+    /**
+     * Empties the queue, used when the connection is gone and the frames can no longer be written.
+     */
+    public void clear() {
+        closed = true;
+        while (this.poll() != null) {}
+    }
+
+    /**
+     * Records a flush of the writer.
+     *
+     * @param _frames the number of frames written.
+     * @param _writes the number of write calls issued.
+     */
+    public void recordFlush(int _frames, int _writes) { stats.record(_frames, _writes); }
+
+    /** @return the {@link System#nanoTime()} until which the writer waits for more frames, starting now */
+    public long lingerDeadline() { return System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(flushLinger); }
+
+    /** @return the number of queued frames */
+    public int getDepth() { return frames.size(); }
+
+    /** @return the number of frames dropped by the {@link OverflowPolicy#DROP_OLDEST DROP_OLDEST} policy */
+    public long getDropped() { return dropped.sum(); }
+
+    /**
+     * Gives back the room taken by a frame once the writer took it.
+     *
+     * @param _frame the frame taken, may be null.
+     * @return the same frame.
+     */
+    private ByteBuffer release(ByteBuffer _frame) {
+        if (_frame != null && _frame != CLOSE) room.release();
+        return _frame;
+    }
+}
@@ -0,0 +1,23 @@
+package com.chat.server;
+
+/**
+ * The OverflowPolicy enum represents what an {@link OutboundQueue} does when a frame is sent to a full queue,
+ * that is when the {@link com.chat.client.Client Client} reads slower than it is written to.
+ *
+ * @see OutboundQueue
+ * @see ServerConfig
+ */
+public enum OverflowPolicy {
+    /** The oldest queued frame is dropped to make room for the new one. */
+    DROP_OLDEST,
+
+    /** The slow {@link ServerConnection} is disconnected. */
+    DISCONNECT,
+
+    /**
+     * The sender waits for room up to the configured timeout, then the slow {@link ServerConnection} is disconnected. <br>
+     * Only frames written to a single client wait: a broadcast would hold its sender for the timeout of every slow recipient,
+     * so broadcasts and event loop threads never wait and disconnect right away, as with {@link #DISCONNECT}.
+     */
+    BLOCK
+}
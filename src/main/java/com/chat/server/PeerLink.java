@@ -0,0 +1,180 @@
+package com.chat.server;
+
+import com.chat.utils.Utils;
+import com.chat.utils.log.LogLevel;
+import com.chat.utils.message.BinaryCodec;
+import com.chat.utils.message.Message;
+import com.chat.utils.message.MessageType;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * The PeerLink class is the outbound connection from a node of a {@link Cluster} to one of its peers.
+ *
+ * <p>
+ *     Every node only writes to its own links and only reads from the links the peers opened to it,
+ *     so a pair of nodes shares two connections, one per direction. <br>
+ *     The link introduces the node with a {@link MessageType#NODE_HELLO NODE_HELLO} and then writes binary frames
+ *     queued by any thread, batching the frames queued together into a single flush.
+ * </p>
+ *
+ * <p>
+ *     When the connection fails the queued frames are discarded and the link reconnects every second,
+ *     the {@link Cluster} is told every time the link comes up so that it can send the peer its state again.
+ * </p>
+ */
+public class PeerLink {
+    /** The maximum number of frames waiting to be written to the peer. */
+    public static final int CAPACITY = 1 << 16;
+    /** The number of milliseconds between two connection attempts. */
+    public static final int RETRY_INTERVAL = 1000;
+
+    private final String self;
+    private final String node;
+    private final InetSocketAddress address;
+    private final Consumer<PeerLink> onConnect;
+
+    private final LinkedBlockingQueue<ByteBuffer> frames = new LinkedBlockingQueue<>(CAPACITY);
+
+    private volatile boolean open = false;
+    private volatile boolean connected = false;
+    private volatile Socket socket;
+    private Thread writer;
+
+    /**
+     * Creates a new instance of PeerLink, it does not connect until {@link #open()} is called.
+     *
+     * @param _self the address of this node.
+     * @param _node the address of the peer.
+     * @param _onConnect called on the writer thread every time the link comes up, before any queued frame is written.
+     */
+    public PeerLink(String _self, String _node, Consumer<PeerLink> _onConnect) {
+        self = _self;
+        node = _node;
+        address = Cluster.parseAddress(_node);
+        onConnect = _onConnect;
+    }
+
+    /**
+     * Starts connecting to the peer on a daemon thread.
+     */
+    public void open() {
+        open = true;
+        writer = new Thread(this::run, "cluster-link-" + node);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Closes the link, discarding the queued frames.
+     */
+    public void close() {
+        open = false;
+        connected = false;
+        this.reset();
+        if (writer != null) writer.interrupt();
+    }
+
+    /**
+     * Queues a {@link Message} for the peer.
+     *
+     * @param _message the message to send.
+     * @return true if the message was queued, false if the link is down.
+     */
+    public boolean send(Message _message) { return this.send(BinaryCodec.encode(_message)); }
+
+    /**
+     * Queues an encoded binary frame for the peer, a peer that cannot keep up is reconnected.
+     *
+     * @param _frame the frame to send, owned by this link.
+     * @return true if the frame was queued, false if the link is down.
+     */
+    public boolean send(ByteBuffer _frame) {
+        if (!connected || _frame == null) return false;
+        if (frames.offer(_frame)) return true;
+
+        Utils.logln(LogLevel.WARN, "warning: node {} is not keeping up, reconnecting", node);
+        this.reset();
+        return false;
+    }
+
+    /**
+     * Connects to the peer and writes the queued frames until the link is closed, reconnecting on failures.
+     */
+    private void run() {
+        while (open) {
+            try (Socket connection = new Socket()) {
+                connection.connect(new InetSocketAddress(address.getHostString(), address.getPort()), RETRY_INTERVAL);
+                connection.setTcpNoDelay(true);
+                socket = connection;
+
+                BufferedOutputStream stream = new BufferedOutputStream(connection.getOutputStream(), ServerConnection.WRITE_BUFFER_SIZE);
+                WritableByteChannel channel = Channels.newChannel(stream);
+                this.write(channel, BinaryCodec.encode(new Message(MessageType.NODE_HELLO, self)));
+                stream.flush();
+
+                frames.clear();
+                connected = true;
+                Utils.logln(LogLevel.INFO, "cluster: connected to node {}", node);
+                onConnect.accept(this);
+
+                while (open) {
+                    ByteBuffer frame = frames.take();
+                    do { this.write(channel, frame); } while ((frame = frames.poll()) != null);
+                    stream.flush();
+                }
+            } catch (IOException e) {
+                if (connected) Utils.logln(LogLevel.WARN, "warning: lost the connection to node {}; {}", node, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                connected = false;
+                socket = null;
+                frames.clear();
+            }
+
+            try { if (open) TimeUnit.MILLISECONDS.sleep(RETRY_INTERVAL); }
+            catch (InterruptedException e) { Thread.currentThread().interrupt(); return; }
+        }
+    }
+
+    /**
+     * Writes a whole frame to the channel.
+     *
+     * @param _channel the channel of the connection.
+     * @param _frame the frame to write, may be null if its encoding failed.
+     * @throws IOException if an I/O error occurs.
+     */
+    private void write(WritableByteChannel _channel, ByteBuffer _frame) throws IOException {
+        if (_frame == null) return;
+        while (_frame.hasRemaining()) _channel.write(_frame);
+    }
+
+    /**
+     * Closes the current connection, if any, so that the writer reconnects.
+     */
+    private void reset() {
+        connected = false;
+        Socket connection = socket;
+        if (connection == null) return;
+
+        try { connection.close(); }
+        catch (IOException e) { Utils.logln(LogLevel.ERROR, "exception: IO exception occurred; {}", e.getMessage()); }
+    }
+
+    /** @return the address of the peer */
+    public String getNode() { return node; }
+
+    /** @return true if the link is connected to the peer */
+    public boolean isConnected() { return connected; }
+}
@@ -0,0 +1,471 @@
+package com.chat.server;
+
+import com.chat.utils.message.Message;
+import com.chat.utils.message.MessageType;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * The Presence class versions the list of clients of the {@link Server}, so that a client is sent the list once
+ * and only the changes to it afterwards.
+ *
+ * <p>
+ *     Clients joining and leaving are collected for the presence linger and sent to every named client as a batch of
+ *     {@link MessageType#SERVER_PRESENCE_BATCH SERVER_PRESENCE_BATCH} chunks of {@value #CHUNK_SIZE} changes, so a storm of
+ *     N reconnects costs each client a few frames rather than N, and a chunk of the longest names still fits in a frame.
+ *     A client that joins and leaves within the same batch, or leaves and joins again, is left out of it. A batch is sent
+ *     at most the linger after its first change, or as soon as it holds {@value #MAX_BATCH} changes, so the list of clients
+ *     never lags further behind. <br>
+ *     Renames are sent right away as a {@link MessageType#SERVER_RENAME_CLIENT SERVER_RENAME_CLIENT}, after the pending batch,
+ *     so that the clients move the chat of the renamed client instead of replacing it.
+ * </p>
+ *
+ * <p>
+ *     Every batch and rename is numbered by a {@link Sequence} of its own, the version of the list,
+ *     and the last {@value #LOG_SIZE} of them are kept in memory. <br>
+ *     A client that just set its name is sent either the changes since the version it last received, if it is still kept,
+ *     or a snapshot of the names streamed in {@link MessageType#SERVER_PRESENCE_SNAPSHOT SERVER_PRESENCE_SNAPSHOT} chunks of
+ *     {@value #CHUNK_SIZE} names, and then the current version in a {@link MessageType#SERVER_PRESENCE_VERSION SERVER_PRESENCE_VERSION}.
+ *     A reconnecting client only costs the changes it missed, and a first login costs a few small frames rather than a single
+ *     frame holding every name. The pending batch is sent before a snapshot is taken, and the snapshot lists the names the sent
+ *     changes add up to, so a join and a leave cancelled within a batch never leave a client with a name it is not told about.
+ * </p>
+ *
+ * <p>
+ *     Versions are given out by the node that delivers the change, so a version is only resumed on the node that gave it out
+ *     and only since the node started, any other version gets a snapshot. <br>
+ *     Changes are numbered and clients are synced under the lock of the presence, so the changes a client receives after
+ *     its sync all come after it. The changes are written outside of the lock, in the order of their versions, by whichever
+ *     thread finds them waiting, and never wait for room in the queue of a client: a client too slow to take them is
+ *     treated as by its {@link OverflowPolicy}, without ever waiting, so a slow client never holds up the presence.
+ * </p>
+ *
+ * <p>
+ *     A client that sets its name with the {@value #LAZY} cursor opts out of the list of clients: it is sent none of the batches,
+ *     only the joins, leaves and renames of the clients it {@link #subscribe(ServerConnection, Collection) subscribed} to, up to
+ *     {@value #MAX_SUBSCRIPTIONS} of them, and it finds the others by {@link #search(String, String) searching} the sorted roster
+ *     of the names a page of {@value #SEARCH_PAGE_SIZE} at a time. The presence traffic of a lazy client grows with the number
+ *     of clients it talks to rather than with the number of clients online. <br>
+ *     The members of the rooms a client joined are sent to it by the rooms themselves, whatever its presence mode.
+ * </p>
+ *
+ * @see ClientRegistry#getPresence()
+ * @see ServerConfig#getPresenceLinger()
+ */
+public class Presence {
+    /** The maximum number of names sent in a chunk of a snapshot or of a batch. */
+    public static final int CHUNK_SIZE = 256;
+    /** The maximum number of clients joining or leaving sent in a batch. */
+    public static final int MAX_BATCH = 1024;
+    /** The number of batches and renames kept to bring reconnecting clients up to date. */
+    public static final int LOG_SIZE = 4096;
+    /** The maximum number of clients a lazy client subscribes to. */
+    public static final int MAX_SUBSCRIPTIONS = 1024;
+    /** The maximum number of names sent in a page of a search. */
+    public static final int SEARCH_PAGE_SIZE = 50;
+    /** The cursor sent by a client that only wants the presence of the clients it subscribes to. */
+    public static final String LAZY = "LAZY";
+
+    private final ClientRegistry clients;
+    private final long linger;
+    private final ScheduledExecutorService timer;
+
+    private final Sequence versions = new Sequence();
+    private final ArrayDeque<Message> changes = new ArrayDeque<>(LOG_SIZE);
+    private final Map<String, Boolean> pending = new LinkedHashMap<>();
+    private final ConcurrentSkipListSet<String> roster = new ConcurrentSkipListSet<>();
+    private final ConcurrentLinkedQueue<Delivery> outbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean delivering = new AtomicBoolean(false);
+
+    private final Set<ServerConnection> lazy = new HashSet<>();
+    private final Map<String, Set<ServerConnection>> subscribers = new HashMap<>();
+    private final Map<ServerConnection, Set<String>> subscriptions = new HashMap<>();
+    private long floor = System.currentTimeMillis() << (Sequence.COUNTER_BITS + Sequence.NODE_BITS);
+    private long version = 0;
+    private boolean scheduled = false;
+
+    private long batches = 0;
+    private long cancelled = 0;
+
+    /**
+     * A change waiting to be written to its recipients.
+     *
+     * @param frame the change.
+     * @param recipients the connections the change is written to.
+     */
+    private record Delivery(Frame frame, Collection<ServerConnection> recipients) {}
+
+    /**
+     * Creates a new instance of Presence.
+     *
+     * @param _clients the registry whose named connections are sent the changes.
+     * @param _linger the number of milliseconds the changes are collected for before they are sent, 0 to send every change on its own.
+     */
+    public Presence(ClientRegistry _clients, long _linger) {
+        clients = _clients;
+        linger = _linger;
+        timer = (_linger > 0)? Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "presence");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Adds a client that joined to the pending batch.
+     *
+     * @param _name the name of the client.
+     */
+    public void add(String _name) {
+        this.collect(_name, true);
+        this.deliver();
+    }
+
+    /**
+     * Adds a client that left to the pending batch.
+     *
+     * @param _name the name of the client.
+     */
+    public void remove(String _name) {
+        this.collect(_name, false);
+        this.deliver();
+    }
+
+    /**
+     * Collects a client joining or leaving, cancelling it against the opposite change of the same client.
+     *
+     * @param _name the name of the client.
+     * @param _joined true if the client joined, false if it left.
+     */
+    private synchronized void collect(String _name, boolean _joined) {
+        if (_joined) roster.add(_name);
+        else roster.remove(_name);
+
+        Boolean previous = pending.get(_name);
+        if (previous != null && previous != _joined) {
+            pending.remove(_name);
+            cancelled += 2;
+        } else { pending.put(_name, _joined); }
+
+        if (timer == null || pending.size() >= MAX_BATCH) this.batch();
+        else if (!scheduled) {
+            scheduled = true;
+            timer.schedule(this::flush, linger, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Sends a rename to every named client right after the pending batch.
+     *
+     * @param _previous the previous name of the client.
+     * @param _name the new name of the client.
+     */
+    public void rename(String _previous, String _name) {
+        synchronized (this) {
+            roster.remove(_previous);
+            roster.add(_name);
+
+            this.batch();
+            Message rename = new Message(MessageType.SERVER_RENAME_CLIENT, _name, _previous);
+            this.publish(rename);
+
+            Set<ServerConnection> renamed = subscribers.remove(_previous);
+            if (renamed != null) {
+                for (ServerConnection subscriber : renamed) {
+                    subscriptions.get(subscriber).remove(_previous);
+                    subscriptions.get(subscriber).add(_name);
+                }
+                subscribers.computeIfAbsent(_name, name -> new HashSet<>()).addAll(renamed);
+                outbox.add(new Delivery(new Frame(rename), List.copyOf(renamed)));
+            }
+        }
+        this.deliver();
+    }
+
+    /**
+     * Sends the pending batch to every named client, if it holds any change.
+     */
+    public void flush() {
+        synchronized (this) { this.batch(); }
+        this.deliver();
+    }
+
+    /**
+     * Numbers the pending batch, if it holds any change, and queues it for every named client and the filtered changes
+     * for the subscribers of the clients in it, called while holding the lock of the presence.
+     */
+    private void batch() {
+        scheduled = false;
+        if (pending.isEmpty()) return;
+
+        List<String> changes = new ArrayList<>(pending.size());
+        Map<ServerConnection, List<String>> filtered = new HashMap<>();
+        for (Map.Entry<String, Boolean> entry : pending.entrySet()) {
+            String change = (entry.getValue()? "+" : "-") + entry.getKey();
+            changes.add(change);
+            for (ServerConnection subscriber : subscribers.getOrDefault(entry.getKey(), Set.of()))
+                filtered.computeIfAbsent(subscriber, client -> new ArrayList<>()).add(change);
+        }
+        pending.clear();
+        batches++;
+
+        for (String chunk : Presence.chunks(changes)) this.publish(new Message(MessageType.SERVER_PRESENCE_BATCH, chunk));
+        filtered.forEach((subscriber, subscribed) -> {
+            for (String chunk : Presence.chunks(subscribed))
+                outbox.add(new Delivery(new Frame(new Message(MessageType.SERVER_PRESENCE_BATCH, chunk)), List.of(subscriber)));
+        });
+    }
+
+    /**
+     * Joins names or changes into payloads of at most {@value #CHUNK_SIZE} of them each.
+     *
+     * @param _items the names or changes.
+     * @return the payloads, none if there is no item.
+     */
+    static List<String> chunks(List<String> _items) {
+        List<String> chunks = new ArrayList<>((_items.size() + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        for (int from = 0; from < _items.size(); from += CHUNK_SIZE)
+            chunks.add(String.join(",", _items.subList(from, Math.min(from + CHUNK_SIZE, _items.size()))));
+        return chunks;
+    }
+
+    /**
+     * Numbers a change of the list of clients with the next version, keeps it and queues it for every named client,
+     * called while holding the lock of the presence.
+     *
+     * @param _change the change.
+     */
+    private void publish(Message _change) {
+        version = versions.next(clients.getCluster().getIndex());
+        Message change = _change.withSequence(version, Sequence.timestamp(version));
+
+        if (changes.size() == LOG_SIZE) floor = changes.removeFirst().sequence();
+        changes.addLast(change);
+
+        List<ServerConnection> recipients = new ArrayList<>();
+        for (ServerConnection client : clients.getNamed())
+            if (!lazy.contains(client)) recipients.add(client);
+        outbox.add(new Delivery(new Frame(change), recipients));
+    }
+
+    /**
+     * Writes the queued changes to their recipients in the order they were queued, unless another thread is already writing them,
+     * in which case that thread writes them too. Never called while holding the lock of the presence.
+     */
+    private void deliver() {
+        while (!outbox.isEmpty() && delivering.compareAndSet(false, true)) {
+            try {
+                Delivery delivery;
+                while ((delivery = outbox.poll()) != null)
+                    for (ServerConnection recipient : delivery.recipients()) recipient.offer(delivery.frame());
+            } finally { delivering.set(false); }
+        }
+    }
+
+    /**
+     * Brings a client up to date with the list of clients, with the changes since its version if they are still kept,
+     * with a snapshot otherwise, followed by the current version.
+     *
+     * <p>
+     *     The pending batch is numbered first, so the snapshot holds exactly the names of the clients online,
+     *     on this node or on the other nodes of the {@link Cluster}, that the changes up to the current version add up to.
+     * </p>
+     *
+     * @param _cursor the version the client last received, or null if it never received one.
+     * @param _name the name of the client, left out of the snapshot.
+     * @param _write writes a message to the client without waiting for room in its queue, called while holding the lock of the presence.
+     */
+    public void sync(String _cursor, String _name, Consumer<Message> _write) {
+        synchronized (this) {
+            this.batch();
+            long cursor = Presence.parse(_cursor);
+
+            if (this.canResume(cursor, clients.getCluster().getIndex())) {
+                for (Message change : changes)
+                    if (change.sequence() > cursor) _write.accept(change);
+            } else {
+                List<String> chunk = new ArrayList<>(CHUNK_SIZE);
+                Iterator<String> names = roster.stream().filter(name -> !name.equals(_name)).iterator();
+                do {
+                    if (names.hasNext()) chunk.add(names.next());
+                    if (chunk.size() == CHUNK_SIZE || !names.hasNext()) {
+                        _write.accept(new Message(MessageType.SERVER_PRESENCE_SNAPSHOT, String.join(",", chunk)));
+                        chunk.clear();
+                    }
+                } while (names.hasNext());
+            }
+
+            _write.accept(new Message(MessageType.SERVER_PRESENCE_VERSION, Long.toString(version)));
+        }
+        this.deliver();
+    }
+
+    /**
+     * Opts a client out of the list of clients, it is only sent the current version.
+     *
+     * @param _client the connection of the client.
+     */
+    public void lazy(ServerConnection _client) {
+        synchronized (this) {
+            lazy.add(_client);
+            outbox.add(new Delivery(new Frame(new Message(MessageType.SERVER_PRESENCE_VERSION, Long.toString(version))), List.of(_client)));
+        }
+        this.deliver();
+    }
+
+    /**
+     * Subscribes a lazy client to the presence of other clients and sends it whether they are online,
+     * as batch chunks where every client is preceded by + if it is online or - if it is not. <br>
+     * Names sent more than once, or already subscribed to, are sent once and do not count towards the limit.
+     * A client that is not lazy is already sent every change, its subscriptions are ignored.
+     *
+     * @param _client the connection of the lazy client.
+     * @param _names the names of the clients.
+     * @return false if the client would subscribe to more than {@value #MAX_SUBSCRIPTIONS} clients, and none was subscribed.
+     */
+    public boolean subscribe(ServerConnection _client, Collection<String> _names) {
+        Set<String> names = new LinkedHashSet<>(_names);
+        synchronized (this) {
+            if (!lazy.contains(_client)) return true;
+
+            Set<String> subscribed = subscriptions.computeIfAbsent(_client, client -> new HashSet<>());
+            long added = names.stream().filter(name -> !subscribed.contains(name)).count();
+            if (subscribed.size() + added > MAX_SUBSCRIPTIONS) {
+                if (subscribed.isEmpty()) subscriptions.remove(_client);
+                return false;
+            }
+
+            List<String> online = new ArrayList<>(names.size());
+            for (String name : names) {
+                subscribed.add(name);
+                subscribers.computeIfAbsent(name, key -> new HashSet<>()).add(_client);
+                online.add((roster.contains(name)? "+" : "-") + name);
+            }
+            for (String chunk : Presence.chunks(online))
+                outbox.add(new Delivery(new Frame(new Message(MessageType.SERVER_PRESENCE_BATCH, chunk)), List.of(_client)));
+        }
+        this.deliver();
+        return true;
+    }
+
+    /**
+     * Unsubscribes a lazy client from the presence of other clients.
+     *
+     * @param _client the connection of the lazy client.
+     * @param _names the names of the clients.
+     */
+    public synchronized void unsubscribe(ServerConnection _client, Collection<String> _names) {
+        Set<String> subscribed = subscriptions.get(_client);
+        if (subscribed == null) return;
+
+        for (String name : _names) {
+            if (subscribed.remove(name)) this.dropSubscriber(name, _client);
+        }
+        if (subscribed.isEmpty()) subscriptions.remove(_client);
+    }
+
+    /**
+     * Forgets a closed connection and its subscriptions.
+     *
+     * @param _client the connection.
+     */
+    public synchronized void forget(ServerConnection _client) {
+        lazy.remove(_client);
+        Set<String> subscribed = subscriptions.remove(_client);
+        if (subscribed != null) subscribed.forEach(name -> this.dropSubscriber(name, _client));
+    }
+
+    /**
+     * Removes a subscriber of a client, and the client once it has no subscriber left.
+     *
+     * @param _name the name of the client.
+     * @param _subscriber the connection of the subscriber.
+     */
+    private void dropSubscriber(String _name, ServerConnection _subscriber) {
+        Set<ServerConnection> subscribed = subscribers.get(_name);
+        if (subscribed != null && subscribed.remove(_subscriber) && subscribed.isEmpty()) subscribers.remove(_name);
+    }
+
+    /**
+     * Finds a page of the names of the clients online, on this node or on the other nodes of the {@link Cluster}, in alphabetical order.
+     *
+     * @param _prefix the prefix of the names, may be empty or null to list every name.
+     * @param _cursor the last name of the previous page, or null for the first page.
+     * @return at most {@value #SEARCH_PAGE_SIZE} names starting with the prefix, after the cursor.
+     */
+    public List<String> search(String _prefix, String _cursor) {
+        String prefix = (_prefix != null)? _prefix : "";
+        NavigableSet<String> from = (_cursor != null && _cursor.compareTo(prefix) >= 0)?
+                roster.tailSet(_cursor, false) : roster.tailSet(prefix, true);
+
+        List<String> page = new ArrayList<>(SEARCH_PAGE_SIZE);
+        for (String name : from) {
+            if (page.size() == SEARCH_PAGE_SIZE || !name.startsWith(prefix)) break;
+            page.add(name);
+        }
+        return page;
+    }
+
+    /**
+     * @param _cursor the version a client last received, 0 if it never received one.
+     * @param _node the index of this node.
+     * @return true if every change since the version is still kept
+     */
+    private boolean canResume(long _cursor, int _node) {
+        return _cursor > 0 && _cursor >= floor && _cursor <= version && (_cursor & ((1 << Sequence.NODE_BITS) - 1)) == _node;
+    }
+
+    /**
+     * @param _cursor a version sent by a client, may be null or malformed.
+     * @return the version, or 0 if it is missing or malformed
+     */
+    private static long parse(String _cursor) {
+        if (_cursor == null) return 0;
+        try { return Long.parseLong(_cursor); }
+        catch (NumberFormatException e) { return 0; }
+    }
+
+    /**
+     * Sends the pending batch and stops the timer.
+     */
+    public void close() {
+        this.flush();
+        if (timer != null) timer.shutdownNow();
+    }
+
+    /** @return the version of the last change of the list of clients, 0 if it never changed */
+    public synchronized long getVersion() { return version; }
+
+    /** @return the number of batches sent */
+    public synchronized long getBatches() { return batches; }
+
+    /** @return the number of changes left out of the batches because they cancelled each other */
+    public synchronized long getCancelled() { return cancelled; }
+
+    /** @return the number of lazy clients */
+    public synchronized int getLazy() { return lazy.size(); }
+
+    /** @return the number of clients with at least a subscriber */
+    public synchronized int getSubscribed() { return subscribers.size(); }
+
+    /** @return the number of batches and renames kept to bring reconnecting clients up to date */
+    public synchronized int getLogSize() { return changes.size(); }
+}
@@ -0,0 +1,95 @@
+package com.chat.server;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The RoomRegistry class keeps the membership of the rooms of the {@link Server}:
+ * every room is a set of {@link ServerConnection ServerConnections} that receive the messages sent to it.
+ *
+ * <p>
+ *     A room exists as long as it has members: it is created by the first connection that joins it
+ *     and removed when the last one leaves. <br>
+ *     Joining and leaving are atomic per room, so a room is never removed while a connection is joining it.
+ *     Iterating over the members is weakly consistent and never blocks, so a room message costs one pass over
+ *     the members of its room rather than over every connection.
+ * </p>
+ *
+ * <p>
+ *     Every room has its own {@link Sequence}, so the messages of different rooms are numbered without contending
+ *     on a shared counter. The sequence is dropped with its room, a room created again keeps numbering after it
+ *     since sequence numbers follow the clock.
+ * </p>
+ *
+ * @see ClientRegistry#getRooms()
+ */
+public class RoomRegistry {
+    private final ConcurrentHashMap<String, Set<ServerConnection>> rooms = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Sequence> sequences = new ConcurrentHashMap<>();
+
+    /**
+     * Adds a {@link ServerConnection} to a room, creating the room if needed.
+     *
+     * @param _room the name of the room.
+     * @param _connection the connection joining the room.
+     * @return true if the connection joined the room, false if it was already a member.
+     */
+    public boolean join(String _room, ServerConnection _connection) {
+        boolean[] joined = { false };
+        rooms.compute(_room, (name, members) -> {
+            if (members == null) members = ConcurrentHashMap.newKeySet();
+            joined[0] = members.add(_connection);
+            return members;
+        });
+        return joined[0];
+    }
+
+    /**
+     * Removes a {@link ServerConnection} from a room, removing the room if it is left empty.
+     *
+     * @param _room the name of the room.
+     * @param _connection the connection leaving the room.
+     * @return true if the connection left the room, false if it was not a member.
+     */
+    public boolean leave(String _room, ServerConnection _connection) {
+        boolean[] left = { false };
+        rooms.computeIfPresent(_room, (name, members) -> {
+            left[0] = members.remove(_connection);
+            if (!members.isEmpty()) return members;
+
+            sequences.remove(name);
+            return null;
+        });
+        return left[0];
+    }
+
+    /**
+     * @param _room the name of a room.
+     * @param _connection a connection.
+     * @return true if the connection is a member of the room
+     */
+    public boolean isMember(String _room, ServerConnection _connection) {
+        Set<ServerConnection> members = rooms.get(_room);
+        return members != null && members.contains(_connection);
+    }
+
+    /**
+     * @param _room the name of a room.
+     * @return the members of the room, empty if the room does not exist
+     */
+    public Collection<ServerConnection> getMembers(String _room) {
+        Set<ServerConnection> members = rooms.get(_room);
+        return (members != null)? Collections.unmodifiableSet(members) : Collections.emptySet();
+    }
+
+    /**
+     * @param _room the name of a room.
+     * @return the {@link Sequence} numbering the messages of the room
+     */
+    public Sequence getSequence(String _room) { return sequences.computeIfAbsent(_room, name -> new Sequence()); }
+
+    /** @return the names of all the rooms */
+    public Set<String> getRooms() { return Collections.unmodifiableSet(rooms.keySet()); }
+}
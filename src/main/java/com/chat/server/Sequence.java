@@ -0,0 +1,54 @@
+package com.chat.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The Sequence class numbers the {@link com.chat.utils.message.Message Messages} of a chat, such as the public chat or a room.
+ *
+ * <p>
+ *     A sequence number is a hybrid logical clock packed in 64 bits: the milliseconds since the epoch, a {@value #COUNTER_BITS} bit
+ *     counter of the messages numbered within the same millisecond and the {@value #NODE_BITS} bit index of the node of the
+ *     {@link Cluster} that numbered it. A number is always greater than the previous one of the same sequence, even across
+ *     restarts, and two nodes never give out the same number, so the clients can drop the copies of a message they already
+ *     received by its number alone. <br>
+ *     The numbers are not dense: they tell the clients the order of the messages, the history cursors fill in the gaps.
+ * </p>
+ *
+ * <p>
+ *     Numbering a message is a single compare-and-set on the sequence of its chat, chats never share a counter.
+ *     When a node receives a message numbered by another node it {@link #observe(long) observes} its number,
+ *     so the messages it numbers next come after it.
+ * </p>
+ */
+public class Sequence {
+    /** The number of bits of the index of the node that numbered a message. */
+    public static final int NODE_BITS = 8;
+    /** The number of bits of the counter of the messages numbered within a millisecond. */
+    public static final int COUNTER_BITS = 12;
+
+    private final AtomicLong last = new AtomicLong(0);
+
+    /**
+     * Numbers the next message of the chat.
+     *
+     * @param _node the index of the node numbering the message, 0 for a standalone server.
+     * @return the sequence number, greater than every number given out or observed before.
+     */
+    public long next(int _node) {
+        long now = System.currentTimeMillis() << COUNTER_BITS;
+        return last.updateAndGet(previous -> (Math.max((previous >>> NODE_BITS) + 1, now) << NODE_BITS) | _node);
+    }
+
+    /**
+     * Moves the sequence past a number given out by another node.
+     *
+     * @param _sequence the sequence number of a message relayed by another node, 0 if it has none.
+     */
+    public void observe(long _sequence) { if (_sequence > last.get()) last.accumulateAndGet(_sequence, Math::max); }
+
+    /**
+     * @param _sequence a sequence number.
+     * @return the time the message was numbered, in milliseconds since the epoch
+     */
+    public static long timestamp(long _sequence) { return _sequence >>> (COUNTER_BITS + NODE_BITS); }
+}
@@ -1,16 +1,22 @@
 package com.chat.server;
 
+import com.chat.server.journal.Journal;
+import com.chat.server.metrics.ServerMetrics;
 import com.chat.utils.Utils;
+import com.chat.utils.log.LogLevel;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.InetSocketAddress;
 import java.net.SocketException;
-import java.util.Comparator;
-import java.util.Objects;
-import java.util.concurrent.ConcurrentSkipListSet;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
@@ -29,27 +35,72 @@ import java.util.stream.Collectors;
  *   <li>@close: closes the server and all connections</li>
  *   <li>@exit: exits the CLI and closes the server</li>
  *   <li>@clients: displays a list of all currently connected {@link com.chat.client.Client Clients}</li>
+ *   <li>@rooms: displays the rooms of the {@link RoomRegistry} and how many members each has</li>
  *   <li>@kick [name]: kicks the client with the given name from the chat</li>
  *   <li>@mute [name]: mutes the client with the given name</li>
  *   <li>@unmute [name]: unmutes the client with the given name</li>
+ *   <li>@queues: displays the depth and drops of the clients' {@link OutboundQueue OutboundQueues}</li>
+ *   <li>@flushes: displays how many frames the writers coalesce per flush, see {@link FlushStats}</li>
+ *   <li>@stats: displays the connections, message rates, bytes, errors and latencies counted in the {@link ServerMetrics}</li>
+ *   <li>@cluster: displays the peers of the {@link Cluster}, whether they are reachable and the clients they serve</li>
  * </ul>
  *
+ * <p>
+ *     The same statistics are written to the log periodically if the stats interval of the {@link ServerConfig} is set,
+ *     and served to Prometheus by a {@link MetricsEndpoint} if the metrics port is set.
+ * </p>
+ *
+ * <p>
+ *     The public and private messages are appended to a {@link Journal} if the journal directory of the {@link ServerConfig} is set.
+ * </p>
+ *
+ * <p>
+ *     Several servers can serve the same chat as the nodes of a {@link Cluster} if the cluster address and peers of the {@link ServerConfig} are set.
+ * </p>
+ *
+ * <p>
+ *     Connections are run according to the {@link ServerMode} of the {@link ServerConfig}:
+ *     either on a platform or virtual thread per connection or on a small pool of non-blocking {@link EventLoop EventLoops}.
+ * </p>
+ *
  * @see ServerConnection
+ * @see ServerConfig
  */
 public class Server {
-    private static final int PORT = 7777;
-
     private boolean openServer = false;
     private boolean openCli = false;
 
     private static final AtomicInteger idCounter = new AtomicInteger(0);
 
+    private final ServerConfig config;
+
     private ServerSocket server;
-    private final ConcurrentSkipListSet<ServerConnection> clients =
-            new ConcurrentSkipListSet<>(Comparator.comparingInt(ServerConnection::getId));
+    private EventLoop[] eventLoops;
+    private final ClientRegistry clients = new ClientRegistry();
+    private final FlushStats flushStats = new FlushStats();
+    private final ServerMetrics metrics = new ServerMetrics();
+    private MetricsEndpoint metricsEndpoint;
 
     private final BufferedReader keyboard = new BufferedReader(new InputStreamReader(System.in));
 
+    /**
+     * Creates a new Server with the default {@link ServerConfig}.
+     */
+    public Server() { this(new ServerConfig()); }
+
+    /**
+     * Creates a new Server with the given {@link ServerConfig}.
+     *
+     * @param _config the startup options of the server.
+     */
+    public Server(ServerConfig _config) {
+        config = _config;
+        Utils.setLogLevel(config.getLogLevel());
+    }
+
+    /** @return the {@link ServerMetrics} of the server */
+    public ServerMetrics getMetrics() { return metrics; }
+
     /**
      * Opens the server and begins listening for incoming connections.
      */
@@ -57,20 +108,190 @@ public class Server {
         if (!openServer) {
             try {
                 openServer = true;
-                server = new ServerSocket(Server.PORT);
-                Utils.println("server is now listening on port " + Server.PORT);
+                clients.setPresence(new Presence(clients, config.getPresenceLinger()));
+                if (config.getStatsInterval() > 0) this.startStatsDump();
+                if (config.getMetricsPort() > 0) this.openMetricsEndpoint();
+                if (config.getClusterAddress() != null) this.openCluster();
+                if (config.getJournalDirectory() != null) this.openJournal();
 
-                while (openServer) {
-                    Socket socket = server.accept();
-                    ServerConnection client = new ServerConnection(socket, idCounter.incrementAndGet());
-                    clients.add(client);
-                    new Thread(() -> client.open(clients)).start();
+                switch (config.getMode()) {
+                    case THREAD -> this.acceptThreads(Thread::new);
+                    case VIRTUAL -> this.acceptThreads(Server.virtualThreadFactory());
+                    case NIO -> this.acceptChannels();
                 }
-            } catch (SocketException e) { Utils.println("server was closed"); }
-            catch (IOException e) { Utils.logln("exception: IO exception occurred; " +  e.getMessage()); }
+            } catch (SocketException | ClosedChannelException e) { Utils.println("server was closed"); }
+            catch (IOException e) { Utils.logln(LogLevel.ERROR, "exception: IO exception occurred; {}", e.getMessage()); }
         } else { Utils.println("server is already running"); }
     }
 
+    /**
+     * Accepts incoming connections and runs each of them on its own {@link Thread}.
+     *
+     * @param _threads the factory of the connection threads.
+     * @throws IOException if an I/O error occurs.
+     */
+    private void acceptThreads(ThreadFactory _threads) throws IOException {
+        server = new ServerSocket(config.getPort());
+        Utils.println("server is now listening on port " + config.getPort());
+
+        while (openServer) {
+            Socket socket = server.accept();
+            ServerConnection client = new ServerConnection(socket, idCounter.incrementAndGet(), config.newOutboundQueue(flushStats), metrics);
+            clients.add(client);
+            _threads.newThread(() -> client.open(clients)).start();
+            _threads.newThread(client::drain).start();
+        }
+    }
+
+    /**
+     * Creates a {@link ThreadFactory} of virtual threads. <br>
+     * Virtual threads are looked up reflectively because they are a preview feature in Java 19,
+     * if they are not available a factory of platform threads is returned.
+     *
+     * @return the thread factory.
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            Utils.println("virtual threads are not available, falling back to platform threads");
+            return Thread::new;
+        }
+    }
+
+    /**
+     * Accepts incoming connections as non-blocking {@link SocketChannel SocketChannels} and
+     * distributes them among the {@link EventLoop EventLoops}.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    private void acceptChannels() throws IOException {
+        eventLoops = new EventLoop[config.getEventLoops()];
+        for (int i = 0; i < eventLoops.length; i++) {
+            eventLoops[i] = new EventLoop();
+            new Thread(eventLoops[i], "event-loop-" + i).start();
+        }
+
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        server = serverChannel.socket();
+        serverChannel.bind(new InetSocketAddress(config.getPort()));
+        Utils.println("server is now listening on port " + config.getPort() + " with " + eventLoops.length + " event loops");
+
+        while (openServer) {
+            SocketChannel channel = serverChannel.accept();
+            channel.configureBlocking(false);
+
+            int id = idCounter.incrementAndGet();
+            ServerConnection client = new ChannelConnection(channel, id, eventLoops[id % eventLoops.length], config.newOutboundQueue(flushStats), metrics);
+            clients.add(client);
+            client.open(clients);
+        }
+    }
+
+    /**
+     * Joins the {@link Cluster} of the {@link ServerConfig}, the server does not open if the cluster port cannot be bound,
+     * since its clients could otherwise take names used on the other nodes.
+     *
+     * @throws IOException if the cluster port cannot be bound.
+     */
+    private void openCluster() throws IOException {
+        Cluster cluster = new Cluster(config.getClusterAddress(), config.getPeers(), clients);
+        cluster.open();
+        clients.setCluster(cluster);
+    }
+
+    /**
+     * Opens the {@link Journal} of the {@link ServerConfig} and the {@link HistoryReplayer} reading it,
+     * the server does not open without it since the messages would otherwise be lost from the history.
+     *
+     * @throws IOException if the journal cannot be opened.
+     */
+    private void openJournal() throws IOException {
+        Journal journal = config.newJournal();
+        journal.open();
+        clients.setJournal(journal);
+        clients.setHistory(new HistoryReplayer(config.getHistoryThreads()));
+    }
+
+    /**
+     * Describes the {@link Cluster}: the links to the peers, the names they serve and the names this node owns.
+     *
+     * @return the state of the cluster, in a few lines of text.
+     */
+    private String cluster() {
+        Cluster cluster = clients.getCluster();
+        if (cluster.getSelf() == null) return "cluster: standalone";
+
+        return String.format("cluster: node %s, %d names owned%n", cluster.getSelf(), cluster.getClaims()) +
+                "peers: " + cluster.getLinks().stream()
+                        .map(link -> link.getNode() + ((link.isConnected())? " (up)" : " (down)"))
+                        .collect(Collectors.joining(", ")) + System.lineSeparator() +
+                "remote clients: " + String.join(", ", cluster.getRemoteNames());
+    }
+
+    /**
+     * Starts serving the metrics over HTTP, a failure is logged and the server keeps running without the endpoint.
+     */
+    private void openMetricsEndpoint() {
+        try {
+            metricsEndpoint = new MetricsEndpoint(config.getMetricsPort(), metrics, clients, flushStats);
+            metricsEndpoint.open();
+        } catch (IOException e) {
+            Utils.logln(LogLevel.ERROR, "exception: could not open the metrics endpoint; {}", e.getMessage());
+            metricsEndpoint = null;
+        }
+    }
+
+    /**
+     * Starts a daemon thread writing the statistics to the log every stats interval while the server is open.
+     */
+    private void startStatsDump() {
+        Thread dump = new Thread(() -> {
+            try {
+                while (openServer) {
+                    TimeUnit.SECONDS.sleep(config.getStatsInterval());
+                    if (openServer && Utils.isLoggable(LogLevel.INFO)) Utils.logln(LogLevel.INFO, "stats:\n" + this.stats());
+                }
+            } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        }, "stats-dump");
+        dump.setDaemon(true);
+        dump.start();
+    }
+
+    /**
+     * Describes the {@link ServerMetrics}, the {@link OutboundQueue OutboundQueues} and the {@link FlushStats}.
+     *
+     * @return the statistics of the server, in a few lines of text.
+     */
+    private String stats() {
+        Journal journal = clients.getJournal();
+        ServerConnection deepest = null;
+        int queued = 0;
+        long dropped = 0;
+        for (ServerConnection client : clients.getConnections()) {
+            int depth = client.getOutbound().getDepth();
+            queued += depth;
+            dropped += client.getOutbound().getDropped();
+            if (deepest == null || depth > deepest.getOutbound().getDepth()) deepest = client;
+        }
+
+        return metrics.report() + System.lineSeparator() +
+                String.format("queues: %d frames queued, max %d (%s), %d dropped%n",
+                        queued,
+                        (deepest != null)? deepest.getOutbound().getDepth() : 0,
+                        (deepest != null)? deepest.getName() : "none",
+                        dropped) +
+                String.format("flushes: %d, %.2f frames per flush, %d syscalls saved%n",
+                        flushStats.getFlushes(), flushStats.getFramesPerFlush(), flushStats.getSyscallsSaved()) +
+                String.format("presence: %d batches, %d joins and leaves cancelled, %d changes kept, %d lazy clients subscribed to %d clients",
+                        clients.getPresence().getBatches(), clients.getPresence().getCancelled(), clients.getPresence().getLogSize(),
+                        clients.getPresence().getLazy(), clients.getPresence().getSubscribed()) +
+                ((journal.isOpen())? String.format("%njournal: %d messages in %d segments, %d batches, %d history pages pending",
+                        journal.getNextOffset() - journal.getFirstOffset(), journal.getSegments(), journal.getBatches(),
+                        clients.getHistory().getPending()) : "");
+    }
+
     /**
      * Closes the server and all {@link ServerConnection ServerConnections}.
      */
@@ -79,9 +300,23 @@ public class Server {
             Utils.println("shutting server down");
 
             openServer = false;
-            clients.forEach(client -> client.close("server is closing"));
+            clients.getConnections().forEach(client -> client.close("server is closing"));
+            clients.getPresence().close();
+            clients.getCluster().close();
+            clients.getHistory().close();
+            clients.getJournal().close();
             server.close();
-        } catch (IOException e) { Utils.logln("exception: IO exception occurred; " +  e.getMessage()); }
+
+            if (metricsEndpoint != null) {
+                metricsEndpoint.close();
+                metricsEndpoint = null;
+            }
+
+            if (eventLoops != null) {
+                for (EventLoop eventLoop : eventLoops) eventLoop.close();
+                eventLoops = null;
+            }
+        } catch (IOException e) { Utils.logln(LogLevel.ERROR, "exception: IO exception occurred; {}", e.getMessage()); }
     }
 
     /**
@@ -99,7 +334,7 @@ public class Server {
             }
             Utils.println("server cli was closed");
             if (server != null) this.close();
-        } catch (IOException e) { Utils.logln("exception: IO exception occurred; " +  e.getMessage()); }
+        } catch (IOException e) { Utils.logln(LogLevel.ERROR, "exception: IO exception occurred; {}", e.getMessage()); }
     }
 
     /**
@@ -118,38 +353,45 @@ public class Server {
                                 @close          : close server
                                 @exit           : exit cli and close server
                                 @clients        : get client list
+                                @rooms          : get room list and member counts
                                 @kick   [name]  : kick client from chat
                                 @mute   [name]  : mute client
-                                @unmute [name]  : unmute muted client""");
+                                @unmute [name]  : unmute muted client
+                                @queues         : get outbound queue depths and drops
+                                @flushes        : get frames per flush and syscalls saved
+                                @stats          : get connections, message rates, bytes, errors and latencies
+                                @cluster        : get cluster peers, their status and their clients""");
             case "@open" -> new Thread(this::open).start();
             case "@close" -> this.close();
             case "@exit" -> openCli = false;
-            case "@clients" -> Utils.println("clients: " +
-                    clients.stream()
-                            .map(ServerConnection::getName)
-                            .filter(Objects::nonNull)
-                            .collect(Collectors.joining(", ")) );
-            case "@kick" -> clients.stream()
-                    .filter(client -> client.getName()!=null) // can technically remove this
-                    .filter(client -> client.getName().equals(_message[1]))
-                    .findAny()
+            case "@clients" -> Utils.println("clients: " + String.join(", ", clients.getNames()) );
+            case "@rooms" -> Utils.println("rooms: " + clients.getRooms().getRooms().stream()
+                    .map(room -> room + " (" + clients.getRooms().getMembers(room).size() + ")")
+                    .collect(Collectors.joining(", ")) );
+            case "@kick" -> clients.find((_message.length > 1)? _message[1] : null)
                     .ifPresentOrElse(
                             client -> client.close("you have been kicked out"),
                             () -> Utils.println("client was not found") );
-            case "@mute" -> clients.stream()
-                    .filter(client -> client.getName()!=null)
-                    .filter(client -> client.getName().equals(_message[1]))
-                    .findAny()
+            case "@mute" -> clients.find((_message.length > 1)? _message[1] : null)
                     .ifPresentOrElse(
                             client -> client.setMuted(true),
                             () -> Utils.println("client was not found") );
-            case "@unmute" -> clients.stream()
-                    .filter(client -> client.getName()!=null)
-                    .filter(client -> client.getName().equals(_message[1])) // maybe add filter muted check
-                    .findAny()
+            case "@unmute" -> clients.find((_message.length > 1)? _message[1] : null) // maybe add filter muted check
                     .ifPresentOrElse(
                             client -> client.setMuted(false),
                             () -> Utils.println("client was not found"));
+            case "@queues" -> Utils.println(String.format("queued frames: %d (max %d per client), dropped frames: %d",
+                    clients.getConnections().stream().mapToInt(client -> client.getOutbound().getDepth()).sum(),
+                    clients.getConnections().stream().mapToInt(client -> client.getOutbound().getDepth()).max().orElse(0),
+                    clients.getConnections().stream().mapToLong(client -> client.getOutbound().getDropped()).sum() ));
+            case "@flushes" -> Utils.println(String.format("flushes: %d, frames: %d (%.2f per flush), writes: %d, syscalls saved: %d",
+                    flushStats.getFlushes(),
+                    flushStats.getFrames(),
+                    flushStats.getFramesPerFlush(),
+                    flushStats.getWrites(),
+                    flushStats.getSyscallsSaved() ));
+            case "@stats" -> Utils.println(this.stats());
+            case "@cluster" -> Utils.println(this.cluster());
             default -> Utils.println("unknown command, type '@?' or '@help' to display available commands");
         }
     }
@@ -0,0 +1,338 @@
+package com.chat.server;
+
+import com.chat.utils.Utils;
+import com.chat.server.journal.Journal;
+import com.chat.utils.log.LogLevel;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The ServerConfig class holds the startup options of the {@link Server}.
+ *
+ * <p>
+ *     Options can be set programmatically or parsed from the command line arguments in the form
+ *     <strong>--option=value</strong>. <br>
+ *     The following options are available:
+ * </p>
+ *
+ * <ul>
+ *   <li>--port=[n]: the port the clients connect to</li>
+ *   <li>--mode=[thread|virtual|nio]: the {@link ServerMode} used to run the connections</li>
+ *   <li>--event-loops=[n]: the number of {@link EventLoop EventLoops} used in {@link ServerMode#NIO NIO} mode</li>
+ *   <li>--queue-capacity=[n]: the maximum number of frames queued for each connection</li>
+ *   <li>--overflow-policy=[drop_oldest|disconnect|block]: the {@link OverflowPolicy} applied to a full queue</li>
+ *   <li>--block-timeout=[ms]: how long a sender waits for room with the {@link OverflowPolicy#BLOCK BLOCK} policy</li>
+ *   <li>--log-level=[debug|info|warn|error|off]: the minimum {@link LogLevel} of the lines written to the log</li>
+ *   <li>--flush-linger=[us]: how long a writer waits for more frames before flushing in {@link ServerMode#THREAD THREAD} and {@link ServerMode#VIRTUAL VIRTUAL} mode</li>
+ *   <li>--stats-interval=[s]: how often the statistics of the server are written to the log, 0 to never write them</li>
+ *   <li>--metrics-port=[n]: the port the {@link MetricsEndpoint} serves the metrics on, 0 to disable it</li>
+ *   <li>--cluster-address=[host:port]: the address the other nodes of the {@link Cluster} reach this node at, enables clustering</li>
+ *   <li>--peers=[host:port,...]: the addresses of the other nodes of the {@link Cluster}</li>
+ *   <li>--journal-dir=[path]: the directory of the {@link Journal} the messages are appended to, enables the journal</li>
+ *   <li>--journal-segment-size=[MB]: the size of the segment files of the {@link Journal}</li>
+ *   <li>--journal-fsync=[true|false]: whether every batch of the {@link Journal} is synced to the storage device, instead of once a second</li>
+ *   <li>--history-threads=[n]: the number of pages of history the {@link HistoryReplayer} replays at once</li>
+ *   <li>--presence-linger=[ms]: how long the {@link Presence} collects clients joining and leaving before sending them in a batch</li>
+ * </ul>
+ *
+ * @see Server
+ */
+public class ServerConfig {
+    private int port = 7777;
+    private ServerMode mode = ServerMode.THREAD;
+    private int eventLoops = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    private int queueCapacity = 1024;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DISCONNECT;
+    private long blockTimeout = 1000;
+    private long flushLinger = 0;
+
+    private LogLevel logLevel = LogLevel.INFO;
+    private long statsInterval = 0;
+    private int metricsPort = 0;
+
+    private String clusterAddress = null;
+    private List<String> peers = List.of();
+
+    private Path journalDirectory = null;
+    private int journalSegmentSize = 64;
+    private boolean journalFsync = false;
+    private int historyThreads = 2;
+    private long presenceLinger = 100;
+
+    /**
+     * Creates a new ServerConfig from command line arguments, unknown or malformed options are reported and ignored.
+     *
+     * @param _args the command line arguments, may be null.
+     * @return the parsed ServerConfig.
+     */
+    public static ServerConfig fromArgs(String[] _args) {
+        ServerConfig config = new ServerConfig();
+        if (_args == null) return config;
+
+        for (String arg : _args) {
+            String[] option = arg.split("=", 2);
+            String value = (option.length > 1)? option[1] : "";
+
+            try {
+                switch (option[0]) {
+                    case "--port" -> config.setPort(Integer.parseInt(value));
+                    case "--mode" -> config.setMode(ServerMode.valueOf(value.toUpperCase()));
+                    case "--event-loops" -> config.setEventLoops(Integer.parseInt(value));
+                    case "--queue-capacity" -> config.setQueueCapacity(Integer.parseInt(value));
+                    case "--overflow-policy" -> config.setOverflowPolicy(OverflowPolicy.valueOf(value.toUpperCase()));
+                    case "--block-timeout" -> config.setBlockTimeout(Long.parseLong(value));
+                    case "--flush-linger" -> config.setFlushLinger(Long.parseLong(value));
+                    case "--log-level" -> config.setLogLevel(LogLevel.valueOf(value.toUpperCase()));
+                    case "--stats-interval" -> config.setStatsInterval(Long.parseLong(value));
+                    case "--metrics-port" -> config.setMetricsPort(Integer.parseInt(value));
+                    case "--cluster-address" -> config.setClusterAddress(value);
+                    case "--peers" -> config.setPeers(List.of(value.split(",")));
+                    case "--journal-dir" -> config.setJournalDirectory(Path.of(value));
+                    case "--journal-segment-size" -> config.setJournalSegmentSize(Integer.parseInt(value));
+                    case "--journal-fsync" -> config.setJournalFsync(Boolean.parseBoolean(value));
+                    case "--history-threads" -> config.setHistoryThreads(Integer.parseInt(value));
+                    case "--presence-linger" -> config.setPresenceLinger(Long.parseLong(value));
+                    default -> Utils.println("unknown option: " + arg);
+                }
+            } catch (IllegalArgumentException e) { Utils.println("invalid value for option: " + arg); }
+        }
+
+        return config;
+    }
+
+    /** @return the port the clients connect to */
+    public int getPort() { return port; }
+
+    /**
+     * Sets the port the clients connect to.
+     *
+     * @param _port the port, between 1 and 65535.
+     */
+    public void setPort(int _port) {
+        if (_port < 1 || _port > 65535) throw new IllegalArgumentException("port must be between 1 and 65535");
+        port = _port;
+    }
+
+    /** @return the {@link ServerMode} used to run the connections */
+    public ServerMode getMode() { return mode; }
+
+    /**
+     * Sets the {@link ServerMode} used to run the connections.
+     *
+     * @param _mode the new server mode.
+     */
+    public void setMode(ServerMode _mode) { mode = _mode; }
+
+    /** @return the number of {@link EventLoop EventLoops} used in {@link ServerMode#NIO NIO} mode */
+    public int getEventLoops() { return eventLoops; }
+
+    /**
+     * Sets the number of {@link EventLoop EventLoops} used in {@link ServerMode#NIO NIO} mode.
+     *
+     * @param _eventLoops the number of event loops, must be positive.
+     */
+    public void setEventLoops(int _eventLoops) {
+        if (_eventLoops < 1) throw new IllegalArgumentException("event loops must be positive");
+        eventLoops = _eventLoops;
+    }
+
+    /**
+     * Creates a new {@link OutboundQueue} for a connection according to these options, with its own {@link FlushStats}.
+     *
+     * @return the new outbound queue.
+     */
+    public OutboundQueue newOutboundQueue() { return this.newOutboundQueue(new FlushStats()); }
+
+    /**
+     * Creates a new {@link OutboundQueue} for a connection according to these options.
+     *
+     * @param _stats the counters shared by the writers of the server.
+     * @return the new outbound queue.
+     */
+    public OutboundQueue newOutboundQueue(FlushStats _stats) {
+        return new OutboundQueue(queueCapacity, overflowPolicy, blockTimeout, flushLinger, _stats);
+    }
+
+    /** @return the maximum number of frames queued for each connection */
+    public int getQueueCapacity() { return queueCapacity; }
+
+    /**
+     * Sets the maximum number of frames queued for each connection.
+     *
+     * @param _queueCapacity the queue capacity, must be positive.
+     */
+    public void setQueueCapacity(int _queueCapacity) {
+        if (_queueCapacity < 1) throw new IllegalArgumentException("queue capacity must be positive");
+        queueCapacity = _queueCapacity;
+    }
+
+    /** @return the {@link OverflowPolicy} applied to a full queue */
+    public OverflowPolicy getOverflowPolicy() { return overflowPolicy; }
+
+    /**
+     * Sets the {@link OverflowPolicy} applied to a full queue.
+     *
+     * @param _overflowPolicy the new overflow policy.
+     */
+    public void setOverflowPolicy(OverflowPolicy _overflowPolicy) { overflowPolicy = _overflowPolicy; }
+
+    /** @return how many milliseconds a sender waits for room with the {@link OverflowPolicy#BLOCK BLOCK} policy */
+    public long getBlockTimeout() { return blockTimeout; }
+
+    /**
+     * Sets how many milliseconds a sender waits for room with the {@link OverflowPolicy#BLOCK BLOCK} policy.
+     *
+     * @param _blockTimeout the timeout in milliseconds, must not be negative.
+     */
+    public void setBlockTimeout(long _blockTimeout) {
+        if (_blockTimeout < 0) throw new IllegalArgumentException("block timeout must not be negative");
+        blockTimeout = _blockTimeout;
+    }
+
+    /** @return how many microseconds a writer waits for more frames before flushing */
+    public long getFlushLinger() { return flushLinger; }
+
+    /**
+     * Sets how many microseconds a writer waits for more frames before flushing. <br>
+     * In {@link ServerMode#NIO NIO} mode frames are always batched per event loop tick and this option is ignored.
+     *
+     * @param _flushLinger the linger in microseconds, 0 to flush as soon as the queue is empty, must not be negative.
+     */
+    public void setFlushLinger(long _flushLinger) {
+        if (_flushLinger < 0) throw new IllegalArgumentException("flush linger must not be negative");
+        flushLinger = _flushLinger;
+    }
+
+    /** @return the minimum {@link LogLevel} of the lines written to the log */
+    public LogLevel getLogLevel() { return logLevel; }
+
+    /**
+     * Sets the minimum {@link LogLevel} of the lines written to the log.
+     *
+     * @param _logLevel the new log level.
+     */
+    public void setLogLevel(LogLevel _logLevel) { logLevel = _logLevel; }
+
+    /** @return how many seconds pass between two snapshots of the statistics written to the log, 0 if they are never written */
+    public long getStatsInterval() { return statsInterval; }
+
+    /**
+     * Sets how many seconds pass between two snapshots of the statistics written to the log.
+     *
+     * @param _statsInterval the interval in seconds, 0 to never write them, must not be negative.
+     */
+    public void setStatsInterval(long _statsInterval) {
+        if (_statsInterval < 0) throw new IllegalArgumentException("stats interval must not be negative");
+        statsInterval = _statsInterval;
+    }
+
+    /** @return the port the {@link MetricsEndpoint} serves the metrics on, 0 if it is disabled */
+    public int getMetricsPort() { return metricsPort; }
+
+    /**
+     * Sets the port the {@link MetricsEndpoint} serves the metrics on, it must differ from the port of the chat.
+     *
+     * @param _metricsPort the port, 0 to disable the endpoint.
+     */
+    public void setMetricsPort(int _metricsPort) {
+        if (_metricsPort < 0 || _metricsPort > 65535) throw new IllegalArgumentException("metrics port must be between 0 and 65535");
+        metricsPort = _metricsPort;
+    }
+
+    /** @return the address the other nodes of the {@link Cluster} reach this node at, or null if the server is not clustered */
+    public String getClusterAddress() { return clusterAddress; }
+
+    /**
+     * Sets the address the other nodes of the {@link Cluster} reach this node at, the node listens for them on its port.
+     *
+     * @param _clusterAddress the address in the form <strong>host:port</strong>, or null to run a standalone server.
+     */
+    public void setClusterAddress(String _clusterAddress) {
+        if (_clusterAddress != null) Cluster.parseAddress(_clusterAddress);
+        clusterAddress = _clusterAddress;
+    }
+
+    /** @return the addresses of the other nodes of the {@link Cluster} */
+    public List<String> getPeers() { return peers; }
+
+    /**
+     * Sets the addresses of the other nodes of the {@link Cluster}, every node must be given the same set of nodes.
+     *
+     * @param _peers the addresses in the form <strong>host:port</strong>.
+     * @throws IllegalArgumentException if an address is malformed or there are more nodes than a {@link Sequence} can tell apart.
+     */
+    public void setPeers(List<String> _peers) {
+        if (_peers.size() >= 1 << Sequence.NODE_BITS) throw new IllegalArgumentException("a cluster has at most " + (1 << Sequence.NODE_BITS) + " nodes");
+        _peers.forEach(Cluster::parseAddress);
+        peers = List.copyOf(_peers);
+    }
+
+    /** @return the directory of the {@link Journal}, or null if the messages are not journaled */
+    public Path getJournalDirectory() { return journalDirectory; }
+
+    /**
+     * Sets the directory of the {@link Journal} the public and private messages are appended to.
+     *
+     * @param _journalDirectory the directory, created if it does not exist, or null to keep no journal.
+     */
+    public void setJournalDirectory(Path _journalDirectory) { journalDirectory = _journalDirectory; }
+
+    /** @return the size of the segment files of the {@link Journal} in megabytes */
+    public int getJournalSegmentSize() { return journalSegmentSize; }
+
+    /**
+     * Sets the size of the segment files of the {@link Journal}.
+     *
+     * @param _journalSegmentSize the size in megabytes, between 1 and 1024.
+     */
+    public void setJournalSegmentSize(int _journalSegmentSize) {
+        if (_journalSegmentSize < 1 || _journalSegmentSize > 1024) throw new IllegalArgumentException("journal segment size must be between 1 and 1024 MB");
+        journalSegmentSize = _journalSegmentSize;
+    }
+
+    /** @return whether every batch of the {@link Journal} is synced to the storage device before it is committed */
+    public boolean isJournalFsync() { return journalFsync; }
+
+    /**
+     * Sets whether every batch of the {@link Journal} is synced to the storage device before it is committed,
+     * otherwise the batches are synced every {@value Journal#SYNC_INTERVAL} milliseconds. <br>
+     * Syncing every batch adds the latency of the device to every batch, in exchange a crash of the machine loses no committed message.
+     *
+     * @param _journalFsync true to sync every batch.
+     */
+    public void setJournalFsync(boolean _journalFsync) { journalFsync = _journalFsync; }
+
+    /** @return the number of pages of history the {@link HistoryReplayer} replays at once */
+    public int getHistoryThreads() { return historyThreads; }
+
+    /**
+     * Sets the number of pages of history the {@link HistoryReplayer} replays at once, further requests wait or are refused.
+     *
+     * @param _historyThreads the number of threads replaying the history, must be positive.
+     */
+    public void setHistoryThreads(int _historyThreads) {
+        if (_historyThreads < 1) throw new IllegalArgumentException("history threads must be positive");
+        historyThreads = _historyThreads;
+    }
+
+    /** @return the number of milliseconds the {@link Presence} collects clients joining and leaving before sending them */
+    public long getPresenceLinger() { return presenceLinger; }
+
+    /**
+     * Sets the number of milliseconds the {@link Presence} collects clients joining and leaving before sending them in a batch,
+     * the most the list of clients shown by the clients lags behind.
+     *
+     * @param _presenceLinger the linger in milliseconds, 0 to send every change on its own, must not be negative.
+     */
+    public void setPresenceLinger(long _presenceLinger) {
+        if (_presenceLinger < 0) throw new IllegalArgumentException("presence linger must not be negative");
+        presenceLinger = _presenceLinger;
+    }
+
+    /** @return a new {@link Journal} with the journal options, disabled if no directory is set */
+    public Journal newJournal() {
+        return (journalDirectory != null)? new Journal(journalDirectory, journalSegmentSize << 20, journalFsync) : new Journal();
+    }
+}
@@ -1,20 +1,35 @@
 package com.chat.server;
 
+import com.chat.server.journal.Journal;
+import com.chat.server.metrics.CountingInputStream;
+import com.chat.server.metrics.ServerMetrics;
 import com.chat.utils.Utils;
+import com.chat.utils.log.LogLevel;
+import com.chat.utils.message.BinaryCodec;
 import com.chat.utils.message.ErrorType;
 import com.chat.utils.message.Message;
 import com.chat.utils.message.MessageType;
+import com.chat.utils.message.WireFormat;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
-import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.StreamCorruptedException;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
-import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * The ServerConnection class represents a connection between the {@link Server Server} and a {@link com.chat.client.Client Client} in a chat application.
@@ -23,82 +38,391 @@ import java.util.concurrent.ConcurrentSkipListSet;
  *     It contains methods for reading and writing as well as listening, handling and processing {@link Message Messages}.
  * </p>
  *
+ * <p>
+ *     Frames are never written by the sender's thread: they are queued in the connection's bounded {@link OutboundQueue}
+ *     and written by a dedicated writer running {@link #drain()}, so that a slow client cannot stall the others. <br>
+ *     The writer copies every frame queued by the time it wakes up, or within the flush linger, into a single buffer
+ *     and writes it at once, so that frames sent together, such as the approval of a name and the list of clients,
+ *     share a syscall and a TCP segment.
+ * </p>
+ *
+ * <p>
+ *     The {@link WireFormat} of the connection is chosen by the first byte the client sends:
+ *     the {@link BinaryCodec#PREFACE preface} switches it to binary frames, anything else keeps JSON lines.
+ * </p>
+ *
+ * <p>
+ *     If the server is part of a {@link Cluster}, names are reserved across the nodes, public messages and changes of names
+ *     are relayed to the other nodes and private messages to clients of other nodes are routed to their node.
+ * </p>
+ *
+ * <p>
+ *     Public, room and private messages are numbered by the {@link Sequence} of their chat before they are delivered,
+ *     the private messages of a client by a sequence of its own connection, and carry the time they were numbered.
+ * </p>
+ *
+ * <p>
+ *     Changes of the list of clients are batched and numbered by the {@link Presence} of the server: a client is sent the list,
+ *     or the changes it missed since it last connected, once when its name is first set and only the changes afterwards.
+ *     The other nodes of the {@link Cluster} are told about every change right away. A client may instead opt for lazy presence,
+ *     subscribing to the clients it cares about and searching the others.
+ * </p>
+ *
+ * <p>
+ *     Public and private messages are appended to the {@link com.chat.server.journal.Journal Journal} of the server once they are delivered,
+ *     public messages reuse the binary encoding shared by their recipients.
+ * </p>
+ *
+ * <p>
+ *     Messages, bytes, errors and latencies are counted in the {@link ServerMetrics} shared by the connections of the server.
+ * </p>
+ *
  * @see Server
  */
 public class ServerConnection {
+    /** The size of the buffer the writer coalesces frames into, larger frames are written on their own. */
+    public static final int WRITE_BUFFER_SIZE = 1 << 14;
+    /** The maximum number of rooms a client is a member of at once. */
+    public static final int MAX_ROOMS = 64;
+
     private final int id;
-    private String name;
+    private volatile String name;
 
     private final Socket socket;
 
-    private boolean open = false;
+    protected volatile boolean open = false;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
     private boolean muted = false;
+    private final Set<String> rooms = ConcurrentHashMap.newKeySet();
+    private final Sequence privateSequence = new Sequence();
+
+    protected ClientRegistry clients;
+    protected volatile WireFormat format = WireFormat.JSON;
 
-    private ConcurrentSkipListSet<ServerConnection> clients;
+    private BufferedInputStream inputStream;
+    private BufferedReader lineReader;
+    private WritableByteChannel outputStream;
+    protected final OutboundQueue outbound;
+    protected final ServerMetrics metrics;
 
-    private BufferedReader inputStream;
-    private DataOutputStream outputStream;
+    /**
+     * Creates a new instance of ServerConnection with the default {@link OutboundQueue} and its own {@link ServerMetrics}.
+     *
+     * @param _socket The {@link Socket} representing the connection between the {@link com.chat.client.Client Client} and the {@link Server}.
+     * @param _id The unique ID of the connection.
+     */
+    public ServerConnection(Socket _socket, int _id) { this(_socket, _id, new ServerConfig().newOutboundQueue(), new ServerMetrics()); }
 
     /**
      * Creates a new instance of ServerConnection.
      *
      * @param _socket The {@link Socket} representing the connection between the {@link com.chat.client.Client Client} and the {@link Server}.
      * @param _id The unique ID of the connection.
+     * @param _outbound The queue of the frames waiting to be written to the client.
+     * @param _metrics The metrics shared by the connections of the server.
      */
-    public ServerConnection(Socket _socket, int _id) {
+    public ServerConnection(Socket _socket, int _id, OutboundQueue _outbound, ServerMetrics _metrics) {
         id = _id;
         socket = _socket;
+        outbound = _outbound;
+        metrics = _metrics;
+        metrics.connectionOpened();
+        try {
+            inputStream = new BufferedInputStream(new CountingInputStream(socket.getInputStream(), metrics));
+            outputStream = Channels.newChannel(socket.getOutputStream());
+        } catch (IOException e) { Utils.logln(LogLevel.ERROR, "exception: IO exception occurred; {}", e.getMessage()); }
+    }
+
+    /**
+     * Creates a new instance of ServerConnection that is not backed by a blocking {@link Socket}. <br>
+     * Used by subclasses that provide their own transport, such as {@link ChannelConnection}.
+     *
+     * @param _id The unique ID of the connection.
+     * @param _outbound The queue of the frames waiting to be written to the client.
+     * @param _metrics The metrics shared by the connections of the server.
+     */
+    protected ServerConnection(int _id, OutboundQueue _outbound, ServerMetrics _metrics) {
+        id = _id;
+        socket = null;
+        outbound = _outbound;
+        metrics = _metrics;
+        metrics.connectionOpened();
+    }
+
+    /**
+     * Reads the first byte sent by the client to choose the {@link WireFormat} of the connection. <br>
+     * If it is the {@link BinaryCodec#PREFACE preface} the same byte is sent back to accept binary frames,
+     * otherwise the byte is left in the stream for the first JSON line.
+     */
+    private void negotiate() {
         try {
-            inputStream = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            outputStream = new DataOutputStream(socket.getOutputStream());
-        } catch (IOException e) { Utils.logln("exception: IO exception occurred; " +  e.getMessage()); }
+            inputStream.mark(1);
+            if (inputStream.read() == BinaryCodec.PREFACE) {
+                format = WireFormat.BINARY;
+                this.send(BinaryCodec.preface());
+                return;
+            }
+            inputStream.reset();
+        }
+        catch (SocketException e) { this.close(null); }
+        catch (IOException e) { Utils.logln(LogLevel.ERROR, "exception: IO exception occurred; {}", e.getMessage()); }
+
+        lineReader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
     }
 
     /**
-     * Waits for a {@link String} from the {@link Socket}'s {@link BufferedReader} and reads it.
+     * Waits for a frame from the {@link Socket}'s input stream and reads it,
+     * either a JSON line or a {@link BinaryCodec binary frame} depending on the {@link WireFormat} of the connection.
      *
      * <p>
-     *     Closes the ServerConnection if a {@link SocketException} is thrown.
+     *     Closes the ServerConnection if a {@link SocketException} is thrown, the end of the stream is reached or a binary frame is malformed.
      * </p>
      *
-     * @return the {@link Message} read from the BufferedReader, or null if an {@link Exception} occurred.
+     * @return the {@link Message} read from the input stream, or null if an {@link Exception} occurred.
      */
     public Message read() {
-        try { return Utils.serializeJson(inputStream.readLine()); }
-        catch (SocketException e) { this.close(null); }
-        catch (IOException e) { Utils.logln("exception: IO exception occurred; " +  e.getMessage()); }
+        try {
+            if (format == WireFormat.BINARY) {
+                Message message = BinaryCodec.read(inputStream);
+                if (message != null) return message;
+            } else {
+                String line = lineReader.readLine();
+                if (line != null) return Utils.serializeJson(line);
+            }
+            this.close(null);
+        }
+        catch (StreamCorruptedException e) {
+            Utils.logln(LogLevel.ERROR, "exception: {}, closing connection {}", e.getMessage(), id);
+            this.close(null);
+        }
+        catch (SocketException | EOFException e) { this.close(null); }
+        catch (IOException e) { Utils.logln(LogLevel.ERROR, "exception: IO exception occurred; {}", e.getMessage()); }
         return null;
     }
 
     /**
-     * Writes a {@link Message} to the {@link Socket}'s {@link DataOutputStream}.
+     * Writes a {@link Message} to the {@link Socket}'s output stream, encoded in the {@link WireFormat} of the connection.
      *
-     * @param _message The Message to write to the DataOutputStream.
+     * @param _message The Message to write to the output stream.
      */
     public void write(Message _message) {
-        try { outputStream.writeBytes(Utils.deserializeJson(_message) + '\n'); }
-        catch (IOException e) { Utils.logln("exception: IO exception occurred; " +  e.getMessage()); }
+        ByteBuffer frame = Utils.encodeFrame(_message, format);
+        if (frame == null) return;
+
+        metrics.messagesOut(_message.type(), 1);
+        this.send(frame);
+    }
+
+    /**
+     * Writes a {@link Frame} shared with other connections to the {@link Socket}'s output stream.
+     *
+     * <p>
+     *     The frame is encoded once per {@link WireFormat} and never modified,
+     *     every connection writes its own view of the shared bytes.
+     * </p>
+     *
+     * @param _frame the shared frame.
+     */
+    public void write(Frame _frame) {
+        if (this.enqueue(_frame, true)) metrics.messagesOut(_frame.getMessage().type(), 1);
+    }
+
+    /**
+     * Writes a {@link Frame} shared with other connections without ever waiting for room in the queue:
+     * if the queue is full the {@link OverflowPolicy} is applied as on an event loop thread.
+     *
+     * @param _frame the shared frame.
+     */
+    public void offer(Frame _frame) {
+        if (this.enqueue(_frame, false)) metrics.messagesOut(_frame.getMessage().type(), 1);
+    }
+
+    /**
+     * Queues a shared {@link Frame} without counting it, broadcasts count all their recipients at once.
+     *
+     * @param _frame the shared frame.
+     * @param _mayBlock whether the calling thread is allowed to wait for room in the queue.
+     * @return true if the frame was encoded and queued.
+     */
+    private boolean enqueue(Frame _frame, boolean _mayBlock) {
+        ByteBuffer frame = _frame.encoded(format);
+        if (frame == null) return false;
+
+        this.send(frame, _mayBlock);
+        return true;
+    }
+
+    /**
+     * Writes a {@link Frame} to every named connection except this one and records the fan-out.
+     *
+     * @param _frame the shared frame.
+     */
+    private void broadcast(Frame _frame) { this.broadcast(_frame, clients.getNamed()); }
+
+    /**
+     * Writes a {@link Frame} to the given connections except this one, without waiting for room in their queues, and records the fan-out.
+     *
+     * @param _frame the shared frame.
+     * @param _recipients the connections to write to, such as the members of a room.
+     */
+    private void broadcast(Frame _frame, Collection<ServerConnection> _recipients) {
+        long start = System.nanoTime();
+        int recipients = 0;
+        for (ServerConnection client : _recipients) {
+            if (client != this && client.enqueue(_frame, false)) recipients++;
+        }
+
+        metrics.recordFanOut(System.nanoTime() - start);
+        metrics.messagesOut(_frame.getMessage().type(), recipients);
+    }
+
+    /**
+     * Writes a {@link Frame} to every named connection except this one and relays it to the other nodes of the {@link Cluster}.
+     *
+     * @param _frame the shared frame.
+     */
+    private void publish(Frame _frame) {
+        this.broadcast(_frame);
+        clients.getCluster().relay(_frame);
+    }
+
+    /**
+     * Numbers a {@link Message} with the next number of a {@link Sequence}.
+     *
+     * @param _message the message to number.
+     * @param _sequence the sequence of the chat of the message.
+     * @return the numbered message, with the time it was numbered.
+     */
+    private Message stamp(Message _message, Sequence _sequence) {
+        long sequence = _sequence.next(clients.getCluster().getIndex());
+        return _message.withSequence(sequence, Sequence.timestamp(sequence));
+    }
+
+    /**
+     * Appends a private message to the {@link com.chat.server.journal.Journal Journal} of the server.
+     *
+     * @param _message the {@link MessageType#SERVER_SEND_PRIVATE SERVER_SEND_PRIVATE} message that was delivered, with its receiver.
+     */
+    private void journal(Message _message) { if (clients.getJournal().isOpen()) clients.getJournal().append(_message); }
+
+    /**
+     * Writes an error to the client and counts it.
+     *
+     * @param _error the type of the error.
+     */
+    private void writeError(ErrorType _error) {
+        metrics.error(_error);
+        this.write(new Message(MessageType.SERVER_SEND_ERROR, _error.name()));
+    }
+
+    /**
+     * Queues an encoded frame for the writer, disconnecting the client if it is too slow.
+     *
+     * @param _frame the frame to send, owned by this connection.
+     */
+    protected void send(ByteBuffer _frame) { this.send(_frame, true); }
+
+    /**
+     * Queues an encoded frame for the writer, disconnecting the client if it is too slow.
+     *
+     * @param _frame the frame to send, owned by this connection.
+     * @param _mayBlock whether the calling thread is allowed to wait for room in the queue.
+     */
+    protected void send(ByteBuffer _frame, boolean _mayBlock) { if (!outbound.offer(_frame, _mayBlock)) this.disconnectSlow(); }
+
+    /**
+     * Writes the queued frames to the {@link Socket} until the connection is closed, then closes the socket. <br>
+     * This is the only method writing to the socket, it runs on the connection's writer thread.
+     *
+     * <p>
+     *     Every wake-up takes the frames already queued and those queued within the flush linger,
+     *     coalesces them into the write buffer and flushes once.
+     * </p>
+     */
+    public void drain() {
+        ByteBuffer batch = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        try {
+            ByteBuffer frame = outbound.take();
+            while (frame != OutboundQueue.CLOSE) {
+                long deadline = outbound.lingerDeadline();
+                int frames = 0, writes = 0;
+                long bytes = 0;
+
+                do {
+                    if (frame.remaining() > batch.remaining()) writes += this.flush(batch);
+
+                    bytes += frame.remaining();
+                    if (frame.remaining() > batch.capacity()) {
+                        while (frame.hasRemaining()) outputStream.write(frame);
+                        writes++;
+                    } else { batch.put(frame); }
+                    frames++;
+                } while ((frame = outbound.poll(deadline)) != null && frame != OutboundQueue.CLOSE);
+
+                writes += this.flush(batch);
+                outbound.recordFlush(frames, writes);
+                metrics.bytesOut(bytes);
+
+                if (frame == null) frame = outbound.take();
+            }
+        } catch (IOException e) { this.close(null); }
+        catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        finally { this.abort(); }
+    }
+
+    /**
+     * Writes the coalesced frames of the batch to the {@link Socket} and empties it.
+     *
+     * @param _batch the write buffer.
+     * @return the number of write calls issued, 0 if the batch was empty.
+     * @throws IOException if an I/O error occurs.
+     */
+    private int flush(ByteBuffer _batch) throws IOException {
+        if (_batch.position() == 0) return 0;
+
+        _batch.flip();
+        while (_batch.hasRemaining()) outputStream.write(_batch);
+        _batch.clear();
+        return 1;
     }
 
     /**
      * Starts listening for {@link Message} and handles them.
      *
-     * @param _clients the set of all current connections to the {@link Server}.
+     * @param _clients the registry of all current connections to the {@link Server}.
      */
-    public void open(ConcurrentSkipListSet<ServerConnection> _clients) {
+    public void open(ClientRegistry _clients) {
         open = true;
         clients = _clients;
 
-        while (open) {
-            Message message = this.read();
+        this.negotiate();
+        while (open) this.receive(this.read());
+    }
 
-            if (name==null && message!=null) { this.submitName(message); }
-            else { this.handle(message); }
+    /**
+     * Processes a {@link Message} read from the {@link com.chat.client.Client Client}, the first message must set the client's name. <br>
+     * Every message is counted and the time taken to process it is recorded in the {@link ServerMetrics}.
+     *
+     * @param _message the {@link Message} that was read, or null if reading failed.
+     */
+    public void receive(Message _message) {
+        if (_message == null) {
+            this.handle(null);
+            return;
         }
+
+        long start = System.nanoTime();
+        if (_message.type() != null) metrics.messageIn(_message.type());
+
+        if (name==null) { this.submitName(_message); }
+        else { this.handle(_message); }
+
+        metrics.recordHandle(System.nanoTime() - start);
     }
 
     /**
-     * Handles a {@link Message} by processing and routing it appropriately.
+     * Handles a {@link Message} by processing and routing it appropriately. <br>
+     * Relayed messages carry the name of this connection as their sender, whatever sender the client wrote in them.
      *
      * @param _message the {@link Message} to be handled.
      */
@@ -109,54 +433,205 @@ public class ServerConnection {
                 break;
             case CLIENT_SEND_PRIVATE:
                 if (this.allowed()) {
-                    clients.stream()
-                        .filter(client -> client.name != null)
-                        .filter(client -> client.name.equals(_message.receiver()) )
-                        .findAny()
+                    Message message = this.stamp( new Message(
+                        MessageType.SERVER_SEND_PRIVATE,
+                        _message.payload(),
+                        name,
+                        _message.receiver() ), privateSequence );
+                    clients.find(_message.receiver())
                         .ifPresentOrElse(
-                            client -> client.write( new Message(MessageType.SERVER_SEND_PRIVATE, _message.payload(), _message.sender() ) ),
-                            () -> this.write( new Message(MessageType.SERVER_SEND_ERROR, ErrorType.RECEIVER_NOT_FOUND.name() ) ) );
-                } else { this.write( new Message(MessageType.SERVER_SEND_ERROR, ErrorType.CLIENT_MUTED.name() ) ); }
+                            client -> {
+                                client.write(message);
+                                this.journal(message);
+                            },
+                            () -> {
+                                if (clients.getCluster().route(message)) this.journal(message);
+                                else this.writeError(ErrorType.RECEIVER_NOT_FOUND);
+                            } );
+                } else { this.writeError(ErrorType.CLIENT_MUTED); }
                 break;
             case CLIENT_SEND_PUBLIC:
                 if (this.allowed()) {
-                    clients.stream()
-                            .filter(client -> !client.name.equals(this.name))
-                            .forEach(client -> client.write( new Message(
+                    Frame frame = new Frame( this.stamp( new Message(
                         MessageType.SERVER_SEND_PUBLIC,
                         _message.payload(),
-                        _message.sender() ) ) );
-                } else { this.write( new Message(MessageType.SERVER_SEND_ERROR, ErrorType.CLIENT_MUTED.name()) ); }
+                        name ), clients.getPublicSequence() ) );
+                    this.publish(frame);
+                    if (clients.getJournal().isOpen()) clients.getJournal().append(frame.encoded(WireFormat.BINARY), Journal.PUBLIC_CHAT);
+                } else { this.writeError(ErrorType.CLIENT_MUTED); }
                 break;
             case CLIENT_SET_NAME:
                 this.submitName(_message);
                 break; 
+            case CLIENT_JOIN_ROOM:
+                this.joinRoom(_message.payload());
+                break;
+            case CLIENT_LEAVE_ROOM:
+                this.leaveRoom(_message.payload());
+                break;
+            case CLIENT_SUBSCRIBE_PRESENCE:
+                if (!clients.getPresence().subscribe(this, ServerConnection.names(_message.payload())))
+                    this.writeError(ErrorType.SUBSCRIPTIONS_EXCEEDED);
+                break;
+            case CLIENT_UNSUBSCRIBE_PRESENCE:
+                clients.getPresence().unsubscribe(this, ServerConnection.names(_message.payload()));
+                break;
+            case CLIENT_SEARCH_CLIENTS:
+                List<String> page = clients.getPresence().search(_message.payload(), _message.receiver());
+                this.write( new Message(MessageType.SERVER_SEARCH_CLIENTS, String.join(",", page), _message.payload(),
+                        (page.size() == Presence.SEARCH_PAGE_SIZE)? page.get(page.size() - 1) : null) );
+                break;
+            case CLIENT_REQUEST_HISTORY:
+                clients.getHistory().replay(this, clients.getJournal(), _message.receiver(), _message.payload());
+                break;
+            case CLIENT_SEND_ROOM:
+                if (!this.allowed()) { this.writeError(ErrorType.CLIENT_MUTED); }
+                else if (_message.receiver() == null || !rooms.contains(_message.receiver())) { this.writeError(ErrorType.ROOM_NOT_JOINED); }
+                else {
+                    this.broadcast( new Frame( this.stamp( new Message(
+                            MessageType.SERVER_SEND_ROOM,
+                            _message.payload(),
+                            name,
+                            _message.receiver() ), clients.getRooms().getSequence(_message.receiver()) ) ),
+                            clients.getRooms().getMembers(_message.receiver()) );
+                }
+                break;
         }
     }
 
+    /**
+     * Processes a request to join a room, creating it if it does not exist.
+     *
+     * <p>
+     *     If the name of the room is empty, longer than 64 characters or reserved for the public chat, or if the client is already
+     *     a member of {@value #MAX_ROOMS} rooms, an error message is sent to the client. <br>
+     *     Otherwise the client is told that it joined and who the other members are, in chunks of {@value Presence#CHUNK_SIZE} names,
+     *     and the other members are told about the client.
+     * </p>
+     *
+     * @param _room the name of the room.
+     */
+    private void joinRoom(String _room) {
+        if (_room == null || _room.isEmpty() || _room.equals("PUBLIC") || _room.length() > 64) {
+            this.writeError(ErrorType.ROOM_NOT_ALLOWED);
+            return;
+        }
+        if (!rooms.contains(_room) && rooms.size() >= MAX_ROOMS) {
+            this.writeError(ErrorType.ROOMS_EXCEEDED);
+            return;
+        }
+
+        rooms.add(_room);
+        boolean joined = clients.getRooms().join(_room, this);
+        if (closed.get()) {
+            clients.getRooms().leave(_room, this);
+            return;
+        }
+
+        List<String> members = clients.getRooms().getMembers(_room).stream()
+                .filter(member -> member != this)
+                .map(ServerConnection::getName)
+                .toList();
+
+        this.write( new Message(MessageType.SERVER_JOIN_ROOM, name, null, _room) );
+        List<String> chunks = Presence.chunks(members);
+        if (chunks.isEmpty()) this.write( new Message(MessageType.SERVER_SEND_ROOM_MEMBERS, "", null, _room) );
+        for (String chunk : chunks) this.write( new Message(MessageType.SERVER_SEND_ROOM_MEMBERS, chunk, null, _room) );
+
+        if (joined) this.broadcast( new Frame( new Message(MessageType.SERVER_JOIN_ROOM, name, null, _room) ),
+                clients.getRooms().getMembers(_room) );
+    }
+
+    /**
+     * Processes a request to leave a room, the client and the remaining members are told that the client left.
+     *
+     * @param _room the name of the room.
+     */
+    private void leaveRoom(String _room) {
+        if (_room == null || !rooms.remove(_room) || !clients.getRooms().leave(_room, this)) {
+            this.writeError(ErrorType.ROOM_NOT_JOINED);
+            return;
+        }
+
+        Frame frame = new Frame( new Message(MessageType.SERVER_LEAVE_ROOM, name, null, _room) );
+        this.write(frame);
+        this.broadcast(frame, clients.getRooms().getMembers(_room));
+    }
+
     /**
      * Closes the connection to the {@link Server} and removes it from the set of current connections.
      *
      * <p>
-     *     If a warning message is provided, it is sent to the {@link com.chat.client.Client Client} before the connection is closed.
+     *     If a warning message is provided, it is sent to the {@link com.chat.client.Client Client} before the connection is closed. <br>
+     *     The client leaves the rooms it joined, and their remaining members are told that it left as if it had left them itself.
      * </p>
      *
      * @param _warn the warning message to send to the client before closing the connection, or null if no warning message should be sent.
      */
     public void close(String _warn) {
-        try {
-            open = false;
-            if (_warn != null) this.write(new Message(MessageType.SERVER_CLOSE, _warn));
+        if (!closed.compareAndSet(false, true)) return;
+
+        open = false;
+        metrics.connectionClosed();
+        if (_warn != null) this.write(new Message(MessageType.SERVER_CLOSE, _warn));
+
+        String released;
+        synchronized (this) { released = name; }
+
+        clients.remove(this);
+        clients.getPresence().forget(this);
+        for (String room : rooms) {
+            if (clients.getRooms().leave(room, this) && released != null)
+                this.broadcast( new Frame( new Message(MessageType.SERVER_LEAVE_ROOM, released, null, room) ),
+                        clients.getRooms().getMembers(room) );
+        }
+        if (released != null) {
+            clients.getCluster().release(released);
+            clients.getCluster().relay( new Frame( new Message(MessageType.SERVER_REMOVE_CLIENT, released) ) );
+            clients.getPresence().remove(released);
+        }
 
-            clients.remove(this);
-            clients.stream()
-                    .filter(client -> client.name != null)
-                    .forEach(client -> client.write( new Message(MessageType.SERVER_REMOVE_CLIENT, this.name) ));
+        this.shutdown();
+    }
 
-            socket.close();
-        } catch (IOException e) { Utils.logln("exception: IO exception occurred; " +  e.getMessage()); }
+    /**
+     * Closes the underlying transport of the connection once the queued frames have been written.
+     */
+    protected void shutdown() { outbound.close(); }
+
+    /**
+     * Closes the underlying transport of the connection immediately, discarding the queued frames.
+     */
+    protected void abort() {
+        try { socket.close(); }
+        catch (IOException e) { Utils.logln(LogLevel.ERROR, "exception: IO exception occurred; {}", e.getMessage()); }
     }
 
+    /**
+     * Disconnects a client that does not read its frames fast enough for its {@link OutboundQueue}.
+     */
+    protected void disconnectSlow() {
+        Utils.logln(LogLevel.WARN, "warning: disconnecting slow client {} ({})", id, name);
+        metrics.slowDisconnect();
+        this.close(null);
+        this.abort();
+    }
+
+    /** @return true if the connection was closed */
+    public boolean isClosed() { return closed.get(); }
+
+    /** @return the {@link WireFormat} negotiated with the client */
+    public WireFormat getFormat() { return format; }
+
+    /** @return the names of the rooms the client joined */
+    public Set<String> getRooms() { return Collections.unmodifiableSet(rooms); }
+
+    /** @return the {@link ServerMetrics} shared by the connections of the server */
+    public ServerMetrics getMetrics() { return metrics; }
+
+    /** @return the {@link OutboundQueue} of the frames waiting to be written to the client */
+    public OutboundQueue getOutbound() { return outbound; }
+
     /**
      * Gets the name of the {@link com.chat.client.Client Client} associated with the connection.
      *
@@ -170,42 +645,87 @@ public class ServerConnection {
      * <p>
      *     If the name is already in use, longer than 64 characters or not allowed, an error message is sent to the client. <br>
      *     If the name is approved, a message of approval is sent to the client and all clients are warned about the change.
+     *     When the name is first set the client is also brought up to date with the list of clients by the {@link Presence},
+     *     from the version it sent as the receiver of the message.
+     * </p>
+     *
+     * <p>
+     *     The name is reserved in the {@link ClientRegistry} in a single atomic step, then in the {@link Cluster},
+     *     and only once both succeeded the previous name is released. <br>
+     *     Reserving a name in the cluster may have to ask another node, so the name is approved by {@link #approveName(Message, Boolean, Throwable)}
+     *     when the answer comes, without blocking the thread reading the connection.
      * </p>
      *
      * @param _message a {@link Message} containing the requested name and sender information.
      */
     public void submitName(@NotNull Message _message) {
         if (_message.type() == MessageType.CLIENT_SET_NAME) {
-            final boolean exists = clients.stream()
-                    .map(ServerConnection::getName)
-                    .filter(Objects::nonNull)
-                    .anyMatch(name -> name.equals(_message.payload()) );
-
-            if (exists) {
-                this.write(new Message(MessageType.SERVER_SEND_ERROR, ErrorType.NAME_ALREADY_SET.name()));
-            } else if (
+            if (
+                    _message.payload() == null ||
                     _message.payload().equals("") ||
                     _message.payload().equals("PUBLIC") ||
                     _message.payload().length() > 64) {
-                this.write(new Message(MessageType.SERVER_SEND_ERROR, ErrorType.NAME_NOT_ALLOWED.name()));
+                this.writeError(ErrorType.NAME_NOT_ALLOWED);
+            } else if (!clients.reserve(_message.payload(), this)) {
+                this.writeError(ErrorType.NAME_ALREADY_SET);
             } else {
-                name = _message.payload();
-                List<String> names = clients.stream()
-                        .map(ServerConnection::getName)
-                        .filter(name -> name != null && !this.name.equals(name))
-                        .toList();
-
-                this.write( new Message(MessageType.SERVER_APPROVE_NAME, name) );
+                clients.getCluster().reserve(_message.payload())
+                        .whenComplete((reserved, e) -> this.approveName(_message, reserved, e));
+            }
+        } else { this.writeError(ErrorType.NAME_NOT_SET); }
+    }
 
-                this.write( new Message(MessageType.SERVER_SEND_CLIENTS, String.join(",", names)) );
+    /**
+     * Completes a request to set or change the name once the {@link Cluster} answered.
+     *
+     * <p>
+     *     If the cluster refused the name or could not be reached, the name is released and an error message is sent to the client. <br>
+     *     If the connection was closed in the meantime, the name is released silently.
+     * </p>
+     *
+     * @param _message the {@link Message} containing the requested name and sender information.
+     * @param _reserved whether the cluster reserved the name, null if it could not be reached.
+     * @param _error the reason the cluster could not be reached, or null.
+     */
+    private void approveName(Message _message, Boolean _reserved, Throwable _error) {
+        String requested = _message.payload();
+        if (_error != null || !_reserved) {
+            clients.release(requested, this);
+            this.writeError((_error != null)? ErrorType.NODE_UNAVAILABLE : ErrorType.NAME_ALREADY_SET);
+            return;
+        }
 
-                clients.stream()
-                        .filter(client -> client.name != null && !client.name.equals(this.name))
-                        .forEach(client -> client.write(
-                                new Message( (_message.sender() == null)? MessageType.SERVER_ADD_CLIENT : MessageType.SERVER_RENAME_CLIENT,
-                                        _message.payload(), _message.sender()) ));
+        String previous;
+        synchronized (this) {
+            if (closed.get()) {
+                clients.release(requested, this);
+                clients.getCluster().release(requested);
+                return;
             }
-        } else { this.write( new Message(MessageType.SERVER_SEND_ERROR, ErrorType.NAME_NOT_SET.name()) ); }
+            previous = name;
+            name = requested;
+        }
+        clients.release(previous, this);
+        clients.getCluster().release(previous);
+
+        this.write( new Message(MessageType.SERVER_APPROVE_NAME, requested).withSequence(0, System.currentTimeMillis()) );
+
+        if (previous == null && Presence.LAZY.equals(_message.receiver())) clients.getPresence().lazy(this);
+        else if (previous == null) clients.getPresence().sync(_message.receiver(), requested,
+                message -> this.offer(new Frame(message)));
+
+        clients.getCluster().relay( new Frame(
+                new Message( (previous == null)? MessageType.SERVER_ADD_CLIENT : MessageType.SERVER_RENAME_CLIENT, requested, previous) ) );
+        if (previous == null) clients.getPresence().add(requested);
+        else clients.getPresence().rename(previous, requested);
+    }
+
+    /**
+     * @param _payload a comma separated list of names, may be null.
+     * @return the names of the list
+     */
+    private static List<String> names(String _payload) {
+        return (_payload == null || _payload.isEmpty())? List.of() : List.of(_payload.split(","));
     }
 
     /**
@@ -0,0 +1,24 @@
+package com.chat.server;
+
+/**
+ * The ServerMode enum represents the way the {@link Server} runs its {@link ServerConnection ServerConnections}.
+ *
+ * @see Server
+ * @see ServerConfig
+ */
+public enum ServerMode {
+    /** Every {@link ServerConnection} runs its blocking read loop on its own platform {@link Thread}. */
+    THREAD,
+
+    /**
+     * Every {@link ServerConnection} runs its blocking read loop on its own virtual {@link Thread}. <br>
+     * Falls back to {@link #THREAD} when virtual threads are not available (Java 19 without --enable-preview).
+     */
+    VIRTUAL,
+
+    /**
+     * Every {@link ServerConnection} is a non-blocking {@link ChannelConnection} owned by one of a small pool of
+     * {@link EventLoop EventLoops}, each multiplexing many connections on a single {@link java.nio.channels.Selector Selector}.
+     */
+    NIO
+}
@@ -0,0 +1,51 @@
+package com.chat.server.journal;
+
+import java.util.Arrays;
+
+/**
+ * The ChatOffsets class is the list of the offsets of the {@link Journal} holding the messages of a single chat.
+ *
+ * <p>
+ *     Offsets are added in increasing order by the appenders of the journal, one at a time, and read by any thread without locking:
+ *     an offset is written before the size that makes it visible, so a reader never sees an offset that is not set yet.
+ * </p>
+ *
+ * @see Journal#getOffsets(String)
+ */
+public class ChatOffsets {
+    private volatile long[] offsets = new long[8];
+    private volatile int size = 0;
+
+    /**
+     * Adds an offset after the others, only called by one thread at a time.
+     *
+     * @param _offset the offset, greater than every offset already added.
+     */
+    void add(long _offset) {
+        long[] current = offsets;
+        if (size == current.length) offsets = current = Arrays.copyOf(current, current.length * 2);
+        current[size] = _offset;
+        size++;
+    }
+
+    /**
+     * Finds the first offset at or after an offset of the journal.
+     *
+     * @param _offset an offset of the journal.
+     * @return the index of the first offset not lower than the given one, or {@link #size()} if there is none.
+     */
+    public int ceiling(long _offset) {
+        int count = size;
+        int index = Arrays.binarySearch(offsets, 0, count, _offset);
+        return (index >= 0)? index : -index - 1;
+    }
+
+    /**
+     * @param _index the index of an offset, lower than {@link #size()}.
+     * @return the offset at the given index
+     */
+    public long get(int _index) { return offsets[_index]; }
+
+    /** @return the number of offsets */
+    public int size() { return size; }
+}
@@ -0,0 +1,337 @@
+package com.chat.server.journal;
+
+import com.chat.utils.Utils;
+import com.chat.utils.log.LogLevel;
+import com.chat.utils.message.BinaryCodec;
+import com.chat.utils.message.Message;
+import com.chat.utils.message.MessageType;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The Journal class is the append-only log of the messages sent through the {@link com.chat.server.Server Server}.
+ *
+ * <p>
+ *     The log is split into {@link Segment Segments} of a fixed size, each a memory-mapped file named after the offset
+ *     of its first message with an index of the positions of its messages. Every message gets the next offset when
+ *     it is appended, so the offsets of the journal are a single sequence across the segments.
+ * </p>
+ *
+ * <p>
+ *     Appending only reserves an offset and queues the binary frame of the message: a single writer thread takes
+ *     the queued frames in batches, copies them into the mapped segment and, if fsync is enabled, syncs the batch
+ *     with one call before committing it. Without fsync the writer syncs what it wrote at most every
+ *     {@value #SYNC_INTERVAL} milliseconds instead, so a batch costs a copy into memory rather than a trip to the disk
+ *     and a crash of the machine loses at most the last interval. The senders never wait for the disk, they only wait
+ *     if the writer falls a whole queue behind. <br>
+ *     Readers see a message once its batch is committed and read it straight from the mapping, without locking.
+ * </p>
+ *
+ * <p>
+ *     The offsets of every chat, the public chat or the private chat between two clients, are indexed in memory as they are
+ *     appended, so the history of a chat is read without scanning the messages of the others. <br>
+ *     When the journal is opened again the segments already on disk are scanned, so the offsets continue where they stopped
+ *     and the index of the chats is rebuilt.
+ *     A Journal created without a directory is disabled: nothing is appended and nothing can be read.
+ * </p>
+ *
+ * @see com.chat.server.ServerConfig#getJournalDirectory()
+ */
+public class Journal {
+    /** The maximum number of messages the writer commits at once. */
+    public static final int BATCH_SIZE = 1024;
+    /** The maximum number of messages waiting for the writer. */
+    public static final int QUEUE_CAPACITY = 1 << 16;
+    /** The maximum number of milliseconds written messages wait to be synced when fsync is disabled. */
+    public static final long SYNC_INTERVAL = 1000;
+    /** The name of the public chat in the index of the chats. */
+    public static final String PUBLIC_CHAT = "PUBLIC";
+
+    private static final Pending CLOSE = new Pending(0, null);
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean fsync;
+
+    private final CopyOnWriteArrayList<Segment> segments = new CopyOnWriteArrayList<>();
+    private final ArrayBlockingQueue<Pending> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Object appending = new Object();
+    private final ConcurrentHashMap<String, ChatOffsets> chats = new ConcurrentHashMap<>();
+
+    private long next = 0;
+    private volatile long committed = 0;
+    private volatile long batches = 0;
+
+    private volatile Thread writer;
+
+    /**
+     * A frame waiting for the writer.
+     *
+     * @param timestamp the time the message was appended.
+     * @param frame the binary frame of the message.
+     */
+    private record Pending(long timestamp, ByteBuffer frame) {}
+
+    /**
+     * Creates a disabled Journal, for a server that keeps no history.
+     */
+    public Journal() { this(null, 0, false); }
+
+    /**
+     * Creates a new instance of Journal, it cannot be appended to until {@link #open()} is called.
+     *
+     * @param _directory the directory of the segments, created if it does not exist.
+     * @param _segmentSize the size of a segment in bytes, larger than the largest frame.
+     * @param _fsync whether every batch is synced to the storage device before it is committed, otherwise every {@value #SYNC_INTERVAL} milliseconds.
+     */
+    public Journal(Path _directory, int _segmentSize, boolean _fsync) {
+        directory = _directory;
+        segmentSize = _segmentSize;
+        fsync = _fsync;
+    }
+
+    /**
+     * Opens the segments on disk, or creates the first one, and starts the writer, a disabled journal does nothing.
+     *
+     * @throws IOException if the directory or the segments cannot be opened.
+     */
+    public void open() throws IOException {
+        if (directory == null) return;
+
+        Files.createDirectories(directory);
+        List<Long> bases = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.matches("\\d{20}\\.log"))
+                    .map(name -> Long.parseLong(name.substring(0, 20)))
+                    .sorted()
+                    .forEach(bases::add);
+        }
+
+        if (bases.isEmpty()) bases.add(0L);
+        for (long base : bases) segments.add(new Segment(directory, base, segmentSize));
+
+        Segment last = segments.get(segments.size() - 1);
+        next = last.getBase() + last.getCount();
+        committed = next;
+        for (long offset = this.getFirstOffset(); offset < committed; offset++) {
+            JournalEntry entry = this.read(offset);
+            if (entry != null) this.index(Journal.chat(entry.message()), offset);
+        }
+
+        writer = new Thread(this::write, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Utils.println("journal " + directory + " holds " + (committed - this.getFirstOffset()) + " messages in " + segments.size() + " segments");
+    }
+
+    /**
+     * Commits the messages already appended and closes the segments.
+     */
+    public void close() {
+        if (writer == null) return;
+
+        try {
+            queue.put(CLOSE);
+            writer.join();
+        } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        writer = null;
+
+        for (Segment segment : segments) {
+            try { segment.close(); }
+            catch (IOException e) { Utils.logln(LogLevel.ERROR, "exception: IO exception occurred; {}", e.getMessage()); }
+        }
+    }
+
+    /**
+     * Appends a {@link Message} to the journal.
+     *
+     * @param _message the message.
+     * @return the offset of the message, or -1 if the journal is disabled.
+     */
+    public long append(Message _message) { return (writer != null)? this.append(BinaryCodec.encode(_message), Journal.chat(_message)) : -1; }
+
+    /**
+     * Appends the binary frame of a message to the journal, such as the cached encoding of a shared frame.
+     *
+     * @param _frame the {@link BinaryCodec binary frame}, owned by the journal.
+     * @param _chat the {@link #chat(Message) chat} of the message, or null if it belongs to none.
+     * @return the offset of the message, or -1 if the journal is disabled or the frame is null.
+     */
+    public long append(ByteBuffer _frame, String _chat) {
+        if (writer == null || _frame == null) return -1;
+
+        synchronized (appending) {
+            try {
+                queue.put(new Pending(System.currentTimeMillis(), _frame));
+                this.index(_chat, next);
+                return next++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Reads a committed message.
+     *
+     * @param _offset the offset of the message.
+     * @return the message, or null if there is no committed message at that offset.
+     */
+    public JournalEntry read(long _offset) {
+        if (_offset < this.getFirstOffset() || _offset >= committed) return null;
+
+        try { return this.segment(_offset).read(_offset); }
+        catch (StreamCorruptedException e) {
+            Utils.logln(LogLevel.ERROR, "exception: journal record {} is corrupted; {}", _offset, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Gets the offsets of the messages of a chat, including the ones appended but not committed yet.
+     *
+     * @param _chat the {@link #chat(Message) chat}.
+     * @return the offsets of the chat, or null if it has no message.
+     */
+    public ChatOffsets getOffsets(String _chat) { return (_chat != null)? chats.get(_chat) : null; }
+
+    /**
+     * @param _message a message of the journal.
+     * @return the chat of the message in the index, {@link #PUBLIC_CHAT} or the chat between two clients,
+     * or null if it is neither a public nor a private message
+     */
+    public static String chat(Message _message) {
+        if (_message.type() == MessageType.SERVER_SEND_PUBLIC) return PUBLIC_CHAT;
+        if (_message.type() == MessageType.SERVER_SEND_PRIVATE && _message.sender() != null && _message.receiver() != null)
+            return Journal.chat(_message.sender(), _message.receiver());
+        return null;
+    }
+
+    /**
+     * @param _client the name of a client.
+     * @param _other the name of another client.
+     * @return the private chat between the two clients in the index, the same whichever client is given first
+     */
+    public static String chat(String _client, String _other) {
+        return (_client.compareTo(_other) <= 0)? _client + '\0' + _other : _other + '\0' + _client;
+    }
+
+    /**
+     * Adds an offset to the index of a chat, only called by one thread at a time.
+     *
+     * @param _chat the chat, or null to index nothing.
+     * @param _offset the offset of the message.
+     */
+    private void index(String _chat, long _offset) {
+        if (_chat != null) chats.computeIfAbsent(_chat, key -> new ChatOffsets()).add(_offset);
+    }
+
+    /**
+     * Finds the segment holding an offset.
+     *
+     * @param _offset an offset of the journal.
+     * @return the last segment starting at or before the offset.
+     */
+    private Segment segment(long _offset) {
+        List<Segment> snapshot = segments;
+        int low = 0, high = snapshot.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (snapshot.get(middle).getBase() <= _offset) low = middle;
+            else high = middle - 1;
+        }
+        return snapshot.get(low);
+    }
+
+    /**
+     * Takes the queued frames in batches and writes them until the journal is closed, syncing them every batch with fsync
+     * and every {@value #SYNC_INTERVAL} milliseconds without. <br>
+     * If a segment cannot be created the journal is disabled, so that the senders never wait for a writer that is gone.
+     */
+    private void write() {
+        List<Pending> batch = new ArrayList<>(BATCH_SIZE);
+        long interval = TimeUnit.MILLISECONDS.toNanos(SYNC_INTERVAL);
+        long lastSync = System.nanoTime();
+        try {
+            boolean closing = false;
+            while (!closing) {
+                Pending first = queue.poll(SYNC_INTERVAL, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    segments.get(segments.size() - 1).sync();
+                    lastSync = System.nanoTime();
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+
+                Segment segment = segments.get(segments.size() - 1);
+                int written = 0;
+                for (Pending pending : batch) {
+                    if (pending == CLOSE) {
+                        closing = true;
+                        break;
+                    }
+
+                    if (!segment.fits(pending.frame())) segment = this.roll(segment);
+                    segment.append(pending.timestamp(), pending.frame());
+                    written++;
+                }
+
+                if (fsync || System.nanoTime() - lastSync >= interval) {
+                    segment.sync();
+                    lastSync = System.nanoTime();
+                }
+                committed += written;
+                batches++;
+                batch.clear();
+            }
+        } catch (IOException e) {
+            Utils.logln(LogLevel.ERROR, "exception: the journal stopped; {}", e.getMessage());
+            writer = null;
+            queue.clear();
+        }
+        catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+    /**
+     * Syncs the full segment and starts the next one.
+     *
+     * @param _full the segment the next frame does not fit in.
+     * @return the new segment.
+     * @throws IOException if the new segment cannot be created.
+     */
+    private Segment roll(Segment _full) throws IOException {
+        _full.sync();
+        Segment segment = new Segment(directory, _full.getBase() + _full.getCount(), segmentSize);
+        segments.add(segment);
+        return segment;
+    }
+
+    /** @return true if the journal is open */
+    public boolean isOpen() { return writer != null; }
+
+    /** @return the offset of the oldest message */
+    public long getFirstOffset() { return segments.isEmpty()? 0 : segments.get(0).getBase(); }
+
+    /** @return the offset the next committed message will have, that is one past the newest committed message */
+    public long getNextOffset() { return committed; }
+
+    /** @return the number of segments */
+    public int getSegments() { return segments.size(); }
+
+    /** @return the number of batches committed since the journal was opened */
+    public long getBatches() { return batches; }
+}
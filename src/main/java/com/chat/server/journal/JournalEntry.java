@@ -0,0 +1,12 @@
+package com.chat.server.journal;
+
+import com.chat.utils.message.Message;
+
+/**
+ * The JournalEntry record is a {@link Message} read back from the {@link Journal}.
+ *
+ * @param offset the position of the message in the journal, offsets grow by one per message.
+ * @param timestamp the time the message was sent, in milliseconds since the epoch.
+ * @param message the message.
+ */
+public record JournalEntry(long offset, long timestamp, Message message) {}
@@ -0,0 +1,162 @@
+package com.chat.server.journal;
+
+import com.chat.utils.message.BinaryCodec;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The Segment class is one file of the {@link Journal}, mapped in memory together with its offset index.
+ *
+ * <p>
+ *     The log file holds the records one after the other, each made of its length, its timestamp and
+ *     the {@link BinaryCodec binary frame} of its message. The length is written last, so a record whose length
+ *     is zero was never completed and marks the end of the segment. <br>
+ *     The index file holds the position of every record in the log file, so a record is found by its offset
+ *     in constant time. Both files are created at their full size and filled by writing into the mappings.
+ * </p>
+ *
+ * <p>
+ *     A segment is written by the single writer of the journal and read by any thread,
+ *     readers only look at the records the journal committed.
+ * </p>
+ */
+public class Segment {
+    /** The number of bytes before the frame of a record: its length and its timestamp. */
+    public static final int HEADER_SIZE = Integer.BYTES + Long.BYTES;
+
+    private final long base;
+    private final FileChannel logChannel;
+    private final FileChannel indexChannel;
+    private final MappedByteBuffer log;
+    private final MappedByteBuffer index;
+
+    private int count = 0;
+    private int position = 0;
+    private int synced = 0;
+
+    /**
+     * Opens a segment, creating its files if they do not exist, and recovers the records already written.
+     *
+     * @param _directory the directory of the journal.
+     * @param _base the offset of the first record of the segment.
+     * @param _size the size of the log file in bytes.
+     * @throws IOException if the files cannot be opened or mapped.
+     */
+    public Segment(Path _directory, long _base, int _size) throws IOException {
+        base = _base;
+        logChannel = FileChannel.open(_directory.resolve(Segment.fileName(_base, "log")),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        indexChannel = FileChannel.open(_directory.resolve(Segment.fileName(_base, "idx")),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        int size = (int) Math.max(_size, logChannel.size());
+        log = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        index = indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, (long) (size / (HEADER_SIZE + 2)) * Integer.BYTES);
+
+        this.recover();
+    }
+
+    /**
+     * @param _base the offset of the first record of a segment.
+     * @param _extension the extension of the file.
+     * @return the name of the file, padded so that the files sort by offset
+     */
+    public static String fileName(long _base, String _extension) { return String.format("%020d.%s", _base, _extension); }
+
+    /**
+     * Scans the log file for the records written before the segment was opened and rebuilds their index.
+     */
+    private void recover() {
+        while (position + HEADER_SIZE <= log.capacity() && (count + 1) * Integer.BYTES <= index.capacity()) {
+            int length = log.getInt(position);
+            if (length <= 0 || position + HEADER_SIZE + length > log.capacity()) break;
+
+            index.putInt(count * Integer.BYTES, position);
+            position += HEADER_SIZE + length;
+            count++;
+        }
+        synced = position;
+    }
+
+    /**
+     * @param _frame the frame of a record.
+     * @return true if the record fits in the segment
+     */
+    public boolean fits(ByteBuffer _frame) {
+        return position + HEADER_SIZE + _frame.remaining() <= log.capacity() && (count + 1) * Integer.BYTES <= index.capacity();
+    }
+
+    /**
+     * Appends a record, it is not visible to the readers until the journal commits it.
+     *
+     * @param _timestamp the time the message was sent, in milliseconds since the epoch.
+     * @param _frame the binary frame of the message, which must {@link #fits(ByteBuffer) fit} in the segment.
+     */
+    public void append(long _timestamp, ByteBuffer _frame) {
+        int length = _frame.remaining();
+        log.putLong(position + Integer.BYTES, _timestamp);
+        log.put(position + HEADER_SIZE, _frame, _frame.position(), length);
+        log.putInt(position, length);
+
+        index.putInt(count * Integer.BYTES, position);
+        position += HEADER_SIZE + length;
+        count++;
+    }
+
+    /**
+     * Reads a committed record.
+     *
+     * @param _offset the offset of the record, which must belong to the segment.
+     * @return the record.
+     * @throws StreamCorruptedException if the frame of the record is malformed.
+     */
+    public JournalEntry read(long _offset) throws StreamCorruptedException {
+        if (_offset - base >= count) throw new StreamCorruptedException("missing record " + _offset);
+        int recordPosition = index.getInt((int) (_offset - base) * Integer.BYTES);
+        int length = log.getInt(recordPosition);
+        long timestamp = log.getLong(recordPosition + Integer.BYTES);
+
+        ByteBuffer frame = log.slice(recordPosition + HEADER_SIZE, length);
+        int body = BinaryCodec.peekLength(frame);
+        if (body < 0) throw new StreamCorruptedException("truncated record " + _offset);
+        frame.position(BinaryCodec.varintSize(body));
+        return new JournalEntry(_offset, timestamp, BinaryCodec.decode(frame));
+    }
+
+    /**
+     * Writes the records appended since the last sync to the storage device. <br>
+     * The index is not synced, it is rebuilt from the log file whenever a segment is opened.
+     */
+    public void sync() {
+        if (position == synced) return;
+
+        log.force(synced, position - synced);
+        synced = position;
+    }
+
+    /**
+     * Syncs and closes the files of the segment, the segment can no longer be written.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public void close() throws IOException {
+        this.sync();
+        logChannel.close();
+        indexChannel.close();
+    }
+
+    /** @return the offset of the first record */
+    public long getBase() { return base; }
+
+    /** @return the number of records */
+    public int getCount() { return count; }
+
+    /** @return the number of bytes of the log file in use */
+    public int getSize() { return position; }
+}
@@ -0,0 +1,10 @@
+/**
+ * The com.chat.server.journal package contains the persistent history of the messages of the {@link com.chat.server.Server Server}.
+ *
+ * <p>
+ *     It consists of a {@link com.chat.server.journal.Journal Journal} class that appends the messages to an append-only log,
+ *     committing them in batches on a writer thread of its own, and a {@link com.chat.server.journal.Segment Segment} class
+ *     that maps a file of the log and its offset index in memory.
+ * </p>
+ */
+package com.chat.server.journal;
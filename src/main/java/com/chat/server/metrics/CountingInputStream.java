@@ -0,0 +1,49 @@
+package com.chat.server.metrics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The CountingInputStream class counts the bytes read from a stream in the {@link ServerMetrics} of the server.
+ *
+ * <p>
+ *     It is meant to sit below a buffer, so that the metrics are updated once per read from the socket
+ *     rather than once per byte.
+ * </p>
+ */
+public class CountingInputStream extends FilterInputStream {
+    private final ServerMetrics metrics;
+
+    /**
+     * Creates a new instance of CountingInputStream.
+     *
+     * @param _stream the stream to read from.
+     * @param _metrics the metrics counting the bytes read.
+     */
+    public CountingInputStream(InputStream _stream, ServerMetrics _metrics) {
+        super(_stream);
+        metrics = _metrics;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int read = super.read();
+        if (read >= 0) metrics.bytesIn(1);
+        return read;
+    }
+
+    @Override
+    public int read(byte[] _buffer, int _offset, int _length) throws IOException {
+        int read = super.read(_buffer, _offset, _length);
+        metrics.bytesIn(read);
+        return read;
+    }
+
+    @Override
+    public long skip(long _count) throws IOException {
+        long skipped = super.skip(_count);
+        metrics.bytesIn(skipped);
+        return skipped;
+    }
+}
@@ -0,0 +1,95 @@
+package com.chat.server.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The LatencyHistogram class records non-negative values, such as latencies in nanoseconds or microseconds, and reports their percentiles.
+ *
+ * <p>
+ *     Values are counted in log-linear buckets: values below 16 are exact, larger ones share a bucket with the values
+ *     of the same power of two and the same four following bits, so every percentile is accurate within about 6%. <br>
+ *     Recording increments the bucket of the value, shared only with the threads recording values of the same bucket,
+ *     adds to the count and sum, which are striped {@link LongAdder LongAdders}, and only writes the maximum when it grows,
+ *     so any number of threads can record at once without allocating or contending on a single counter.
+ * </p>
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = SUB_BUCKETS + (Long.SIZE - 1 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong(0);
+
+    /**
+     * Records a value, negative values are recorded as 0.
+     *
+     * @param _value the value to record.
+     */
+    public void record(long _value) {
+        long value = Math.max(0, _value);
+
+        counts.incrementAndGet(LatencyHistogram.bucket(value));
+        count.increment();
+        sum.add(value);
+        if (value > max.get()) max.accumulateAndGet(value, Math::max);
+    }
+
+    /** @return the number of recorded values */
+    public long getCount() { return count.sum(); }
+
+    /** @return the sum of the recorded values */
+    public long getSum() { return sum.sum(); }
+
+    /** @return the largest recorded value */
+    public long getMax() { return max.get(); }
+
+    /**
+     * Gets the value below which the given percentage of the recorded values falls.
+     *
+     * @param _percentile the percentile, between 0 and 100.
+     * @return the upper bound of the bucket containing the percentile, or 0 if nothing was recorded.
+     */
+    public long getPercentile(double _percentile) {
+        long total = count.sum();
+        if (total == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(total * _percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(LatencyHistogram.upperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * @param _value a non-negative value.
+     * @return the index of the bucket of the value
+     */
+    private static int bucket(long _value) {
+        if (_value < SUB_BUCKETS) return (int) _value;
+
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(_value);
+        int sub = (int) (_value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BITS) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @param _bucket the index of a bucket.
+     * @return the largest value counted in the bucket
+     */
+    private static long upperBound(int _bucket) {
+        if (_bucket < SUB_BUCKETS) return _bucket;
+
+        int exponent = (_bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BITS;
+        long sub = (_bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        if (_bucket == BUCKETS - 1) return Long.MAX_VALUE;
+
+        return ((SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+    }
+}
@@ -0,0 +1,212 @@
+package com.chat.server.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * The PrometheusWriter class renders metrics in the Prometheus text exposition format.
+ *
+ * <p>
+ *     The text is written as ASCII straight into a byte array that is kept between renders, numbers included,
+ *     so a scrape allocates next to nothing once the array has grown to the size of a page. <br>
+ *     Names, labels and help texts must be ASCII, label values are escaped.
+ * </p>
+ *
+ * <p>
+ *     A writer is not thread-safe, it is meant to be owned by the single thread serving the scrapes.
+ * </p>
+ */
+public class PrometheusWriter {
+    /** The content type of the text exposition format. */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+    private static final String[] QUANTILE_LABELS = { "0.5", "0.9", "0.99", "0.999" };
+
+    private byte[] buffer = new byte[8192];
+    private int length = 0;
+
+    private final StringBuilder number = new StringBuilder(32);
+    private final byte[] digits = new byte[20];
+
+    /**
+     * Empties the writer to render a new page, keeping its buffer.
+     *
+     * @return this writer.
+     */
+    public PrometheusWriter reset() {
+        length = 0;
+        return this;
+    }
+
+    /**
+     * Writes the help and type lines of a metric.
+     *
+     * @param _name the name of the metric.
+     * @param _type the type of the metric: counter, gauge or summary.
+     * @param _help the description of the metric.
+     * @return this writer.
+     */
+    public PrometheusWriter header(String _name, String _type, String _help) {
+        return this.ascii("# HELP ").ascii(_name).ascii(" ").ascii(_help).ascii("\n")
+                .ascii("# TYPE ").ascii(_name).ascii(" ").ascii(_type).ascii("\n");
+    }
+
+    /**
+     * Writes a sample without labels.
+     *
+     * @param _name the name of the metric.
+     * @param _value the value of the sample.
+     * @return this writer.
+     */
+    public PrometheusWriter sample(String _name, long _value) { return this.ascii(_name).ascii(" ").number(_value).ascii("\n"); }
+
+    /**
+     * Writes a sample without labels.
+     *
+     * @param _name the name of the metric.
+     * @param _value the value of the sample.
+     * @return this writer.
+     */
+    public PrometheusWriter sample(String _name, double _value) { return this.ascii(_name).ascii(" ").number(_value).ascii("\n"); }
+
+    /**
+     * Writes a sample with a single label.
+     *
+     * @param _name the name of the metric.
+     * @param _label the name of the label.
+     * @param _labelValue the value of the label.
+     * @param _value the value of the sample.
+     * @return this writer.
+     */
+    public PrometheusWriter sample(String _name, String _label, String _labelValue, long _value) {
+        return this.ascii(_name).label(_label, _labelValue).ascii(" ").number(_value).ascii("\n");
+    }
+
+    /**
+     * Writes a sample with a single label.
+     *
+     * @param _name the name of the metric.
+     * @param _label the name of the label.
+     * @param _labelValue the value of the label.
+     * @param _value the value of the sample.
+     * @return this writer.
+     */
+    public PrometheusWriter sample(String _name, String _label, String _labelValue, double _value) {
+        return this.ascii(_name).label(_label, _labelValue).ascii(" ").number(_value).ascii("\n");
+    }
+
+    /**
+     * Writes a {@link LatencyHistogram} as a summary with its quantiles, sum and count.
+     *
+     * @param _name the name of the metric.
+     * @param _help the description of the metric.
+     * @param _histogram the histogram.
+     * @param _scale the factor converting the recorded values to the unit of the metric, e.g. 1e-9 from nanoseconds to seconds.
+     * @return this writer.
+     */
+    public PrometheusWriter summary(String _name, String _help, LatencyHistogram _histogram, double _scale) {
+        this.header(_name, "summary", _help);
+        for (int i = 0; i < QUANTILES.length; i++)
+            this.sample(_name, "quantile", QUANTILE_LABELS[i], _histogram.getPercentile(QUANTILES[i] * 100) * _scale);
+
+        this.ascii(_name).ascii("_sum ").number(_histogram.getSum() * _scale).ascii("\n");
+        return this.ascii(_name).ascii("_count ").number(_histogram.getCount()).ascii("\n");
+    }
+
+    /** @return the number of bytes rendered */
+    public int getLength() { return length; }
+
+    /**
+     * Writes the rendered bytes to a stream.
+     *
+     * @param _stream the stream to write to.
+     * @throws IOException if an I/O error occurs.
+     */
+    public void writeTo(OutputStream _stream) throws IOException { _stream.write(buffer, 0, length); }
+
+    /**
+     * Writes a label in braces, escaping its value.
+     *
+     * @param _label the name of the label.
+     * @param _value the value of the label.
+     * @return this writer.
+     */
+    private PrometheusWriter label(String _label, String _value) {
+        this.ascii("{").ascii(_label).ascii("=\"");
+        for (int i = 0; i < _value.length(); i++) {
+            char c = _value.charAt(i);
+            if (c == '\\' || c == '"') this.put((byte) '\\');
+
+            if (c == '\n') this.ascii("\\n");
+            else this.put((byte) ((c < 0x80)? c : '?'));
+        }
+        return this.ascii("\"}");
+    }
+
+    /**
+     * @param _text ASCII text.
+     * @return this writer
+     */
+    private PrometheusWriter ascii(String _text) {
+        this.ensure(_text.length());
+        for (int i = 0; i < _text.length(); i++) buffer[length++] = (byte) _text.charAt(i);
+        return this;
+    }
+
+    /**
+     * @param _value a whole number.
+     * @return this writer
+     */
+    private PrometheusWriter number(long _value) {
+        if (_value == Long.MIN_VALUE) return this.ascii("-9223372036854775808");
+        if (_value < 0) {
+            this.put((byte) '-');
+            _value = -_value;
+        }
+
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + _value % 10);
+            _value /= 10;
+        } while (_value > 0);
+
+        this.ensure(count);
+        while (count > 0) buffer[length++] = digits[--count];
+        return this;
+    }
+
+    /**
+     * @param _value a decimal number, written in the shortest form that reads back the same.
+     * @return this writer
+     */
+    private PrometheusWriter number(double _value) {
+        if (Double.isNaN(_value)) return this.ascii("NaN");
+        if (Double.isInfinite(_value)) return this.ascii((_value > 0)? "+Inf" : "-Inf");
+
+        number.setLength(0);
+        number.append(_value);
+
+        this.ensure(number.length());
+        for (int i = 0; i < number.length(); i++) buffer[length++] = (byte) number.charAt(i);
+        return this;
+    }
+
+    /**
+     * @param _byte an ASCII byte.
+     */
+    private void put(byte _byte) {
+        this.ensure(1);
+        buffer[length++] = _byte;
+    }
+
+    /**
+     * Grows the buffer if it cannot take the given number of bytes.
+     *
+     * @param _bytes the number of bytes about to be written.
+     */
+    private void ensure(int _bytes) {
+        if (length + _bytes > buffer.length) buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + _bytes));
+    }
+}
@@ -0,0 +1,260 @@
+package com.chat.server.metrics;
+
+import com.chat.utils.message.ErrorType;
+import com.chat.utils.message.MessageType;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The ServerMetrics class counts what happens inside a {@link com.chat.server.Server Server}:
+ * connections, {@link com.chat.utils.message.Message Messages} by {@link MessageType}, bytes, errors and latencies.
+ *
+ * <p>
+ *     Counters are striped {@link LongAdder LongAdders} and latencies are recorded in {@link LatencyHistogram LatencyHistograms},
+ *     so the connections update them concurrently without locking or allocating. <br>
+ *     A broadcast is counted once with the number of its recipients rather than once per recipient,
+ *     so that the cost of the metrics does not grow with the fan-out.
+ * </p>
+ *
+ * <p>
+ *     Latencies are recorded in nanoseconds: the handle latency is the time taken to process a message read from a client,
+ *     the fan-out latency is the time taken to queue a broadcast for all its recipients.
+ * </p>
+ *
+ * @see com.chat.server.ServerConnection
+ */
+public class ServerMetrics {
+    private static final MessageType[] MESSAGE_TYPES = MessageType.values();
+    private static final ErrorType[] ERROR_TYPES = ErrorType.values();
+
+    private final long started = System.nanoTime();
+
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder closed = new LongAdder();
+    private final LongAdder slowDisconnects = new LongAdder();
+
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+
+    private final LongAdder[] messagesIn = ServerMetrics.adders(MESSAGE_TYPES.length);
+    private final LongAdder[] messagesOut = ServerMetrics.adders(MESSAGE_TYPES.length);
+    private final LongAdder[] errors = ServerMetrics.adders(ERROR_TYPES.length);
+
+    private final LatencyHistogram handleLatency = new LatencyHistogram();
+    private final LatencyHistogram fanOutLatency = new LatencyHistogram();
+
+    private Totals reported = null;
+
+    /** Counts a connection that was opened. */
+    public void connectionOpened() { opened.increment(); }
+
+    /** Counts a connection that was closed. */
+    public void connectionClosed() { closed.increment(); }
+
+    /** Counts a client disconnected because it did not read its frames fast enough. */
+    public void slowDisconnect() { slowDisconnects.increment(); }
+
+    /**
+     * Counts a {@link com.chat.utils.message.Message Message} read from a client.
+     *
+     * @param _type the type of the message.
+     */
+    public void messageIn(MessageType _type) { messagesIn[_type.ordinal()].increment(); }
+
+    /**
+     * Counts the {@link com.chat.utils.message.Message Messages} of the same type queued for one or more clients.
+     *
+     * @param _type the type of the messages.
+     * @param _count the number of recipients.
+     */
+    public void messagesOut(MessageType _type, int _count) { if (_count > 0) messagesOut[_type.ordinal()].add(_count); }
+
+    /**
+     * Counts an error sent to a client.
+     *
+     * @param _type the type of the error.
+     */
+    public void error(ErrorType _type) { errors[_type.ordinal()].increment(); }
+
+    /**
+     * Counts bytes read from the clients.
+     *
+     * @param _bytes the number of bytes read.
+     */
+    public void bytesIn(long _bytes) { if (_bytes > 0) bytesIn.add(_bytes); }
+
+    /**
+     * Counts bytes written to the clients.
+     *
+     * @param _bytes the number of bytes written.
+     */
+    public void bytesOut(long _bytes) { if (_bytes > 0) bytesOut.add(_bytes); }
+
+    /**
+     * Records the time taken to handle a message read from a client.
+     *
+     * @param _nanos the handle time in nanoseconds.
+     */
+    public void recordHandle(long _nanos) { handleLatency.record(_nanos); }
+
+    /**
+     * Records the time taken to queue a broadcast for all its recipients.
+     *
+     * @param _nanos the fan-out time in nanoseconds.
+     */
+    public void recordFanOut(long _nanos) { fanOutLatency.record(_nanos); }
+
+    /** @return the number of connections opened */
+    public long getConnectionsOpened() { return opened.sum(); }
+
+    /** @return the number of connections closed */
+    public long getConnectionsClosed() { return closed.sum(); }
+
+    /** @return the number of connections currently open */
+    public long getConnections() { return Math.max(0, opened.sum() - closed.sum()); }
+
+    /** @return the number of clients disconnected for being too slow */
+    public long getSlowDisconnects() { return slowDisconnects.sum(); }
+
+    /** @return the number of bytes read from the clients */
+    public long getBytesIn() { return bytesIn.sum(); }
+
+    /** @return the number of bytes written to the clients */
+    public long getBytesOut() { return bytesOut.sum(); }
+
+    /**
+     * @param _type a message type.
+     * @return the number of messages of the type read from the clients
+     */
+    public long getMessagesIn(MessageType _type) { return messagesIn[_type.ordinal()].sum(); }
+
+    /**
+     * @param _type a message type.
+     * @return the number of messages of the type queued for the clients
+     */
+    public long getMessagesOut(MessageType _type) { return messagesOut[_type.ordinal()].sum(); }
+
+    /**
+     * @param _type an error type.
+     * @return the number of errors of the type sent to the clients
+     */
+    public long getErrors(ErrorType _type) { return errors[_type.ordinal()].sum(); }
+
+    /** @return the histogram of the handle latencies, in nanoseconds */
+    public LatencyHistogram getHandleLatency() { return handleLatency; }
+
+    /** @return the histogram of the broadcast fan-out latencies, in nanoseconds */
+    public LatencyHistogram getFanOutLatency() { return fanOutLatency; }
+
+    /** @return the number of seconds since the metrics were created */
+    public long getUptime() { return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started); }
+
+    /**
+     * Describes the metrics in a few lines of text, used by the CLI and the periodic snapshots. <br>
+     * Rates are computed since the previous report, or since the metrics were created for the first one.
+     *
+     * @return the report.
+     */
+    public synchronized String report() {
+        Totals current = this.totals();
+        Totals previous = (reported != null)? reported : new Totals(started, new long[MESSAGE_TYPES.length], new long[MESSAGE_TYPES.length], 0, 0);
+        reported = current;
+
+        double seconds = Math.max(1e-3, (current.time() - previous.time()) / 1e9);
+        StringBuilder report = new StringBuilder(512);
+
+        report.append(String.format("uptime: %d s, connections: %d open, %d opened, %d closed, %d slow disconnected%n",
+                this.getUptime(), this.getConnections(), this.getConnectionsOpened(), this.getConnectionsClosed(), this.getSlowDisconnects()));
+
+        report.append("messages in: ");
+        ServerMetrics.appendRates(report, current.messagesIn(), previous.messagesIn(), seconds);
+        report.append("messages out: ");
+        ServerMetrics.appendRates(report, current.messagesOut(), previous.messagesOut(), seconds);
+
+        report.append(String.format("bytes: %d in (%.0f/s), %d out (%.0f/s)%n",
+                current.bytesIn(), (current.bytesIn() - previous.bytesIn()) / seconds,
+                current.bytesOut(), (current.bytesOut() - previous.bytesOut()) / seconds));
+
+        report.append("errors: ");
+        int listed = 0;
+        for (ErrorType type : ERROR_TYPES) {
+            long count = this.getErrors(type);
+            if (count == 0) continue;
+            report.append((listed++ > 0)? ", " : "").append(type.name()).append(' ').append(count);
+        }
+        report.append((listed == 0)? "none" : "").append(System.lineSeparator());
+
+        ServerMetrics.appendLatency(report, "handle", handleLatency, "messages");
+        ServerMetrics.appendLatency(report, "fan-out", fanOutLatency, "broadcasts");
+        return report.toString().stripTrailing();
+    }
+
+    /**
+     * @return the current totals of the counters that are reported as rates
+     */
+    private Totals totals() {
+        long[] in = new long[MESSAGE_TYPES.length];
+        long[] out = new long[MESSAGE_TYPES.length];
+        for (int i = 0; i < MESSAGE_TYPES.length; i++) {
+            in[i] = messagesIn[i].sum();
+            out[i] = messagesOut[i].sum();
+        }
+        return new Totals(System.nanoTime(), in, out, bytesIn.sum(), bytesOut.sum());
+    }
+
+    /**
+     * Appends the non-zero counters of every {@link MessageType} with their rate.
+     *
+     * @param _report the report.
+     * @param _current the current counters.
+     * @param _previous the counters of the previous report.
+     * @param _seconds the seconds since the previous report.
+     */
+    private static void appendRates(StringBuilder _report, long[] _current, long[] _previous, double _seconds) {
+        int listed = 0;
+        for (int i = 0; i < _current.length; i++) {
+            if (_current[i] == 0) continue;
+            _report.append((listed++ > 0)? ", " : "")
+                    .append(MESSAGE_TYPES[i].name()).append(' ').append(_current[i])
+                    .append(String.format(" (%.1f/s)", (_current[i] - _previous[i]) / _seconds));
+        }
+        _report.append((listed == 0)? "none" : "").append(System.lineSeparator());
+    }
+
+    /**
+     * Appends the percentiles of a histogram of nanoseconds, in microseconds.
+     *
+     * @param _report the report.
+     * @param _name the name of the latency.
+     * @param _histogram the histogram.
+     * @param _unit what the histogram counts.
+     */
+    private static void appendLatency(StringBuilder _report, String _name, LatencyHistogram _histogram, String _unit) {
+        _report.append(String.format("%s: p50 %.1f us, p99 %.1f us, p999 %.1f us, max %.1f us (%d %s)%n", _name,
+                _histogram.getPercentile(50) / 1000.0, _histogram.getPercentile(99) / 1000.0,
+                _histogram.getPercentile(99.9) / 1000.0, _histogram.getMax() / 1000.0,
+                _histogram.getCount(), _unit));
+    }
+
+    /**
+     * @param _length the number of counters.
+     * @return an array of new counters
+     */
+    private static LongAdder[] adders(int _length) {
+        LongAdder[] adders = new LongAdder[_length];
+        for (int i = 0; i < _length; i++) adders[i] = new LongAdder();
+        return adders;
+    }
+
+    /**
+     * The totals of the counters at the time of a report.
+     *
+     * @param time the {@link System#nanoTime()} of the report.
+     * @param messagesIn the messages read by {@link MessageType} ordinal.
+     * @param messagesOut the messages queued by {@link MessageType} ordinal.
+     * @param bytesIn the bytes read.
+     * @param bytesOut the bytes written.
+     */
+    private record Totals(long time, long[] messagesIn, long[] messagesOut, long bytesIn, long bytesOut) {}
+}
@@ -0,0 +1,10 @@
+/**
+ * The com.chat.server.metrics package contains the low-overhead metrics of the {@link com.chat.server.Server Server}.
+ *
+ * <p>
+ *     It consists of a {@link com.chat.server.metrics.ServerMetrics ServerMetrics} class that counts connections,
+ *     messages, bytes and errors with striped counters and a {@link com.chat.server.metrics.LatencyHistogram LatencyHistogram}
+ *     class that records latencies without locking.
+ * </p>
+ */
+package com.chat.server.metrics;
@@ -1,30 +1,44 @@
 package com.chat.utils;
 
+import com.chat.utils.log.AsyncLogger;
+import com.chat.utils.log.LogLevel;
+import com.chat.utils.message.BinaryCodec;
 import com.chat.utils.message.Message;
+import com.chat.utils.message.WireFormat;
 import com.fasterxml.jackson.databind.json.JsonMapper;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 
 /**
  * Utils is a utility class that provides all the utility methods needed.
  * Utility methods are static by nature.
+ *
+ * <p>
+ *     Console and log writes are asynchronous: they are handed to an {@link AsyncLogger} and written by its
+ *     background thread, so that connection threads never wait on a shared lock or on the disk. <br>
+ *     Log lines have a {@link LogLevel}, lines below the level set with {@link #setLogLevel(LogLevel)} are discarded,
+ *     and the placeholder overloads of {@link #logln(LogLevel, String, Object)} only build the line if it is written.
+ * </p>
  */
 public class Utils {
     private static final File log = new File("log.txt");
+    private static final long LOG_MAX_SIZE = 10L << 20;
+    private static final int LOG_MAX_FILES = 3;
+    private static final int LOG_CAPACITY = 1 << 14;
+    private static final int CONSOLE_CAPACITY = 1 << 12;
 
     private static final JsonMapper jsonMapper = new JsonMapper();
-    private static final BufferedWriter consoleWriter = new BufferedWriter(new OutputStreamWriter(System.out));
-    private static BufferedWriter logWriter;
 
-    static {
-        try {
-            if ( !log.createNewFile() ) new FileWriter(log).close();
+    private static final AsyncLogger console = new AsyncLogger("console-writer", System.out, CONSOLE_CAPACITY);
+    private static final AsyncLogger logger = new AsyncLogger("log-writer", log, LOG_MAX_SIZE, LOG_MAX_FILES, LOG_CAPACITY);
 
-            logWriter = new BufferedWriter(new FileWriter(log, true));
-        } catch (IOException e) {
-            Utils.logln("exception: IO exception occurred; " +  e.getMessage());
-        }
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            console.close();
+            logger.close();
+        }));
     }
 
     /**
@@ -35,7 +49,37 @@ public class Utils {
      */
     public static @Nullable String deserializeJson(Message _message) {
         try { return jsonMapper.writeValueAsString(_message); }
-        catch (IOException e) { Utils.logln("exception: IO exception occurred; " +  e.getMessage()); }
+        catch (IOException e) { Utils.logln(LogLevel.ERROR, "exception: IO exception occurred; {}", e.getMessage()); }
+        return null;
+    }
+
+    /**
+     * Encodes a {@link Message} into a newline terminated UTF-8 JSON frame.
+     *
+     * <p>
+     *     The returned buffer is read-only, so the same frame can be encoded once and written to many recipients,
+     *     each one through its own {@link ByteBuffer#duplicate() duplicate}.
+     * </p>
+     *
+     * @param _message The {@link Message} to encode.
+     * @return The encoded frame.
+     */
+    public static @Nullable ByteBuffer encodeFrame(Message _message) { return Utils.encodeFrame(_message, WireFormat.JSON); }
+
+    /**
+     * Encodes a {@link Message} into a frame of the given {@link WireFormat}.
+     *
+     * @param _message The {@link Message} to encode.
+     * @param _format The format of the frame, {@link WireFormat#BINARY BINARY} frames are encoded by {@link BinaryCodec}.
+     * @return The encoded, read-only frame.
+     */
+    public static @Nullable ByteBuffer encodeFrame(Message _message, WireFormat _format) {
+        if (_format == WireFormat.BINARY) return BinaryCodec.encode(_message);
+
+        try {
+            byte[] json = jsonMapper.writeValueAsBytes(_message);
+            return ByteBuffer.allocate(json.length + 1).put(json).put((byte) '\n').flip().asReadOnlyBuffer();
+        } catch (IOException e) { Utils.logln(LogLevel.ERROR, "exception: IO exception occurred; {}", e.getMessage()); }
         return null;
     }
 
@@ -47,7 +91,7 @@ public class Utils {
      */
     public static @Nullable Message serializeJson(String _string) {
         try { return jsonMapper.readValue(_string, Message.class); }
-        catch (IOException e) { Utils.logln("exception: IO exception occurred; " +  e.getMessage()); }
+        catch (IOException e) { Utils.logln(LogLevel.ERROR, "exception: IO exception occurred; {}", e.getMessage()); }
         return null;
     }
 
@@ -57,13 +101,7 @@ public class Utils {
      *
      * @param _string The {@link String} to print on the console.
      */
-    public static void print(String _string) {
-        try {
-            consoleWriter.write(_string);
-            consoleWriter.flush();
-        } catch (NullPointerException e) { Utils.logln("exception: tried to print null value. message: " + e.getMessage()); }
-        catch (IOException e) { Utils.logln("exception: IO exception occurred; " +  e.getMessage()); }
-    }
+    public static void print(String _string) { console.write(_string, false); }
 
     /**
      * Prints a {@link String} on the console and goes to new line. <br>
@@ -71,35 +109,92 @@ public class Utils {
      *
      * @param _string The {@link String} to print on the console.
      */
-    public static void println(String _string) {
-        try {
-            consoleWriter.write(_string + '\n');
-            consoleWriter.flush();
-        } catch (NullPointerException e) { Utils.logln("exception: tried to print null value. message: " + e.getMessage()); }
-        catch (IOException e) { Utils.logln("exception: IO exception occurred; " +  e.getMessage()); }
-    }
+    public static void println(String _string) { console.write(_string, true); }
 
     /**
-     * Writes a {@link String} to the <strong>log.txt</strong> file.
+     * Writes a {@link String} to the <strong>log.txt</strong> file with the {@link LogLevel#INFO INFO} level.
      *
      * @param _string The {@link String} to write to the <strong>log.txt</strong> file.
      */
-    public static void log(String _string) {
-        try {
-            logWriter.write(_string);
-            logWriter.flush();
-        } catch (NullPointerException | IOException e) { e.printStackTrace(); }
-    }
+    public static void log(String _string) { logger.write(LogLevel.INFO, _string, false); }
 
     /**
-     * Writes a {@link String} to the <strong>log.txt</strong> file and goes to new line.
+     * Writes a {@link String} to the <strong>log.txt</strong> file with the {@link LogLevel#INFO INFO} level and goes to new line.
      *
      * @param _string The {@link String} to write to the <strong>log.txt</strong> file.
      */
-    public static void logln(String _string) {
-        try {
-            logWriter.write(_string + '\n');
-            logWriter.flush();
-        } catch (NullPointerException | IOException e) { e.printStackTrace(); }
+    public static void logln(String _string) { logger.write(LogLevel.INFO, _string, true); }
+
+    /**
+     * Writes a line to the <strong>log.txt</strong> file if its {@link LogLevel} is enabled.
+     *
+     * @param _level The level of the line.
+     * @param _string The line to write.
+     */
+    public static void logln(LogLevel _level, String _string) { logger.write(_level, _string, true); }
+
+    /**
+     * Writes a line to the <strong>log.txt</strong> file if its {@link LogLevel} is enabled,
+     * replacing the first <strong>{}</strong> of the pattern with the argument. <br>
+     * Nothing is allocated if the level is disabled.
+     *
+     * @param _level The level of the line.
+     * @param _pattern The line to write, containing a placeholder.
+     * @param _arg The value of the placeholder.
+     */
+    public static void logln(LogLevel _level, String _pattern, Object _arg) {
+        if (logger.isEnabled(_level)) logger.write(Utils.format(_pattern, _arg, null, 1), true);
+    }
+
+    /**
+     * Writes a line to the <strong>log.txt</strong> file if its {@link LogLevel} is enabled,
+     * replacing the first two <strong>{}</strong> of the pattern with the arguments. <br>
+     * Nothing is allocated if the level is disabled.
+     *
+     * @param _level The level of the line.
+     * @param _pattern The line to write, containing the placeholders.
+     * @param _first The value of the first placeholder.
+     * @param _second The value of the second placeholder.
+     */
+    public static void logln(LogLevel _level, String _pattern, Object _first, Object _second) {
+        if (logger.isEnabled(_level)) logger.write(Utils.format(_pattern, _first, _second, 2), true);
+    }
+
+    /**
+     * Checks whether lines of a {@link LogLevel} are written to the <strong>log.txt</strong> file.
+     *
+     * @param _level The level to check.
+     * @return true if the lines are written, false if they are discarded.
+     */
+    public static boolean isLoggable(LogLevel _level) { return logger.isEnabled(_level); }
+
+    /**
+     * Sets the minimum {@link LogLevel} of the lines written to the <strong>log.txt</strong> file.
+     *
+     * @param _level The new level.
+     */
+    public static void setLogLevel(LogLevel _level) { logger.setLevel(_level); }
+
+    /**
+     * Replaces the <strong>{}</strong> placeholders of a pattern with the given arguments.
+     *
+     * @param _pattern The pattern.
+     * @param _first The value of the first placeholder.
+     * @param _second The value of the second placeholder.
+     * @param _count The number of arguments.
+     * @return The formatted line.
+     */
+    private static String format(String _pattern, Object _first, Object _second, int _count) {
+        StringBuilder line = new StringBuilder(_pattern.length() + 32);
+
+        int from = 0;
+        for (int i = 0; i < _count; i++) {
+            int placeholder = _pattern.indexOf("{}", from);
+            if (placeholder < 0) break;
+
+            line.append(_pattern, from, placeholder).append((i == 0)? _first : _second);
+            from = placeholder + 2;
+        }
+        return line.append(_pattern, from, _pattern.length()).toString();
     }
-}
\ No newline at end of file
+}
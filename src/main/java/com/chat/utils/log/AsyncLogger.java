@@ -0,0 +1,270 @@
+package com.chat.utils.log;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The AsyncLogger class writes text to a file or a stream without making the calling threads wait for the I/O.
+ *
+ * <p>
+ *     Callers only append their text to a lock-free {@link LogRingBuffer}, a single background thread takes
+ *     everything that was appended since its last pass, writes it and flushes once. <br>
+ *     If the writer falls behind and the buffer fills up the new lines are dropped and counted,
+ *     the number of dropped lines is written as soon as there is room again.
+ * </p>
+ *
+ * <p>
+ *     Lines below the {@link LogLevel} of the logger are discarded before any work is done,
+ *     callers that build their text should check {@link #isEnabled(LogLevel)} first. <br>
+ *     A logger writing to a file rotates it once it exceeds its maximum size: <strong>log.txt</strong> is renamed
+ *     to <strong>log.1.txt</strong>, the previous rotations are shifted and the oldest one is deleted. <br>
+ *     If the file cannot be opened the logger is disabled: the failure is reported once on the standard error
+ *     and from then on every line is dropped and counted.
+ * </p>
+ *
+ * @see LogLevel
+ * @see LogRingBuffer
+ */
+public class AsyncLogger implements Closeable {
+    private static final long IDLE_PARK = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final LogRingBuffer buffer;
+    private final AtomicLong dropped = new AtomicLong(0);
+
+    private final File file;
+    private final long maxSize;
+    private final int maxFiles;
+
+    private Writer writer;
+    private long size = 0;
+
+    private volatile LogLevel level = LogLevel.INFO;
+    private volatile boolean open = true;
+    private volatile boolean waiting = false;
+    private volatile boolean failed = false;
+
+    private final Thread thread;
+
+    /**
+     * Creates a new instance of AsyncLogger writing to a file, the file is emptied first.
+     *
+     * @param _name the name of the background writer thread.
+     * @param _file the file to write to.
+     * @param _maxSize the number of characters after which the file is rotated.
+     * @param _maxFiles the number of rotated files to keep, 0 to simply empty the file.
+     * @param _capacity the number of lines that can wait for the writer.
+     */
+    public AsyncLogger(String _name, File _file, long _maxSize, int _maxFiles, int _capacity) {
+        buffer = new LogRingBuffer(_capacity);
+        file = _file;
+        maxSize = _maxSize;
+        maxFiles = _maxFiles;
+
+        try { writer = this.openFile(); }
+        catch (IOException e) { this.fail(e); }
+
+        thread = this.start(_name);
+    }
+
+    /**
+     * Creates a new instance of AsyncLogger writing to a stream, such as the console.
+     *
+     * @param _name the name of the background writer thread.
+     * @param _stream the stream to write to.
+     * @param _capacity the number of lines that can wait for the writer.
+     */
+    public AsyncLogger(String _name, OutputStream _stream, int _capacity) {
+        buffer = new LogRingBuffer(_capacity);
+        file = null;
+        maxSize = Long.MAX_VALUE;
+        maxFiles = 0;
+        writer = new BufferedWriter(new OutputStreamWriter(_stream));
+
+        thread = this.start(_name);
+    }
+
+    /**
+     * Checks whether lines of the given {@link LogLevel} are written. <br>
+     * Does not allocate, so it can guard the building of a line on hot paths.
+     *
+     * @param _level the level of the line.
+     * @return true if the line would be written, false if it would be discarded.
+     */
+    public boolean isEnabled(LogLevel _level) { return _level != LogLevel.OFF && _level.compareTo(level) >= 0; }
+
+    /**
+     * Writes text with the given {@link LogLevel}, unless the level is disabled.
+     *
+     * @param _level the level of the text.
+     * @param _text the text to write.
+     * @param _newline whether to go to a new line after the text.
+     */
+    public void write(LogLevel _level, String _text, boolean _newline) { if (this.isEnabled(_level)) this.write(_text, _newline); }
+
+    /**
+     * Writes text regardless of the {@link LogLevel}, used for the console.
+     *
+     * @param _text the text to write.
+     * @param _newline whether to go to a new line after the text.
+     */
+    public void write(String _text, boolean _newline) {
+        if (failed) dropped.incrementAndGet();
+        else if (!buffer.offer(String.valueOf(_text), _newline)) dropped.incrementAndGet();
+        else if (waiting) LockSupport.unpark(thread);
+    }
+
+    /**
+     * Sets the minimum {@link LogLevel} of the lines written.
+     *
+     * @param _level the new level, {@link LogLevel#OFF OFF} to discard everything.
+     */
+    public void setLevel(LogLevel _level) { level = _level; }
+
+    /** @return the minimum {@link LogLevel} of the lines written */
+    public LogLevel getLevel() { return level; }
+
+    /** @return whether the file of the logger could not be opened, so that every line is dropped */
+    public boolean isFailed() { return failed; }
+
+    /** @return the number of lines dropped because the writer fell behind or the file could not be opened */
+    public long getDropped() { return dropped.get(); }
+
+    /**
+     * Stops the logger once every line already appended has been written, waiting at most one second.
+     */
+    @Override
+    public void close() {
+        open = false;
+        LockSupport.unpark(thread);
+
+        try { thread.join(1000); }
+        catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+    /**
+     * Starts the background writer.
+     *
+     * @param _name the name of the writer thread.
+     * @return the writer thread.
+     */
+    private Thread start(String _name) {
+        Thread writerThread = new Thread(this::run, _name);
+        writerThread.setDaemon(true);
+        writerThread.start();
+        return writerThread;
+    }
+
+    /**
+     * Runs the background writer: takes every appended line, flushes once per batch and parks when there is nothing to write.
+     */
+    private void run() {
+        while ((open || !buffer.isEmpty()) && !failed) {
+            try {
+                int lines = 0;
+                while (buffer.poll(this::append)) lines++;
+
+                long lost = dropped.getAndSet(0);
+                if (lost > 0) this.append("warning: " + lost + " log lines dropped", true);
+
+                if (lines > 0 || lost > 0) {
+                    writer.flush();
+                    if (size >= maxSize) this.rotate();
+                    continue;
+                }
+            } catch (IOException e) { e.printStackTrace(); }
+
+            waiting = true;
+            if (open && buffer.isEmpty()) LockSupport.parkNanos(IDLE_PARK);
+            waiting = false;
+        }
+
+        if (failed) {
+            while (buffer.poll((text, newline) -> dropped.incrementAndGet()));
+            return;
+        }
+
+        try { writer.close(); }
+        catch (IOException e) { e.printStackTrace(); }
+    }
+
+    /**
+     * Disables the logger because its file cannot be opened, reporting it once on the standard error.
+     *
+     * @param _exception the reason of the failure.
+     */
+    private void fail(IOException _exception) {
+        writer = null;
+        failed = true;
+        System.err.println("error: log file " + file + " cannot be written, logging is disabled; " + _exception.getMessage());
+    }
+
+    /**
+     * Writes an entry taken from the buffer, only called by the background writer.
+     *
+     * @param _text the text of the entry.
+     * @param _newline whether to go to a new line after the text.
+     * @throws IOException if an I/O error occurs.
+     */
+    private void append(String _text, boolean _newline) throws IOException {
+        writer.write(_text);
+        if (_newline) writer.write('\n');
+        size += _text.length() + (_newline? 1 : 0);
+    }
+
+    /**
+     * Renames the full file to its first rotation, shifting the older rotations, and starts a new file. <br>
+     * If the rotations cannot be moved the file is simply emptied, if it cannot be opened again the logger is disabled.
+     */
+    private void rotate() {
+        try {
+            writer.close();
+
+            if (maxFiles > 0) {
+                for (int i = maxFiles - 1; i >= 1; i--) {
+                    File rotation = this.rotation(i);
+                    if (rotation.exists()) Files.move(rotation.toPath(), this.rotation(i + 1).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                Files.move(file.toPath(), this.rotation(1).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) { e.printStackTrace(); }
+
+        try { writer = this.openFile(); }
+        catch (IOException e) { this.fail(e); }
+    }
+
+    /**
+     * @param _index the index of the rotation, starting from 1.
+     * @return the file of the given rotation, <strong>log.1.txt</strong> for <strong>log.txt</strong>
+     */
+    private File rotation(int _index) {
+        String name = file.getName();
+        int extension = name.lastIndexOf('.');
+
+        return new File(file.getAbsoluteFile().getParentFile(), (extension > 0)?
+                name.substring(0, extension) + "." + _index + name.substring(extension) :
+                name + "." + _index);
+    }
+
+    /**
+     * Opens the file, emptying it.
+     *
+     * @return the writer of the file.
+     * @throws IOException if the file cannot be opened.
+     */
+    private Writer openFile() throws IOException {
+        size = 0;
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, false), StandardCharsets.UTF_8));
+    }
+}
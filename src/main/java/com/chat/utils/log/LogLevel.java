@@ -0,0 +1,23 @@
+package com.chat.utils.log;
+
+/**
+ * The LogLevel enum represents the severity of a line written to the log, from the least to the most severe.
+ *
+ * @see AsyncLogger
+ */
+public enum LogLevel {
+    /** Detailed information useful when debugging. */
+    DEBUG,
+
+    /** Information about the normal operation of the application. */
+    INFO,
+
+    /** Something unexpected that the application recovered from, such as a slow client being disconnected. */
+    WARN,
+
+    /** An exception or a failure. */
+    ERROR,
+
+    /** Used as the level of a logger to disable it. */
+    OFF
+}
@@ -0,0 +1,112 @@
+package com.chat.utils.log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The LogRingBuffer class is the bounded, lock-free queue between the threads writing to an {@link AsyncLogger}
+ * and its single background writer.
+ *
+ * <p>
+ *     Any number of producers claim a slot with a compare-and-set on the tail and publish it by advancing the slot's
+ *     sequence, the single consumer reads the slots in order. <br>
+ *     Producers never wait: when the buffer is full the entry is refused and the caller decides what to do with it.
+ * </p>
+ *
+ * @see AsyncLogger
+ */
+public class LogRingBuffer {
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final String[] entries;
+    private final boolean[] newlines;
+
+    private final AtomicLong tail = new AtomicLong(0);
+    private long head = 0;
+
+    /**
+     * Creates a new instance of LogRingBuffer.
+     *
+     * @param _capacity the number of entries the buffer can hold, rounded up to a power of two.
+     */
+    public LogRingBuffer(int _capacity) {
+        if (_capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+
+        int capacity = Integer.highestOneBit(Math.max(2, _capacity) * 2 - 1);
+        mask = capacity - 1;
+        sequences = new AtomicLongArray(capacity);
+        entries = new String[capacity];
+        newlines = new boolean[capacity];
+
+        for (int i = 0; i < capacity; i++) sequences.set(i, i);
+    }
+
+    /**
+     * Adds an entry to the buffer, can be called by any thread.
+     *
+     * @param _entry the text to write.
+     * @param _newline whether a newline must be written after the text.
+     * @return true if the entry was added, false if the buffer is full.
+     */
+    public boolean offer(String _entry, boolean _newline) {
+        long position = tail.get();
+        while (true) {
+            long difference = sequences.get((int) position & mask) - position;
+
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) break;
+                position = tail.get();
+            }
+            else if (difference < 0) return false;
+            else position = tail.get();
+        }
+
+        int slot = (int) position & mask;
+        entries[slot] = _entry;
+        newlines[slot] = _newline;
+        sequences.set(slot, position + 1);
+        return true;
+    }
+
+    /**
+     * Takes the next entry, must only be called by the consumer.
+     *
+     * @param _writer receives the entry and whether it ends with a newline.
+     * @param <E> the exception thrown by the writer.
+     * @return true if an entry was taken, false if the buffer is empty.
+     * @throws E if the writer fails, the entry is taken anyway.
+     */
+    public <E extends Exception> boolean poll(EntryWriter<E> _writer) throws E {
+        int slot = (int) head & mask;
+        if (sequences.get(slot) != head + 1) return false;
+
+        String entry = entries[slot];
+        boolean newline = newlines[slot];
+        entries[slot] = null;
+        sequences.set(slot, head + mask + 1);
+        head++;
+
+        _writer.write(entry, newline);
+        return true;
+    }
+
+    /** @return true if the buffer has no published entry, must only be called by the consumer */
+    public boolean isEmpty() { return sequences.get((int) head & mask) != head + 1; }
+
+    /**
+     * The EntryWriter interface receives the entries taken from a {@link LogRingBuffer}.
+     *
+     * @param <E> the exception thrown by the writer.
+     */
+    @FunctionalInterface
+    public interface EntryWriter<E extends Exception> {
+        /**
+         * Writes an entry.
+         *
+         * @param _entry the text of the entry.
+         * @param _newline whether a newline must be written after the text.
+         * @throws E if the entry cannot be written.
+         */
+        void write(String _entry, boolean _newline) throws E;
+    }
+}
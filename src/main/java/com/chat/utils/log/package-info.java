@@ -0,0 +1,10 @@
+/**
+ * The com.chat.utils.log package contains the asynchronous logging used by {@link com.chat.utils.Utils Utils}
+ * to write to the console and to the <strong>log.txt</strong> file.
+ *
+ * <p>
+ *     It consists of the {@link com.chat.utils.log.AsyncLogger AsyncLogger} class, its lock-free
+ *     {@link com.chat.utils.log.LogRingBuffer LogRingBuffer} and the {@link com.chat.utils.log.LogLevel LogLevel} enum.
+ * </p>
+ */
+package com.chat.utils.log;
@@ -0,0 +1,262 @@
+package com.chat.utils.message;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The BinaryCodec class encodes and decodes {@link Message Messages} in the {@link WireFormat#BINARY BINARY} wire format.
+ *
+ * <p>
+ *     A frame is laid out as follows, where varints are unsigned LEB128 integers:
+ * </p>
+ *
+ * <ul>
+ *     <li>varint: length of the rest of the frame</li>
+ *     <li>byte: the {@link MessageType} ordinal, or 255 if the type is null</li>
+ *     <li>byte: flags telling which of payload, sender, receiver and sequence are present</li>
+ *     <li>for each present string field: varint length followed by the UTF-8 bytes</li>
+ *     <li>if the sequence is present: the sequence number and the timestamp as varints</li>
+ * </ul>
+ *
+ * <p>
+ *     Strings are length-prefixed, so payloads may contain any character including newlines. <br>
+ *     Since the type is sent as an ordinal, new {@link MessageType MessageTypes} must be added right before
+ *     {@link MessageType#NULL_MESSAGE NULL_MESSAGE}.
+ * </p>
+ *
+ * @see WireFormat
+ */
+public final class BinaryCodec {
+    /** The byte a client sends to request binary frames and the server sends back to accept them. */
+    public static final int PREFACE = 0xB1;
+
+    /** The maximum length of a frame, longer frames are considered corrupted. */
+    public static final int MAX_FRAME_LENGTH = 1 << 16;
+
+    private static final MessageType[] TYPES = MessageType.values();
+    private static final int NULL_TYPE = 0xFF;
+
+    private static final int HAS_PAYLOAD = 1;
+    private static final int HAS_SENDER = 1 << 1;
+    private static final int HAS_RECEIVER = 1 << 2;
+    private static final int HAS_SEQUENCE = 1 << 3;
+
+    private BinaryCodec() {}
+
+    /** @return a read-only buffer containing the {@link #PREFACE} byte */
+    public static ByteBuffer preface() { return ByteBuffer.wrap(new byte[] { (byte) PREFACE }).asReadOnlyBuffer(); }
+
+    /**
+     * Encodes a {@link Message} into a length-prefixed binary frame.
+     *
+     * @param _message the message to encode.
+     * @return the encoded frame, read-only.
+     */
+    public static ByteBuffer encode(Message _message) {
+        byte[] payload = BinaryCodec.bytes(_message.payload());
+        byte[] sender = BinaryCodec.bytes(_message.sender());
+        byte[] receiver = BinaryCodec.bytes(_message.receiver());
+
+        boolean sequenced = _message.sequence() != 0 || _message.timestamp() != 0;
+
+        int length = 2 + BinaryCodec.fieldSize(payload) + BinaryCodec.fieldSize(sender) + BinaryCodec.fieldSize(receiver) +
+                ((sequenced)? BinaryCodec.varlongSize(_message.sequence()) + BinaryCodec.varlongSize(_message.timestamp()) : 0);
+        ByteBuffer frame = ByteBuffer.allocate(BinaryCodec.varintSize(length) + length);
+
+        BinaryCodec.putVarint(frame, length);
+        frame.put((byte) ((_message.type() != null)? _message.type().ordinal() : NULL_TYPE));
+        frame.put((byte) ((payload != null? HAS_PAYLOAD : 0) | (sender != null? HAS_SENDER : 0) | (receiver != null? HAS_RECEIVER : 0) |
+                (sequenced? HAS_SEQUENCE : 0)));
+        BinaryCodec.putField(frame, payload);
+        BinaryCodec.putField(frame, sender);
+        BinaryCodec.putField(frame, receiver);
+        if (sequenced) {
+            BinaryCodec.putVarlong(frame, _message.sequence());
+            BinaryCodec.putVarlong(frame, _message.timestamp());
+        }
+
+        return frame.flip().asReadOnlyBuffer();
+    }
+
+    /**
+     * Decodes the body of a frame, that is a frame without its length prefix.
+     *
+     * @param _body the buffer containing the body, from its position to its limit.
+     * @return the decoded {@link Message}.
+     * @throws StreamCorruptedException if the body is malformed.
+     */
+    public static Message decode(ByteBuffer _body) throws StreamCorruptedException {
+        try {
+            int type = _body.get() & 0xFF;
+            int flags = _body.get();
+
+            if (type != NULL_TYPE && type >= TYPES.length) throw new StreamCorruptedException("unknown message type " + type);
+
+            String payload = ((flags & HAS_PAYLOAD) != 0)? BinaryCodec.getField(_body) : null;
+            String sender = ((flags & HAS_SENDER) != 0)? BinaryCodec.getField(_body) : null;
+            String receiver = ((flags & HAS_RECEIVER) != 0)? BinaryCodec.getField(_body) : null;
+            boolean sequenced = (flags & HAS_SEQUENCE) != 0;
+
+            return new Message(
+                    (type != NULL_TYPE)? TYPES[type] : null,
+                    payload,
+                    sender,
+                    receiver,
+                    (sequenced)? BinaryCodec.getVarlong(_body) : 0,
+                    (sequenced)? BinaryCodec.getVarlong(_body) : 0 );
+        } catch (RuntimeException e) { throw new StreamCorruptedException("malformed frame: " + e.getMessage()); }
+    }
+
+    /**
+     * Reads and decodes the next frame of a stream.
+     *
+     * @param _stream the stream to read from.
+     * @return the decoded {@link Message}, or null if the stream ended before a new frame.
+     * @throws IOException if an I/O error occurs or the frame is malformed.
+     */
+    public static Message read(InputStream _stream) throws IOException {
+        int first = _stream.read();
+        if (first < 0) return null;
+
+        int length = first & 0x7F;
+        for (int shift = 7; (first & 0x80) != 0; shift += 7) {
+            if (shift > 28) throw new StreamCorruptedException("malformed frame length");
+            first = _stream.read();
+            if (first < 0) throw new EOFException();
+            length |= (first & 0x7F) << shift;
+        }
+
+        if (length > MAX_FRAME_LENGTH) throw new StreamCorruptedException("frame exceeded " + MAX_FRAME_LENGTH + " bytes");
+
+        byte[] body = _stream.readNBytes(length);
+        if (body.length < length) throw new EOFException();
+
+        return BinaryCodec.decode(ByteBuffer.wrap(body));
+    }
+
+    /**
+     * Reads the length prefix at the position of a buffer without consuming it.
+     *
+     * @param _buffer the buffer containing the start of a frame.
+     * @return the length of the frame body, or -1 if the prefix is not complete yet.
+     * @throws StreamCorruptedException if the prefix is malformed or the frame too long.
+     */
+    public static int peekLength(ByteBuffer _buffer) throws StreamCorruptedException {
+        int length = 0;
+        for (int i = 0, shift = 0; _buffer.position() + i < _buffer.limit(); i++, shift += 7) {
+            if (shift > 28) throw new StreamCorruptedException("malformed frame length");
+
+            int next = _buffer.get(_buffer.position() + i);
+            length |= (next & 0x7F) << shift;
+
+            if ((next & 0x80) == 0) {
+                if (length > MAX_FRAME_LENGTH) throw new StreamCorruptedException("frame exceeded " + MAX_FRAME_LENGTH + " bytes");
+                return length;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param _value an unsigned integer.
+     * @return the number of bytes of the varint encoding of the value
+     */
+    public static int varintSize(int _value) {
+        int size = 1;
+        while ((_value >>>= 7) != 0) size++;
+        return size;
+    }
+
+    /**
+     * Writes an unsigned integer as a varint.
+     *
+     * @param _buffer the buffer to write to.
+     * @param _value the value to write.
+     */
+    private static void putVarint(ByteBuffer _buffer, int _value) {
+        while ((_value & ~0x7F) != 0) {
+            _buffer.put((byte) ((_value & 0x7F) | 0x80));
+            _value >>>= 7;
+        }
+        _buffer.put((byte) _value);
+    }
+
+    /**
+     * @param _value an unsigned long.
+     * @return the number of bytes of the varint encoding of the value
+     */
+    private static int varlongSize(long _value) {
+        int size = 1;
+        while ((_value >>>= 7) != 0) size++;
+        return size;
+    }
+
+    /**
+     * Writes an unsigned long as a varint.
+     *
+     * @param _buffer the buffer to write to.
+     * @param _value the value to write.
+     */
+    private static void putVarlong(ByteBuffer _buffer, long _value) {
+        while ((_value & ~0x7FL) != 0) {
+            _buffer.put((byte) ((_value & 0x7F) | 0x80));
+            _value >>>= 7;
+        }
+        _buffer.put((byte) _value);
+    }
+
+    /**
+     * Reads a varint of up to 64 bits.
+     *
+     * @param _buffer the buffer to read from.
+     * @return the value read.
+     */
+    private static long getVarlong(ByteBuffer _buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int next = _buffer.get();
+            value |= (long) (next & 0x7F) << shift;
+            if ((next & 0x80) == 0) return value;
+            if (shift >= 63) throw new IllegalStateException("malformed varint");
+        }
+    }
+
+    /**
+     * Reads a varint.
+     *
+     * @param _buffer the buffer to read from.
+     * @return the value read.
+     */
+    private static int getVarint(ByteBuffer _buffer) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int next = _buffer.get();
+            value |= (next & 0x7F) << shift;
+            if ((next & 0x80) == 0) return value;
+            if (shift >= 28) throw new IllegalStateException("malformed varint");
+        }
+    }
+
+    private static byte[] bytes(String _string) { return (_string != null)? _string.getBytes(StandardCharsets.UTF_8) : null; }
+
+    private static int fieldSize(byte[] _field) { return (_field != null)? BinaryCodec.varintSize(_field.length) + _field.length : 0; }
+
+    private static void putField(ByteBuffer _buffer, byte[] _field) {
+        if (_field == null) return;
+        BinaryCodec.putVarint(_buffer, _field.length);
+        _buffer.put(_field);
+    }
+
+    private static String getField(ByteBuffer _buffer) {
+        int length = BinaryCodec.getVarint(_buffer);
+        if (length > _buffer.remaining()) throw new IllegalStateException("field exceeds frame");
+
+        byte[] field = new byte[length];
+        _buffer.get(field);
+        return new String(field, StandardCharsets.UTF_8);
+    }
+}
@@ -20,5 +20,26 @@ public enum ErrorType {
     CLIENT_MUTED,
 
     /** An error message indicating that the recipient of the {@link Message} could not be found. */
-    RECEIVER_NOT_FOUND
+    RECEIVER_NOT_FOUND,
+
+    /** An error message indicating that the name of the room requested by the {@link com.chat.client.Client Client} is not allowed. */
+    ROOM_NOT_ALLOWED,
+
+    /** An error message indicating that the {@link com.chat.client.Client Client} is not a member of the room. */
+    ROOM_NOT_JOINED,
+
+    /** An error message indicating that the node of the cluster deciding on the requested name could not be reached. */
+    NODE_UNAVAILABLE,
+
+    /** An error message indicating that the server keeps no history of the requested chat or that the requested cursor is malformed. */
+    HISTORY_UNAVAILABLE,
+
+    /** An error message indicating that the server is replaying too many histories, the request should be sent again later. */
+    HISTORY_BUSY,
+
+    /** An error message indicating that the {@link com.chat.client.Client Client} would subscribe to the presence of too many clients. */
+    SUBSCRIPTIONS_EXCEEDED,
+
+    /** An error message indicating that the {@link com.chat.client.Client Client} would be a member of too many rooms. */
+    ROOMS_EXCEEDED
 }
@@ -1,5 +1,7 @@
 package com.chat.utils.message;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 /**
  * Message is the POJO that gets serialized and deserialized to exchange information from {@link com.chat.server.Server Server}
  * to {@link com.chat.client.Client Client} and vice versa.
@@ -11,10 +13,22 @@ package com.chat.utils.message;
  * @param payload the effective contents of the message
  * @param sender the sender of the message
  * @param receiver the recipient of the message
+ * @param sequence the number the server gave the message within its chat, 0 if it has none
+ * @param timestamp the time the server numbered the message, in milliseconds since the epoch, 0 if it has none
  */
-public record Message (MessageType type, String payload, String sender, String receiver) {
+public record Message (MessageType type, String payload, String sender, String receiver,
+                       @JsonInclude(JsonInclude.Include.NON_DEFAULT) long sequence,
+                       @JsonInclude(JsonInclude.Include.NON_DEFAULT) long timestamp) {
     public Message() { this(null, null, null, null); }
+    public Message(MessageType type, String payload, String sender, String receiver) { this(type, payload, sender, receiver, 0, 0); }
     public Message(MessageType type) { this(type, null, null, null); }
     public Message(MessageType type, String payload) { this(type, payload, null, null); }
     public Message(MessageType type, String payload, String sender) { this(type, payload, sender, null); }
+
+    /**
+     * @param _sequence the sequence number of the message.
+     * @param _timestamp the time the message was numbered.
+     * @return a copy of this message with the given sequence number and timestamp
+     */
+    public Message withSequence(long _sequence, long _timestamp) { return new Message(type, payload, sender, receiver, _sequence, _timestamp); }
 }
\ No newline at end of file
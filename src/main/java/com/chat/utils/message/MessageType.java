@@ -3,6 +3,10 @@ package com.chat.utils.message;
 /**
  * The message type enum represents the purpose of the {@link Message Message}.
  *
+ * <p>
+ *     Binary frames identify the type by its ordinal, new types must be added right before {@link #NULL_MESSAGE}.
+ * </p>
+ *
  * @see Message
  * @see ErrorType
  */
@@ -12,6 +16,7 @@ public enum MessageType {
      * <ul>
      *     <li>payload: client's new name</li>
      *     <li>sender: client's old name</li>
+     *     <li>receiver: version of the list of clients the client last received, null, or LAZY to only receive the presence of the clients it subscribes to</li>
      * </ul>
      * */
     CLIENT_SET_NAME,
@@ -71,12 +76,14 @@ public enum MessageType {
      * A {@link Message} from the {@link com.chat.server.Server Server} approving a {@link com.chat.client.Client Client}'s request to set their name.
      * <ul>
      *     <li>payload: name approved</li>
+     *     <li>timestamp: the time of the server when the name was approved</li>
      * </ul>
      * */
     SERVER_APPROVE_NAME,
 
     /**
-     * A {@link Message} from the {@link com.chat.server.Server Server} sending a list of all connected clients to a {@link com.chat.client.Client Client}.
+     * A {@link Message} from the {@link com.chat.server.Server Server} sending a list of all connected clients to a {@link com.chat.client.Client Client},
+     * sent by servers that do not version the list of clients.
      * <ul>
      *     <li>payload: client names</li>
      * </ul>
@@ -116,6 +123,218 @@ public enum MessageType {
      * */
     SERVER_CLOSE,
 
+    /**
+     * A {@link Message} from a {@link com.chat.client.Client Client} requesting to join a room, the room is created if it does not exist.
+     * <ul>
+     *     <li>payload: room's name</li>
+     *     <li>sender: client's name</li>
+     * </ul>
+     * */
+    CLIENT_JOIN_ROOM,
+
+    /**
+     * A {@link Message} from a {@link com.chat.client.Client Client} requesting to leave a room.
+     * <ul>
+     *     <li>payload: room's name</li>
+     *     <li>sender: client's name</li>
+     * </ul>
+     * */
+    CLIENT_LEAVE_ROOM,
+
+    /**
+     * A {@link Message} from a {@link com.chat.client.Client Client} requesting to send a message to the members of a room.
+     * <ul>
+     *     <li>payload: message contents</li>
+     *     <li>sender: client's name</li>
+     *     <li>receiver: room's name</li>
+     * </ul>
+     * */
+    CLIENT_SEND_ROOM,
+
+    /**
+     * A {@link Message} from the {@link com.chat.server.Server Server} relaying a room message to the other members of the room.
+     * <ul>
+     *     <li>payload: message contents</li>
+     *     <li>sender: sender name</li>
+     *     <li>receiver: room's name</li>
+     * </ul>
+     * */
+    SERVER_SEND_ROOM,
+
+    /**
+     * A {@link Message} from the {@link com.chat.server.Server Server} informing the members of a room, including the new one,
+     * that a {@link com.chat.client.Client Client} joined it.
+     * <ul>
+     *     <li>payload: member's name</li>
+     *     <li>receiver: room's name</li>
+     * </ul>
+     * */
+    SERVER_JOIN_ROOM,
+
+    /**
+     * A {@link Message} from the {@link com.chat.server.Server Server} informing the members of a room, including the one leaving,
+     * that a {@link com.chat.client.Client Client} left it.
+     * <ul>
+     *     <li>payload: member's name</li>
+     *     <li>receiver: room's name</li>
+     * </ul>
+     * */
+    SERVER_LEAVE_ROOM,
+
+    /**
+     * A {@link Message} from the {@link com.chat.server.Server Server} sending a chunk of the list of the other members of a room to a {@link com.chat.client.Client Client} that joined it.
+     * <ul>
+     *     <li>payload: member names</li>
+     *     <li>receiver: room's name</li>
+     * </ul>
+     * */
+    SERVER_SEND_ROOM_MEMBERS,
+
+    /**
+     * A {@link Message} from a node of a {@link com.chat.server.Cluster Cluster} introducing itself to another node, it is the first message of a peer link.
+     * <ul>
+     *     <li>payload: node's address</li>
+     * </ul>
+     * */
+    NODE_HELLO,
+
+    /**
+     * A {@link Message} from a node of a {@link com.chat.server.Cluster Cluster} asking the node that owns a name to reserve it.
+     * <ul>
+     *     <li>payload: requested name</li>
+     *     <li>sender: requesting node's address</li>
+     *     <li>receiver: request's token</li>
+     * </ul>
+     * */
+    NODE_RESERVE_NAME,
+
+    /**
+     * A {@link Message} from the node of a {@link com.chat.server.Cluster Cluster} that owns a name, answering that it was reserved.
+     * <ul>
+     *     <li>payload: requested name</li>
+     *     <li>receiver: request's token</li>
+     * </ul>
+     * */
+    NODE_NAME_RESERVED,
+
+    /**
+     * A {@link Message} from the node of a {@link com.chat.server.Cluster Cluster} that owns a name, answering that it is already reserved.
+     * <ul>
+     *     <li>payload: requested name</li>
+     *     <li>receiver: request's token</li>
+     * </ul>
+     * */
+    NODE_NAME_REFUSED,
+
+    /**
+     * A {@link Message} from a node of a {@link com.chat.server.Cluster Cluster} telling the node that owns a name that it no longer uses it.
+     * <ul>
+     *     <li>payload: released name</li>
+     *     <li>sender: releasing node's address</li>
+     * </ul>
+     * */
+    NODE_RELEASE_NAME,
+
+    /**
+     * A {@link Message} from the client requesting the history of a chat, one page at a time.
+     * <ul>
+     *     <li>payload: cursor returned by the previous page, or null to start from the oldest message</li>
+     *     <li>sender: client's name</li>
+     *     <li>receiver: chat's name, PUBLIC or the name of another client</li>
+     * </ul>
+     * */
+    CLIENT_REQUEST_HISTORY,
+
+    /**
+     * A {@link Message} from the server containing a message of the history of a chat.
+     * <ul>
+     *     <li>payload: message</li>
+     *     <li>sender: writer's name</li>
+     *     <li>receiver: chat's name</li>
+     * </ul>
+     * */
+    SERVER_SEND_HISTORY,
+
+    /**
+     * A {@link Message} from the server ending a page of the history of a chat when more messages follow.
+     * <ul>
+     *     <li>payload: cursor of the next page</li>
+     *     <li>receiver: chat's name</li>
+     * </ul>
+     * */
+    SERVER_HISTORY_PAGE,
+
+    /**
+     * A {@link Message} from the server ending the history of a chat.
+     * <ul>
+     *     <li>payload: cursor to request the messages sent from now on</li>
+     *     <li>receiver: chat's name</li>
+     * </ul>
+     * */
+    SERVER_HISTORY_END,
+
+    /**
+     * A {@link Message} from the server containing a chunk of a snapshot of the list of clients, the chunks of a snapshot are sent together.
+     * <ul>
+     *     <li>payload: client names</li>
+     * </ul>
+     * */
+    SERVER_PRESENCE_SNAPSHOT,
+
+    /**
+     * A {@link Message} from the server ending the snapshot or the changes of the list of clients sent when the name is first set.
+     * <ul>
+     *     <li>payload: version of the list of clients</li>
+     * </ul>
+     * */
+    SERVER_PRESENCE_VERSION,
+
+    /**
+     * A {@link Message} from the server telling all clients which clients joined and left since the previous batch.
+     * <ul>
+     *     <li>payload: client names, each preceded by + if it joined or - if it left</li>
+     * </ul>
+     * */
+    SERVER_PRESENCE_BATCH,
+
+    /**
+     * A {@link Message} from a client subscribing to the presence of other clients, sent by clients that set their name with the LAZY cursor.
+     * <ul>
+     *     <li>payload: client names</li>
+     *     <li>sender: client's name</li>
+     * </ul>
+     * */
+    CLIENT_SUBSCRIBE_PRESENCE,
+
+    /**
+     * A {@link Message} from a client unsubscribing from the presence of other clients.
+     * <ul>
+     *     <li>payload: client names</li>
+     *     <li>sender: client's name</li>
+     * </ul>
+     * */
+    CLIENT_UNSUBSCRIBE_PRESENCE,
+
+    /**
+     * A {@link Message} from a client searching the names of the clients online, one page at a time.
+     * <ul>
+     *     <li>payload: prefix of the names</li>
+     *     <li>sender: client's name</li>
+     *     <li>receiver: cursor returned by the previous page, or null for the first page</li>
+     * </ul>
+     * */
+    CLIENT_SEARCH_CLIENTS,
+
+    /**
+     * A {@link Message} from the server containing a page of the names of the clients online that start with the searched prefix.
+     * <ul>
+     *     <li>payload: client names</li>
+     *     <li>sender: searched prefix</li>
+     *     <li>receiver: cursor of the next page, or null if it is the last page</li>
+     * </ul>
+     * */
+    SERVER_SEARCH_CLIENTS,
+
     /**
      * A null message.
      * */
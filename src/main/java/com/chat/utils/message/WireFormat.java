@@ -0,0 +1,22 @@
+package com.chat.utils.message;
+
+/**
+ * The WireFormat enum represents how {@link Message Messages} are encoded on the connection between
+ * {@link com.chat.client.Client Client} and {@link com.chat.server.Server Server}.
+ *
+ * <p>
+ *     Every connection starts in {@link #JSON}. A client that wants the {@link #BINARY} format sends the
+ *     {@link BinaryCodec#PREFACE preface} byte before its first frame, the server answers with the same byte and
+ *     from then on both directions use binary frames. Clients that do not send the preface keep using JSON.
+ * </p>
+ *
+ * @see Message
+ * @see BinaryCodec
+ */
+public enum WireFormat {
+    /** Newline terminated UTF-8 JSON frames. */
+    JSON,
+
+    /** Length-prefixed binary frames, see {@link BinaryCodec}. */
+    BINARY
+}
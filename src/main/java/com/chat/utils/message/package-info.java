@@ -7,5 +7,10 @@
  *     It consists of a {@link com.chat.utils.message.Message Message} class and the enums
  *     {@link com.chat.utils.message.MessageType MessageType} and {@link com.chat.utils.message.ErrorType ErrorType}.
  * </p>
+ *
+ * <p>
+ *     Messages are exchanged in one of the {@link com.chat.utils.message.WireFormat WireFormat}s, the binary one being
+ *     encoded and decoded by the {@link com.chat.utils.message.BinaryCodec BinaryCodec}.
+ * </p>
  */
 package com.chat.utils.message;
@@ -8,5 +8,9 @@
  *     sub-package containing the {@link com.chat.utils.message.Message Message} class that
  *     client and server use to communicate with each other.
  * </p>
+ *
+ * <p>
+ *     The {@link com.chat.utils.log log} sub-package contains the asynchronous logger behind the console and log methods of Utils.
+ * </p>
  */
 package com.chat.utils;
@@ -3,6 +3,8 @@ module com.chat {
     requires javafx.fxml;
     requires com.fasterxml.jackson.databind;
     requires org.jetbrains.annotations;
+    requires jdk.httpserver;
+    requires jdk.management;
 
     opens com.chat.utils.message to com.fasterxml.jackson.databind;
 
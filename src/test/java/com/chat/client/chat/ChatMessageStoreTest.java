@@ -0,0 +1,115 @@
+package com.chat.client.chat;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatMessageStoreTest {
+    @TempDir
+    Path directory;
+
+    private static ChatMessage message(long _sequence) {
+        return new ChatMessage("message " + _sequence, "alice", MessageScope.PUBLIC, MessageAuthor.RECEIVED, _sequence, 1000 + _sequence);
+    }
+
+    private static List<Long> sequences(List<ChatMessage> _messages) { return _messages.stream().map(ChatMessage::sequence).toList(); }
+
+    @Test
+    void keepsTheWindowInMemory() {
+        ChatMessageStore store = new ChatMessageStore(ChatMessageStore.SPILL_BATCH, null);
+        for (int i = 0; i < ChatMessageStore.SPILL_BATCH; i++) assertEquals(i, store.add(message(i)));
+
+        assertEquals(ChatMessageStore.SPILL_BATCH, store.getRecent().size());
+        assertEquals(0, store.getFirstIndex());
+        assertEquals(0, store.getOldestIndex());
+    }
+
+    @Test
+    void forgetsEvictedMessagesWithoutASpillDirectory() {
+        ChatMessageStore store = new ChatMessageStore(ChatMessageStore.SPILL_BATCH, null);
+        for (int i = 0; i <= ChatMessageStore.SPILL_BATCH; i++) store.add(message(i));
+
+        assertEquals(ChatMessageStore.SPILL_BATCH, store.getFirstIndex());
+        assertEquals(ChatMessageStore.SPILL_BATCH, store.getOldestIndex());
+        assertEquals(List.of((long) ChatMessageStore.SPILL_BATCH), sequences(store.getFrom(0)));
+    }
+
+    @Test
+    void pagesSpilledMessagesBackFromTheFile() {
+        int window = 2 * ChatMessageStore.SPILL_BATCH;
+        ChatMessageStore store = new ChatMessageStore(window, directory);
+        for (int i = 0; i < 5 * window; i++) store.add(message(i));
+
+        assertEquals(0, store.getOldestIndex());
+        assertTrue(store.getFirstIndex() > 0);
+        assertEquals(window, store.getRecent().size());
+
+        List<ChatMessage> all = store.getFrom(0);
+        assertEquals(5 * window, all.size());
+        for (int i = 0; i < all.size(); i++) assertEquals(message(i), all.get(i));
+
+        assertEquals(List.of(10L, 11L), sequences(store.getFrom(10)).subList(0, 2));
+        store.close();
+        assertEquals(store.getFirstIndex(), store.getOldestIndex());
+    }
+
+    @Test
+    void insertsNumberedMessagesInOrder() {
+        ChatMessageStore store = new ChatMessageStore(ChatMessageStore.SPILL_BATCH, null);
+        store.add(message(10));
+        store.add(message(30));
+        assertEquals(1, store.insert(message(20)));
+        assertEquals(0, store.insert(message(5)));
+
+        assertEquals(List.of(5L, 10L, 20L, 30L), sequences(store.getRecent()));
+    }
+
+    @Test
+    void clearDropsEveryMessage() {
+        ChatMessageStore store = new ChatMessageStore(ChatMessageStore.SPILL_BATCH, directory);
+        for (int i = 0; i < 3 * ChatMessageStore.SPILL_BATCH; i++) store.add(message(i));
+        store.clear();
+
+        assertTrue(store.getRecent().isEmpty());
+        assertTrue(store.getFrom(0).isEmpty());
+        assertEquals(store.getSize(), store.getOldestIndex());
+
+        store.add(message(1));
+        assertEquals(1, store.getRecent().size());
+    }
+
+    @Test
+    void readersNeverSeeATornWindow() throws InterruptedException {
+        ChatMessageStore store = new ChatMessageStore(ChatMessageStore.SPILL_BATCH, null);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 200_000; i++) store.add(message(i));
+            writing.set(false);
+        });
+
+        AtomicReference<String> torn = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (writing.get() && torn.get() == null) {
+                List<ChatMessage> window = store.getRecent();
+                for (int i = 1; i < window.size(); i++) {
+                    if (window.get(i) == null || window.get(i).sequence() != window.get(i - 1).sequence() + 1) {
+                        torn.set("torn window at " + i + ": " + sequences(window.subList(0, i)));
+                        break;
+                    }
+                }
+            }
+        });
+
+        writer.start();
+        reader.start();
+        writer.join();
+        reader.join();
+        assertNull(torn.get());
+    }
+}
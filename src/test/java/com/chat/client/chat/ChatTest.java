@@ -0,0 +1,65 @@
+package com.chat.client.chat;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatTest {
+    private static boolean receive(Chat _chat, String _text, long _sequence) {
+        return _chat.write(_text, "alice", MessageScope.PUBLIC, MessageAuthor.RECEIVED, _sequence, 0);
+    }
+
+    @Test
+    void dropsMessagesItAlreadyHolds() {
+        Chat chat = new Chat("PUBLIC");
+        assertTrue(receive(chat, "one", 10));
+        assertFalse(receive(chat, "one again", 10));
+
+        assertEquals(1, chat.getMessages().size());
+    }
+
+    @Test
+    void keepsNumberedMessagesInOrder() {
+        Chat chat = new Chat("PUBLIC");
+        receive(chat, "three", 30);
+        receive(chat, "one", 10);
+        receive(chat, "two", 20);
+
+        assertEquals(List.of("one", "two", "three"), chat.getMessages().stream().map(ChatMessage::message).toList());
+    }
+
+    @Test
+    void neverDropsUnnumberedMessages() {
+        Chat chat = new Chat("PUBLIC");
+        chat.write("local", "me", MessageScope.PUBLIC, MessageAuthor.SENT);
+        assertTrue(receive(chat, "unnumbered", 0));
+        assertTrue(receive(chat, "unnumbered", 0));
+
+        assertEquals(3, chat.getMessages().size());
+    }
+
+    @Test
+    void forgetsNumbersOlderThanTheWindow() {
+        Chat chat = new Chat("PUBLIC");
+        for (int i = 1; i <= Chat.DEDUP_WINDOW + 1; i++) receive(chat, "message", i);
+
+        assertTrue(receive(chat, "forgotten", 1));
+        assertFalse(receive(chat, "remembered", Chat.DEDUP_WINDOW + 1));
+    }
+
+    @Test
+    void publishesTheIndexOfEveryWrite() {
+        Chat chat = new Chat("PUBLIC");
+        List<Long> indexes = new ArrayList<>();
+        chat.addListener(update -> indexes.add(update.index()));
+
+        receive(chat, "two", 20);
+        receive(chat, "one", 10);
+        receive(chat, "duplicate", 10);
+
+        assertEquals(List.of(0L, 0L), indexes);
+    }
+}
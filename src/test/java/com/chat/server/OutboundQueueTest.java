@@ -0,0 +1,93 @@
+package com.chat.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboundQueueTest {
+    private static OutboundQueue queue(int _capacity, OverflowPolicy _policy) {
+        return new OutboundQueue(_capacity, _policy, 50, 0, new FlushStats());
+    }
+
+    private static ByteBuffer frame(int _id) { return ByteBuffer.wrap(new byte[] { (byte) _id }); }
+
+    @Test
+    void dropOldestKeepsTheNewestFrames() {
+        OutboundQueue queue = queue(2, OverflowPolicy.DROP_OLDEST);
+        for (int i = 0; i < 5; i++) assertTrue(queue.offer(frame(i), false));
+
+        assertEquals(2, queue.getDepth());
+        assertEquals(3, queue.getDropped());
+        assertEquals(3, queue.poll().get(0));
+        assertEquals(4, queue.poll().get(0));
+        assertNull(queue.poll());
+    }
+
+    @Test
+    void dropOldestGivesBackTheRoomOfTakenFrames() {
+        OutboundQueue queue = queue(2, OverflowPolicy.DROP_OLDEST);
+        queue.offer(frame(0), false);
+        queue.offer(frame(1), false);
+        queue.offer(frame(2), false);
+        queue.poll();
+        queue.poll();
+
+        assertTrue(queue.offer(frame(3), false));
+        assertTrue(queue.offer(frame(4), false));
+        assertEquals(1, queue.getDropped());
+        assertEquals(2, queue.getDepth());
+    }
+
+    @Test
+    void disconnectRefusesAFullQueue() {
+        OutboundQueue queue = queue(1, OverflowPolicy.DISCONNECT);
+        assertTrue(queue.offer(frame(0), true));
+        assertFalse(queue.offer(frame(1), true));
+
+        queue.poll();
+        assertTrue(queue.offer(frame(2), true));
+    }
+
+    @Test
+    void blockWaitsOnlyWhenAllowed() {
+        OutboundQueue queue = queue(1, OverflowPolicy.BLOCK);
+        assertTrue(queue.offer(frame(0), false));
+        assertFalse(queue.offer(frame(1), false));
+
+        long start = System.nanoTime();
+        assertFalse(queue.offer(frame(1), true));
+        assertTrue(System.nanoTime() - start >= 40_000_000L);
+    }
+
+    @Test
+    void blockedSenderGetsTheRoomOfATakenFrame() throws InterruptedException {
+        OutboundQueue queue = new OutboundQueue(1, OverflowPolicy.BLOCK, 5000, 0, new FlushStats());
+        queue.offer(frame(0), false);
+
+        Thread writer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+                queue.take();
+            } catch (InterruptedException ignored) {}
+        });
+        writer.start();
+
+        assertTrue(queue.offer(frame(1), true));
+        writer.join();
+        assertEquals(1, queue.getDepth());
+    }
+
+    @Test
+    void closeDrainsQueuedFramesBeforeTheCloseFrame() throws InterruptedException {
+        OutboundQueue queue = queue(4, OverflowPolicy.DROP_OLDEST);
+        queue.offer(frame(0), false);
+        queue.close();
+        queue.offer(frame(1), false);
+
+        assertEquals(0, queue.take().get(0));
+        assertSame(OutboundQueue.CLOSE, queue.take());
+        assertNull(queue.poll());
+    }
+}
@@ -0,0 +1,171 @@
+package com.chat.server;
+
+import com.chat.server.metrics.ServerMetrics;
+import com.chat.utils.message.BinaryCodec;
+import com.chat.utils.message.Message;
+import com.chat.utils.message.MessageType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PresenceTest {
+    private final Presence presence = new Presence(new ClientRegistry(), 60_000);
+
+    @AfterEach
+    void close() { presence.close(); }
+
+    /**
+     * Syncs a client and returns the messages it is written.
+     */
+    private List<Message> sync(String _cursor, String _name) {
+        List<Message> written = new ArrayList<>();
+        presence.sync(_cursor, _name, written::add);
+        return written;
+    }
+
+    private static List<String> snapshot(List<Message> _written) {
+        List<String> names = new ArrayList<>();
+        for (Message message : _written)
+            if (message.type() == MessageType.SERVER_PRESENCE_SNAPSHOT && !message.payload().isEmpty())
+                names.addAll(Arrays.asList(message.payload().split(",")));
+        return names;
+    }
+
+    private static String version(List<Message> _written) {
+        Message last = _written.get(_written.size() - 1);
+        assertEquals(MessageType.SERVER_PRESENCE_VERSION, last.type());
+        return last.payload();
+    }
+
+    private static List<String> changes(List<Message> _written) {
+        return _written.stream().filter(message -> message.type() == MessageType.SERVER_PRESENCE_BATCH).map(Message::payload).toList();
+    }
+
+    @Test
+    void joinAndLeaveWithinABatchCancel() {
+        presence.add("alice");
+        presence.remove("alice");
+        presence.flush();
+
+        assertEquals(2, presence.getCancelled());
+        assertEquals(0, presence.getBatches());
+        assertEquals(0, presence.getVersion());
+    }
+
+    @Test
+    void snapshotLeavesOutTheOwnName() {
+        presence.add("alice");
+        presence.add("bob");
+
+        List<Message> written = sync(null, "bob");
+        assertEquals(List.of("alice"), snapshot(written));
+        assertEquals(presence.getVersion(), Long.parseLong(version(written)));
+    }
+
+    @Test
+    void joinPendingAtASnapshotIsNotCancelledAfterIt() {
+        presence.add("alice");
+        List<Message> first = sync(null, "carol");
+        assertEquals(List.of("alice"), snapshot(first));
+
+        presence.remove("alice");
+        List<Message> resumed = sync(version(first), "carol");
+        assertEquals(List.of("-alice"), changes(resumed));
+    }
+
+    @Test
+    void leavePendingAtASnapshotIsNotCancelledAfterIt() {
+        presence.add("alice");
+        presence.flush();
+        presence.remove("alice");
+        List<Message> first = sync(null, "carol");
+        assertEquals(List.of(), snapshot(first));
+
+        presence.add("alice");
+        List<Message> resumed = sync(version(first), "carol");
+        assertEquals(List.of("+alice"), changes(resumed));
+    }
+
+    @Test
+    void resumesOnlyTheMissedChanges() {
+        presence.add("alice");
+        String cursor = version(sync(null, "carol"));
+        presence.add("bob");
+        presence.flush();
+        presence.rename("bob", "robert");
+
+        List<Message> resumed = sync(cursor, "carol");
+        assertEquals(3, resumed.size());
+        assertEquals("+bob", resumed.get(0).payload());
+        assertEquals(MessageType.SERVER_RENAME_CLIENT, resumed.get(1).type());
+        assertEquals(List.of(), snapshot(resumed));
+    }
+
+    @Test
+    void fullBatchOfLongNamesIsSentInChunksThatFitInAFrame() {
+        presence.add("alice");
+        String cursor = version(sync(null, "carol"));
+        IntStream.range(0, Presence.MAX_BATCH).forEach(i -> presence.add(String.format("%064d", i)));
+
+        List<Message> batch = sync(cursor, "carol");
+        List<String> changes = changes(batch);
+        assertEquals(Presence.MAX_BATCH / Presence.CHUNK_SIZE, changes.size());
+        assertEquals(Presence.MAX_BATCH, changes.stream().mapToInt(chunk -> chunk.split(",").length).sum());
+        for (Message chunk : batch) assertTrue(BinaryCodec.encode(chunk).remaining() <= BinaryCodec.MAX_FRAME_LENGTH);
+    }
+
+    @Test
+    void unknownCursorGetsASnapshotInChunks() {
+        IntStream.range(0, Presence.CHUNK_SIZE + 1).forEach(i -> presence.add(String.format("client%04d", i)));
+
+        List<Message> written = sync("12345", "nobody");
+        assertEquals(3, written.size());
+        assertEquals(Presence.CHUNK_SIZE + 1, snapshot(written).size());
+    }
+
+    @Test
+    void searchPagesThroughThePrefix() {
+        IntStream.range(0, Presence.SEARCH_PAGE_SIZE + 5).forEach(i -> presence.add(String.format("user%03d", i)));
+        presence.add("other");
+
+        List<String> first = presence.search("user", null);
+        assertEquals(Presence.SEARCH_PAGE_SIZE, first.size());
+        assertEquals("user000", first.get(0));
+
+        List<String> second = presence.search("user", first.get(first.size() - 1));
+        assertEquals(5, second.size());
+        assertEquals("user054", second.get(4));
+    }
+
+    @Test
+    void subscriptionsCountEveryNameOnce() {
+        ServerConnection client = new ServerConnection(1, new OutboundQueue(16, OverflowPolicy.DROP_OLDEST, 50, 0, new FlushStats()),
+                new ServerMetrics());
+        List<String> names = IntStream.range(0, Presence.MAX_SUBSCRIPTIONS).mapToObj(i -> "client" + i).toList();
+        presence.lazy(client);
+
+        assertTrue(presence.subscribe(client, List.of("client0", "client0", "client1")));
+        assertEquals(2, presence.getSubscribed());
+        assertTrue(presence.subscribe(client, names));
+        assertTrue(presence.subscribe(client, names));
+        assertEquals(Presence.MAX_SUBSCRIPTIONS, presence.getSubscribed());
+
+        assertFalse(presence.subscribe(client, List.of("client0", "another")));
+        assertEquals(Presence.MAX_SUBSCRIPTIONS, presence.getSubscribed());
+    }
+
+    @Test
+    void eagerClientsAreNotSubscribed() {
+        ServerConnection client = new ServerConnection(1, new OutboundQueue(16, OverflowPolicy.DROP_OLDEST, 50, 0, new FlushStats()),
+                new ServerMetrics());
+
+        assertTrue(presence.subscribe(client, List.of("alice")));
+        assertEquals(0, presence.getSubscribed());
+    }
+}
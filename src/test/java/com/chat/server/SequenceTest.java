@@ -0,0 +1,85 @@
+package com.chat.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SequenceTest {
+    private static final long NODE_MASK = (1L << Sequence.NODE_BITS) - 1;
+
+    @Test
+    void numbersIncreaseWithinAMillisecond() {
+        Sequence sequence = new Sequence();
+        long previous = 0;
+        for (int i = 0; i < 10_000; i++) {
+            long next = sequence.next(0);
+            assertTrue(next > previous);
+            previous = next;
+        }
+    }
+
+    @Test
+    void numbersCarryTheNodeAndTheTime() {
+        Sequence sequence = new Sequence();
+        long before = System.currentTimeMillis();
+        long number = sequence.next(42);
+
+        assertEquals(42, number & NODE_MASK);
+        assertTrue(Sequence.timestamp(number) >= before);
+        assertTrue(Sequence.timestamp(number) <= System.currentTimeMillis());
+    }
+
+    @Test
+    void observedNumbersComeBeforeTheNextOnes() {
+        Sequence sequence = new Sequence();
+        long remote = (((System.currentTimeMillis() + 60_000) << Sequence.COUNTER_BITS) << Sequence.NODE_BITS) | 7;
+        sequence.observe(remote);
+
+        long next = sequence.next(3);
+        assertTrue(next > remote);
+        assertEquals(3, next & NODE_MASK);
+    }
+
+    @Test
+    void olderObservedNumbersAreIgnored() {
+        Sequence sequence = new Sequence();
+        long first = sequence.next(1);
+        sequence.observe(first >>> 1);
+        sequence.observe(0);
+
+        assertTrue(sequence.next(1) > first);
+    }
+
+    @Test
+    void nodesNeverGiveOutTheSameNumber() throws InterruptedException {
+        Sequence one = new Sequence(), two = new Sequence();
+        Set<Long> numbers = ConcurrentHashMap.newKeySet();
+
+        Thread first = new Thread(() -> { for (int i = 0; i < 20_000; i++) assertTrue(numbers.add(one.next(1))); });
+        Thread second = new Thread(() -> { for (int i = 0; i < 20_000; i++) assertTrue(numbers.add(two.next(2))); });
+        first.start();
+        second.start();
+        first.join();
+        second.join();
+
+        assertEquals(40_000, numbers.size());
+    }
+
+    @Test
+    void concurrentCallsGetDistinctNumbers() throws InterruptedException {
+        Sequence sequence = new Sequence();
+        Set<Long> numbers = ConcurrentHashMap.newKeySet();
+
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> { for (int i = 0; i < 10_000; i++) numbers.add(sequence.next(0)); });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+
+        assertEquals(40_000, numbers.size());
+    }
+}
@@ -0,0 +1,103 @@
+package com.chat.server.journal;
+
+import com.chat.utils.message.Message;
+import com.chat.utils.message.MessageType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalTest {
+    @TempDir
+    Path directory;
+
+    private static Message message(int _index) { return new Message(MessageType.SERVER_SEND_PUBLIC, "message " + _index, "alice", null, _index + 1, 1000L + _index); }
+
+    private static void awaitCommitted(Journal _journal, long _offset) {
+        while (_journal.getNextOffset() < _offset) Thread.onSpinWait();
+    }
+
+    @Test
+    void disabledJournalAppendsNothing() throws IOException {
+        Journal journal = new Journal();
+        journal.open();
+
+        assertFalse(journal.isOpen());
+        assertEquals(-1, journal.append(message(0)));
+        assertNull(journal.read(0));
+    }
+
+    @Test
+    void readsBackCommittedMessagesInOrder() throws IOException {
+        Journal journal = new Journal(directory, 1 << 16, false);
+        journal.open();
+        for (int i = 0; i < 100; i++) assertEquals(i, journal.append(message(i)));
+        awaitCommitted(journal, 100);
+
+        for (int i = 0; i < 100; i++) {
+            JournalEntry entry = journal.read(i);
+            assertEquals(i, entry.offset());
+            assertEquals(message(i), entry.message());
+        }
+        assertNull(journal.read(100));
+        journal.close();
+    }
+
+    @Test
+    void rollsOverToNewSegments() throws IOException {
+        Journal journal = new Journal(directory, 1024, true);
+        journal.open();
+        for (int i = 0; i < 200; i++) journal.append(message(i));
+        journal.close();
+
+        assertTrue(journal.getSegments() > 1);
+        assertEquals(200, journal.getNextOffset());
+    }
+
+    @Test
+    void reopensWhereItStopped() throws IOException {
+        Journal journal = new Journal(directory, 1024, false);
+        journal.open();
+        for (int i = 0; i < 200; i++) journal.append(message(i));
+        journal.close();
+
+        Journal reopened = new Journal(directory, 1024, false);
+        reopened.open();
+        assertEquals(journal.getSegments(), reopened.getSegments());
+        assertEquals(200, reopened.getNextOffset());
+        assertEquals(200, reopened.append(message(200)));
+        reopened.close();
+
+        for (int i = 0; i <= 200; i++) assertEquals(message(i), reopened.read(i).message());
+    }
+
+    @Test
+    void indexesTheOffsetsOfEveryChat() throws IOException {
+        Journal journal = new Journal(directory, 1024, false);
+        journal.open();
+        journal.append(new Message(MessageType.SERVER_SEND_PRIVATE, "hi", "alice", "bob"));
+        journal.append(new Message(MessageType.SERVER_SEND_PUBLIC, "hello", "carol"));
+        journal.append(new Message(MessageType.SERVER_SEND_PRIVATE, "hey", "bob", "alice"));
+        journal.append(new Message(MessageType.SERVER_SEND_PRIVATE, "yo", "alice", "carol"));
+        journal.close();
+
+        assertEquals(Journal.chat("alice", "bob"), Journal.chat("bob", "alice"));
+        Journal reopened = new Journal(directory, 1024, false);
+        reopened.open();
+        for (Journal index : new Journal[] { journal, reopened }) {
+            ChatOffsets pair = index.getOffsets(Journal.chat("alice", "bob"));
+            assertEquals(2, pair.size());
+            assertEquals(0, pair.get(0));
+            assertEquals(2, pair.get(1));
+            assertEquals(1, pair.ceiling(1));
+            assertEquals(2, pair.ceiling(3));
+
+            assertEquals(1, index.getOffsets(Journal.PUBLIC_CHAT).get(0));
+            assertNull(index.getOffsets(Journal.chat("bob", "carol")));
+        }
+        reopened.close();
+    }
+}
@@ -0,0 +1,93 @@
+package com.chat.server.journal;
+
+import com.chat.utils.message.BinaryCodec;
+import com.chat.utils.message.Message;
+import com.chat.utils.message.MessageType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentTest {
+    private static final int SIZE = 4096;
+
+    @TempDir
+    Path directory;
+
+    private static ByteBuffer frame(String _payload) { return BinaryCodec.encode(new Message(MessageType.SERVER_SEND_PUBLIC, _payload, "alice")); }
+
+    @Test
+    void recoversTheRecordsOfAClosedSegment() throws IOException {
+        Segment segment = new Segment(directory, 10, SIZE);
+        segment.append(1, frame("one"));
+        segment.append(2, frame("two"));
+        segment.close();
+
+        Segment reopened = new Segment(directory, 10, SIZE);
+        assertEquals(2, reopened.getCount());
+        assertEquals(segment.getSize(), reopened.getSize());
+        assertEquals("two", reopened.read(11).message().payload());
+        assertEquals(2, reopened.read(11).timestamp());
+        reopened.close();
+    }
+
+    @Test
+    void stopsAtATornTail() throws IOException {
+        Segment segment = new Segment(directory, 0, SIZE);
+        segment.append(1, frame("one"));
+        int end = segment.getSize();
+        segment.close();
+
+        try (FileChannel log = FileChannel.open(directory.resolve(Segment.fileName(0, "log")), StandardOpenOption.WRITE)) {
+            ByteBuffer torn = ByteBuffer.allocate(Segment.HEADER_SIZE + 4);
+            torn.putInt(0).putLong(2).putInt(0x01020304).flip();
+            log.write(torn, end);
+        }
+
+        Segment reopened = new Segment(directory, 0, SIZE);
+        assertEquals(1, reopened.getCount());
+        assertEquals(end, reopened.getSize());
+        reopened.close();
+    }
+
+    @Test
+    void stopsAtALengthPastTheEndOfTheFile() throws IOException {
+        Segment segment = new Segment(directory, 0, SIZE);
+        segment.append(1, frame("one"));
+        int end = segment.getSize();
+        segment.close();
+
+        try (FileChannel log = FileChannel.open(directory.resolve(Segment.fileName(0, "log")), StandardOpenOption.WRITE)) {
+            log.write(ByteBuffer.allocate(Integer.BYTES).putInt(SIZE).flip(), end);
+        }
+
+        Segment reopened = new Segment(directory, 0, SIZE);
+        assertEquals(1, reopened.getCount());
+        assertTrue(reopened.fits(frame("two")));
+        reopened.close();
+    }
+
+    @Test
+    void refusesFramesThatDoNotFit() throws IOException {
+        Segment segment = new Segment(directory, 0, 64);
+        assertTrue(segment.fits(frame("short")));
+        assertFalse(segment.fits(frame("a payload that is much longer than the whole segment of sixty-four bytes")));
+        segment.close();
+    }
+
+    @Test
+    void refusesMissingRecords() throws IOException {
+        Segment segment = new Segment(directory, 0, SIZE);
+        segment.append(1, frame("one"));
+
+        assertThrows(StreamCorruptedException.class, () -> segment.read(1));
+        segment.close();
+    }
+}
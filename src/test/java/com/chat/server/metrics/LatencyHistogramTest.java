@@ -0,0 +1,60 @@
+package com.chat.server.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+    @Test
+    void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(99));
+    }
+
+    @Test
+    void percentilesAreWithinTheBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) histogram.record(value);
+
+        assertEquals(100_000, histogram.getCount());
+        assertEquals(100_000L * 100_001 / 2, histogram.getSum());
+        assertEquals(100_000, histogram.getMax());
+        for (double percentile : new double[] { 50, 90, 99, 99.9 }) {
+            double expected = 100_000 * percentile / 100;
+            assertEquals(expected, histogram.getPercentile(percentile), expected * 0.07);
+        }
+    }
+
+    @Test
+    void negativeValuesAreRecordedAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getSum());
+        assertEquals(0, histogram.getPercentile(100));
+    }
+
+    @Test
+    void concurrentRecordsAreAllCounted() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int offset = t;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 50_000; i++) histogram.record(i + offset);
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) thread.join();
+
+        assertEquals(400_000, histogram.getCount());
+        assertEquals(49_999 + 7, histogram.getMax());
+        assertEquals(histogram.getMax(), histogram.getPercentile(100));
+    }
+}
@@ -0,0 +1,57 @@
+package com.chat.utils.log;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncLoggerTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void writesLinesToTheFile() throws IOException {
+        File file = directory.resolve("log.txt").toFile();
+        AsyncLogger logger = new AsyncLogger("test-writer", file, Long.MAX_VALUE, 0, 16);
+        logger.write(LogLevel.INFO, "first", true);
+        logger.write(LogLevel.DEBUG, "discarded", true);
+        logger.write(LogLevel.ERROR, "second", true);
+        logger.close();
+
+        assertEquals("first\nsecond\n", Files.readString(file.toPath(), StandardCharsets.UTF_8));
+        assertFalse(logger.isFailed());
+    }
+
+    @Test
+    void dropsAndCountsLinesWhenTheFileCannotBeOpened() {
+        File file = directory.resolve("missing").resolve("log.txt").toFile();
+        AsyncLogger logger = new AsyncLogger("test-writer", file, Long.MAX_VALUE, 0, 16);
+        logger.write(LogLevel.INFO, "first", true);
+        logger.write(LogLevel.INFO, "second", true);
+        logger.close();
+
+        assertTrue(logger.isFailed());
+        assertEquals(2, logger.getDropped());
+        assertFalse(file.exists());
+    }
+
+    @Test
+    void rotatesTheFullFile() throws IOException {
+        File file = directory.resolve("log.txt").toFile();
+        AsyncLogger logger = new AsyncLogger("test-writer", file, 4, 2, 16);
+        logger.write(LogLevel.INFO, "first", true);
+        while (!directory.resolve("log.1.txt").toFile().exists()) Thread.onSpinWait();
+        logger.write(LogLevel.INFO, "second", true);
+        logger.close();
+
+        assertEquals("first\n", Files.readString(directory.resolve("log.2.txt")));
+        assertEquals("second\n", Files.readString(directory.resolve("log.1.txt")));
+        assertEquals("", Files.readString(file.toPath()));
+    }
+}
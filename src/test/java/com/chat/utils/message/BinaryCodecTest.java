@@ -0,0 +1,111 @@
+package com.chat.utils.message;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryCodecTest {
+    private static byte[] bytes(ByteBuffer _frame) {
+        byte[] bytes = new byte[_frame.remaining()];
+        _frame.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static Message roundTrip(Message _message) throws IOException {
+        return BinaryCodec.read(new ByteArrayInputStream(bytes(BinaryCodec.encode(_message))));
+    }
+
+    @Test
+    void roundTripsEveryField() throws IOException {
+        Message message = new Message(MessageType.SERVER_SEND_PRIVATE, "hello\nworld è", "alice", "bob", 1L << 40, System.currentTimeMillis());
+        assertEquals(message, roundTrip(message));
+    }
+
+    @Test
+    void roundTripsMissingFields() throws IOException {
+        assertEquals(new Message(MessageType.CLIENT_CLOSE), roundTrip(new Message(MessageType.CLIENT_CLOSE)));
+        assertEquals(new Message(), roundTrip(new Message()));
+        assertEquals(new Message(MessageType.SERVER_SEND_PUBLIC, "", null, ""), roundTrip(new Message(MessageType.SERVER_SEND_PUBLIC, "", null, "")));
+    }
+
+    @Test
+    void roundTripsTheLargestSequence() throws IOException {
+        Message message = new Message(MessageType.SERVER_SEND_PUBLIC, "x", "alice", null, -1L, Long.MAX_VALUE);
+        assertEquals(message, roundTrip(message));
+    }
+
+    @Test
+    void usesMultiByteLengthsForLongPayloads() throws IOException {
+        char[] payload = new char[300];
+        Arrays.fill(payload, 'a');
+        Message message = new Message(MessageType.CLIENT_SEND_PUBLIC, new String(payload));
+
+        ByteBuffer frame = BinaryCodec.encode(message);
+        assertEquals(frame.remaining() - 2, BinaryCodec.peekLength(frame));
+        assertEquals(message, roundTrip(message));
+    }
+
+    @Test
+    void readsConsecutiveFrames() throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.writeBytes(bytes(BinaryCodec.encode(new Message(MessageType.CLIENT_SEND_PUBLIC, "one"))));
+        stream.writeBytes(bytes(BinaryCodec.encode(new Message(MessageType.CLIENT_SEND_PUBLIC, "two"))));
+
+        ByteArrayInputStream input = new ByteArrayInputStream(stream.toByteArray());
+        assertEquals("one", BinaryCodec.read(input).payload());
+        assertEquals("two", BinaryCodec.read(input).payload());
+        assertNull(BinaryCodec.read(input));
+    }
+
+    @Test
+    void peekLengthWaitsForACompletePrefix() throws StreamCorruptedException {
+        assertEquals(-1, BinaryCodec.peekLength(ByteBuffer.allocate(0)));
+        assertEquals(-1, BinaryCodec.peekLength(ByteBuffer.wrap(new byte[] { (byte) 0x80 })));
+        assertEquals(128, BinaryCodec.peekLength(ByteBuffer.wrap(new byte[] { (byte) 0x80, 0x01 })));
+    }
+
+    @Test
+    void refusesTooLongFrames() {
+        ByteBuffer prefix = ByteBuffer.wrap(new byte[] { (byte) 0x81, (byte) 0x80, 0x04 });
+        assertThrows(StreamCorruptedException.class, () -> BinaryCodec.peekLength(prefix));
+        assertThrows(StreamCorruptedException.class, () -> BinaryCodec.read(new ByteArrayInputStream(prefix.array())));
+    }
+
+    @Test
+    void refusesTruncatedFrames() {
+        byte[] frame = bytes(BinaryCodec.encode(new Message(MessageType.CLIENT_SEND_PUBLIC, "hello", "alice")));
+        byte[] truncated = Arrays.copyOf(frame, frame.length - 3);
+        assertThrows(EOFException.class, () -> BinaryCodec.read(new ByteArrayInputStream(truncated)));
+
+        ByteBuffer body = ByteBuffer.wrap(truncated, 1, truncated.length - 1);
+        assertThrows(StreamCorruptedException.class, () -> BinaryCodec.decode(body));
+    }
+
+    @Test
+    void refusesFieldsLongerThanTheFrame() {
+        ByteBuffer body = ByteBuffer.wrap(new byte[] { (byte) MessageType.CLIENT_SEND_PUBLIC.ordinal(), 1, 10, 'a' });
+        assertThrows(StreamCorruptedException.class, () -> BinaryCodec.decode(body));
+    }
+
+    @Test
+    void refusesUnknownTypes() {
+        ByteBuffer body = ByteBuffer.wrap(new byte[] { (byte) MessageType.values().length, 0 });
+        assertThrows(StreamCorruptedException.class, () -> BinaryCodec.decode(body));
+    }
+
+    @Test
+    void prefaceIsTheSingleNegotiationByte() {
+        ByteBuffer preface = BinaryCodec.preface();
+        assertTrue(preface.isReadOnly());
+        assertEquals(1, preface.remaining());
+        assertEquals(BinaryCodec.PREFACE, preface.get() & 0xFF);
+    }
+}